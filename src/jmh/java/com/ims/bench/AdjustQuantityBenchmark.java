@@ -0,0 +1,67 @@
+package com.ims.bench;
+
+import com.ims.repository.ColumnarInventoryRepository;
+import com.ims.repository.DirtyTracker;
+import com.ims.repository.InMemoryInventoryRepository;
+import com.ims.repository.InventoryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The primitive adjustQuantity path with a DirtyTracker registered, as the
+ * service does. Run with {@code -prof gc}: the columnar store should report
+ * about 0 B/op, the object store one replacement item per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AdjustQuantityBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"inmemory", "columnar"})
+    public String repository;
+
+    private InventoryRepository repo;
+    private String[] ids;
+    private int next;
+    private int delta = 1;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repo = "columnar".equals(repository)
+                ? new ColumnarInventoryRepository(size)
+                : new InMemoryInventoryRepository(size);
+        repo.saveAll(CatalogGenerator.items(size, 42));
+        repo.addChangeListener(new DirtyTracker());
+        ids = new String[size];
+        for (int i = 0; i < size; i++)
+            ids[i] = CatalogGenerator.id(i);
+    }
+
+    @Benchmark
+    public int adjustQuantity() {
+        String id = ids[next];
+        if (++next == ids.length) {
+            next = 0;
+            delta = -delta; // alternate +1 / -1 sweeps so quantities stay bounded
+        }
+        return repo.adjustQuantity(id, delta);
+    }
+}
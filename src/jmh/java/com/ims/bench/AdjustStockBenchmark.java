@@ -0,0 +1,82 @@
+package com.ims.bench;
+
+import com.ims.io.CsvInventoryStorage;
+import com.ims.repository.InMemoryInventoryRepository;
+import com.ims.service.InventoryService;
+import com.ims.service.InventoryServiceImpl;
+import com.ims.service.policies.GlobalThresholdPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * adjustStock throughput, single-threaded and with 8 threads, with SKUs picked
+ * uniformly or Zipf-skewed (hot items contend on the same map bins).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdjustStockBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+        @Param({"100000"})
+        public int size;
+
+        @Param({"uniform", "zipf"})
+        public String distribution;
+
+        InventoryService service;
+        String[] ids;
+        CatalogGenerator.Sampler sampler;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            InMemoryInventoryRepository repo = new InMemoryInventoryRepository(size);
+            repo.saveAll(CatalogGenerator.items(size, 42));
+            service = new InventoryServiceImpl(repo, new CsvInventoryStorage(), new GlobalThresholdPolicy(10));
+            ids = new String[size];
+            for (int i = 0; i < size; i++)
+                ids[i] = CatalogGenerator.id(i);
+            sampler = "zipf".equals(distribution)
+                    ? CatalogGenerator.Sampler.zipf(size, 1.0)
+                    : CatalogGenerator.Sampler.uniform(size);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picker {
+        final SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+
+        String next(Catalog c) {
+            return c.ids[c.sampler.next(random)];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object adjustStockSingle(Catalog c, Picker p) {
+        return c.service.adjustStock(p.next(c), 1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object adjustStockContended(Catalog c, Picker p) {
+        return c.service.adjustStock(p.next(c), 1);
+    }
+}
@@ -0,0 +1,129 @@
+package com.ims.bench;
+
+import com.ims.model.Item;
+import com.ims.model.MovementType;
+import com.ims.model.StockMovement;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic catalogs and movement streams for benchmarks.
+ * The same seed always produces the same data, so runs can be compared
+ * across releases.
+ */
+public final class CatalogGenerator {
+
+    private static final String[] SUPPLIERS = {
+            "Walmart", "Target", "Costco", "Kroger", "Amazon", "BestBuy", "HomeDepot", "Lowes",
+            "Walgreens", "CVS", "Aldi", "Publix", "Safeway", "Meijer", "Staples", "Ikea"
+    };
+    private static final String[] WORDS = {
+            "Steel", "Cotton", "Organic", "Wireless", "Compact", "Deluxe", "Classic", "Smart",
+            "Bottle", "Cable", "Lamp", "Chair", "Towel", "Blender", "Drill", "Notebook",
+            "Speaker", "Jacket", "Kettle", "Monitor", "Pillow", "Shovel", "Battery", "Candle"
+    };
+
+    private CatalogGenerator() {
+    }
+
+    /** Zero-padded id of the i-th generated item. */
+    public static String id(int i) {
+        return String.format("SKU%08d", i);
+    }
+
+    public static Item item(int i, SplittableRandom random) {
+        String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+        int quantity = random.nextInt(500);
+        double price = random.nextInt(1, 100_000) / 100.0;
+        return new Item(id(i), name, quantity, price, SUPPLIERS[random.nextInt(SUPPLIERS.length)]);
+    }
+
+    public static List<Item> items(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            items.add(item(i, random));
+        return items;
+    }
+
+    /** Writes a catalog in the CsvInventoryStorage layout without holding it in memory. */
+    public static void writeCsv(Path file, int count, long seed) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("id,name,quantity,price,supplier\n");
+            for (int i = 0; i < count; i++) {
+                Item it = item(i, random);
+                out.write(it.getId());
+                out.write(',');
+                out.write(it.getName());
+                out.write(',');
+                out.write(Integer.toString(it.getQuantity()));
+                out.write(',');
+                out.write(Double.toString(it.getPrice()));
+                out.write(',');
+                out.write(it.getSupplier());
+                out.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Inbound and outbound movements over items 0..catalogSize-1 picked by
+     * sampler. Outbound movements are small, so stock rarely runs out.
+     */
+    public static List<StockMovement> movements(int count, int catalogSize, Sampler sampler, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<StockMovement> movements = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean inbound = random.nextInt(3) == 0;
+            int amount = inbound ? random.nextInt(1, 50) : -random.nextInt(1, 5);
+            movements.add(new StockMovement(id(sampler.next(random)), amount,
+                    inbound ? MovementType.INBOUND : MovementType.OUTBOUND, "BENCH-" + i, null));
+        }
+        return movements;
+    }
+
+    /** Picks item indexes in [0, size). */
+    public interface Sampler {
+        int next(SplittableRandom random);
+
+        static Sampler uniform(int size) {
+            return random -> random.nextInt(size);
+        }
+
+        /**
+         * Zipf with exponent s: index k is picked with probability proportional
+         * to 1 / (k + 1)^s, so a few SKUs take most of the traffic.
+         */
+        static Sampler zipf(int size, double s) {
+            double[] cdf = new double[size];
+            double sum = 0;
+            for (int k = 0; k < size; k++) {
+                sum += 1.0 / Math.pow(k + 1, s);
+                cdf[k] = sum;
+            }
+            for (int k = 0; k < size; k++)
+                cdf[k] /= sum;
+            return random -> {
+                double u = random.nextDouble();
+                int lo = 0;
+                int hi = size - 1;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (cdf[mid] < u)
+                        lo = mid + 1;
+                    else
+                        hi = mid;
+                }
+                return lo;
+            };
+        }
+    }
+}
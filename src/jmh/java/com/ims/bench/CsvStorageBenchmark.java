@@ -0,0 +1,73 @@
+package com.ims.bench;
+
+import com.ims.io.CsvInventoryStorage;
+import com.ims.model.Item;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-file CSV load and save. Each operation is one full pass, so this
+ * measures single-shot time. The 10M row case needs a large heap
+ * ({@code -jvmArgs -Xmx8g}); run only the small sizes with
+ * {@code -p rows=10000,1000000}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class CsvStorageBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private final CsvInventoryStorage storage = new CsvInventoryStorage();
+    private Path dir;
+    private String input;
+    private String output;
+    private List<Item> items;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ims-bench");
+        input = dir.resolve("catalog.csv").toString();
+        output = dir.resolve("saved.csv").toString();
+        CatalogGenerator.writeCsv(Path.of(input), rows, 42);
+        items = storage.loadAll(input);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(input));
+        Files.deleteIfExists(Path.of(output));
+        Files.deleteIfExists(dir);
+    }
+
+    @Benchmark
+    public int loadAll() throws IOException {
+        return storage.loadAll(input).size();
+    }
+
+    @Benchmark
+    public void saveAll() throws IOException {
+        storage.saveAll(items, output);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ims.bench;
+
+import com.ims.model.Item;
+import com.ims.service.index.LowStockIndex;
+import com.ims.service.policies.TieredThresholdPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Low-stock queries on the index with global, per-supplier and per-SKU
+ * thresholds. countLow reads the maintained count; lowStock walks the
+ * ordered low set and looks up the matches (about 0.1% of the catalog here).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class LowStockBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private LowStockIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        TieredThresholdPolicy policy = new TieredThresholdPolicy(10);
+        for (int s = 0; s < 50; s++)
+            policy.setSupplierThreshold("Supplier-" + s, 5 + s % 20);
+        for (int i = 0; i < 1000; i++)
+            policy.setSkuThreshold(CatalogGenerator.id(random.nextInt(size)), 50);
+
+        // Indexes only ids, suppliers and quantities, so items are built one at a time
+        Item sample = new Item("x", "x", 0, 0, "x");
+        index = new LowStockIndex(id -> Optional.of(sample), policy);
+        for (int i = 0; i < size; i++) {
+            int quantity = random.nextInt(1000) == 0 ? random.nextInt(10) : 30 + random.nextInt(1000);
+            index.seed(new Item(CatalogGenerator.id(i), "n", quantity, 1, "Supplier-" + (i % 50)));
+        }
+        index.countLow(); // resolve thresholds outside the measurement
+    }
+
+    @Benchmark
+    public int countLow() {
+        return index.countLow();
+    }
+
+    @Benchmark
+    public Object lowStock() {
+        return index.lowStock();
+    }
+}
@@ -0,0 +1,116 @@
+package com.ims.bench;
+
+import com.ims.io.MovementHistoryStore;
+import com.ims.model.MovementType;
+import com.ims.model.StockMovement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Movement history queries over 10M rows spread across 10,000 SKUs, about
+ * 10 ms apart (a little over a day in hourly partitions): one item over an
+ * hour, one item over all time, and net change per item over a 15 hour
+ * window. appendBatch measures the journaled append of 1,000 movements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class MovementHistoryBenchmark {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+    private static final int SKUS = 10_000;
+
+    @Param({"10000000"})
+    public int rows;
+
+    private Path dir;
+    private MovementHistoryStore store;
+    private SplittableRandom random;
+    private List<StockMovement> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ims-history-bench");
+        store = new MovementHistoryStore(dir, Duration.ofHours(1), MovementHistoryStore.DEFAULT_RUN_ROWS);
+        random = new SplittableRandom(42);
+        long micros = 0;
+        List<StockMovement> chunk = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            micros += random.nextInt(20_000);
+            chunk.add(movement(START.plusNanos(micros * 1000)));
+            if (chunk.size() == 10_000) {
+                store.appendAll(chunk);
+                chunk.clear();
+            }
+        }
+        store.appendAll(chunk);
+        store.flush();
+
+        batch = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++)
+            batch.add(movement(START.plusMillis(i)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList())
+                Files.delete(p);
+        }
+    }
+
+    private StockMovement movement(Instant at) {
+        int amount = random.nextInt(1, 10);
+        boolean inbound = random.nextBoolean();
+        return new StockMovement(CatalogGenerator.id(random.nextInt(SKUS)), inbound ? amount : -amount,
+                inbound ? MovementType.INBOUND : MovementType.OUTBOUND, at, "ORDER-" + random.nextInt(5000), null);
+    }
+
+    @Benchmark
+    public int itemOverOneHour() {
+        return store.movements(CatalogGenerator.id(random.nextInt(SKUS)),
+                START.plus(Duration.ofHours(3)), START.plus(Duration.ofHours(4))).size();
+    }
+
+    @Benchmark
+    public long itemNetAllTime() {
+        return store.netChange(CatalogGenerator.id(random.nextInt(SKUS)), Instant.MIN, Instant.MAX);
+    }
+
+    @Benchmark
+    public int netChangeByItemOver15Hours() {
+        return store.netChangeByItem(START.plus(Duration.ofMinutes(301)), START.plus(Duration.ofMinutes(1201))).size();
+    }
+
+    @Benchmark
+    public void appendBatch() throws IOException {
+        store.appendAll(batch);
+    }
+}
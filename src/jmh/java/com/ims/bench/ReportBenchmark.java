@@ -0,0 +1,63 @@
+package com.ims.bench;
+
+import com.ims.model.Item;
+import com.ims.service.report.InventoryReports;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The parallel valuation reports over 1M and 10M items. To see how they
+ * scale with cores, pin the pool size per run, e.g.
+ * {@code -jvmArgsAppend -Djava.util.concurrent.ForkJoinPool.common.parallelism=4}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Benchmark)
+public class ReportBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    private List<Item> items;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        items = List.copyOf(CatalogGenerator.items(size, 42));
+    }
+
+    @Benchmark
+    public Object totalValue() {
+        return InventoryReports.totalValue(items.stream());
+    }
+
+    @Benchmark
+    public Object valueBySupplier() {
+        return InventoryReports.valueBySupplier(items.stream());
+    }
+
+    @Benchmark
+    public Object top100ByValue() {
+        return InventoryReports.topByValue(items.stream(), 100);
+    }
+
+    @Benchmark
+    public Object quantityHistogram() {
+        return InventoryReports.quantityHistogram(items.stream(), 50, 10);
+    }
+}
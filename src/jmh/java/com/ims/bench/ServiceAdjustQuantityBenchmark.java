@@ -0,0 +1,77 @@
+package com.ims.bench;
+
+import com.ims.io.CsvInventoryStorage;
+import com.ims.repository.ColumnarInventoryRepository;
+import com.ims.repository.InMemoryInventoryRepository;
+import com.ims.repository.InventoryRepository;
+import com.ims.service.InventoryService;
+import com.ims.service.InventoryServiceImpl;
+import com.ims.service.policies.GlobalThresholdPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * adjustQuantity through the service, so the dirty tracker, name index and
+ * low-stock index (with its crossing check) all see every call. Generated
+ * quantities are uniform in [0, 500): a threshold of 0 leaves no item low,
+ * 250 about half. Run with {@code -prof gc}: on the columnar store the first
+ * should report about 0 B/op, the second a low-set key and node for the
+ * adjustments of low items.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ServiceAdjustQuantityBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"inmemory", "columnar"})
+    public String repository;
+
+    @Param({"0", "250"})
+    public int threshold;
+
+    private InventoryService service;
+    private String[] ids;
+    private int next;
+    private int delta = 1;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InventoryRepository repo = "columnar".equals(repository)
+                ? new ColumnarInventoryRepository(size)
+                : new InMemoryInventoryRepository(size);
+        repo.saveAll(CatalogGenerator.items(size, 42));
+        service = new InventoryServiceImpl(repo, new CsvInventoryStorage(), new GlobalThresholdPolicy(threshold));
+        service.lowStock(); // resolve the thresholds before measuring
+        ids = new String[size];
+        for (int i = 0; i < size; i++)
+            ids[i] = CatalogGenerator.id(i);
+    }
+
+    @Benchmark
+    public int adjustQuantity() {
+        String id = ids[next];
+        if (++next == ids.length) {
+            next = 0;
+            delta = -delta; // alternate +1 / -1 sweeps so quantities stay bounded
+        }
+        return service.adjustQuantity(id, delta);
+    }
+}
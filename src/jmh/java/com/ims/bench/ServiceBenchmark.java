@@ -0,0 +1,85 @@
+package com.ims.bench;
+
+import com.ims.io.CsvInventoryStorage;
+import com.ims.model.StockMovement;
+import com.ims.repository.InMemoryInventoryRepository;
+import com.ims.service.InventoryService;
+import com.ims.service.InventoryServiceImpl;
+import com.ims.service.policies.GlobalThresholdPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Read paths and single movements on a service over a synthetic catalog. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceBenchmark {
+
+    private static final String[] QUERIES = { "lamp", "steel cha", "ble", "kettle 12", "nothing-matches" };
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"uniform", "zipf"})
+    public String distribution;
+
+    private InventoryService service;
+    private List<StockMovement> movements;
+    private int next;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository(size);
+        repo.saveAll(CatalogGenerator.items(size, 42));
+        service = new InventoryServiceImpl(repo, new CsvInventoryStorage(), new GlobalThresholdPolicy(10));
+        CatalogGenerator.Sampler sampler = "zipf".equals(distribution)
+                ? CatalogGenerator.Sampler.zipf(size, 1.0)
+                : CatalogGenerator.Sampler.uniform(size);
+        movements = CatalogGenerator.movements(1 << 16, size, sampler, 7);
+    }
+
+    @Benchmark
+    public Object applyMovement() {
+        StockMovement m = movements.get(next++ & (movements.size() - 1));
+        return service.applyMovement(m);
+    }
+
+    @Benchmark
+    public Object searchByName() {
+        return service.searchByName(QUERIES[query++ % QUERIES.length], 20);
+    }
+
+    @Benchmark
+    public Object lowStock() {
+        return service.lowStock();
+    }
+
+    @Benchmark
+    public Object listAll() {
+        return service.listAll();
+    }
+
+    @Benchmark
+    public long listAllAfterWrite() {
+        // Forces the repository to rebuild its snapshot
+        service.adjustStock(CatalogGenerator.id(next++ % size), 1);
+        return service.listAll().size();
+    }
+}
@@ -2,10 +2,12 @@ package com.ims.app;
 
 
 import com.ims.model.Item;
+import com.ims.repository.InMemoryInventoryRepository;
 import com.ims.repository.InventoryRepository;
 import com.ims.io.CsvInventoryStorage;
 import com.ims.service.InventoryService;
 import com.ims.service.InventoryServiceImpl;
+import com.ims.service.policies.GlobalThresholdPolicy;
 
 import java.io.File;
 import java.util.*;
@@ -21,92 +23,14 @@ public class Main {
     public static void main(String[] args) throws InputMismatchException, InterruptedException {
 
 
-        // Temporary stub repository
-        InventoryRepository repo = new InventoryRepository() {
-
-
-            private final java.util.Map<String, Item> data = new java.util.HashMap<>();
-
-
-            @Override
-            public boolean existsById(String id) {
-                return data.containsKey(id);
-            }
-
-
-            @Override
-            public java.util.Optional<Item> findById(String id) {
-                return java.util.Optional.ofNullable(data.get(id));
-            }
-
-
-            @Override
-            public java.util.List<Item> findAll() {
-                return new java.util.ArrayList<>(data.values());
-            }
-
-
-            @Override
-            public void save(Item item) {
-                data.put(item.id(), item);
-            }
-
-
-            @Override
-            public void deleteById(String id) {
-                data.remove(id);
-            }
-
-
-            @Override
-            public void replaceAll(java.util.List<Item> items) {
-                data.clear();
-                for (Item it : items)
-                    data.put(it.id(), it);
-            }
-            
-            @Override
-            public void sortById(InventoryRepository repo) {
-            	List<Item> items = repo.findAll();
-            	
-            }
-            
-            @Override
-            public void sortByName(InventoryRepository repo) {
-            	
-            }
-            
-            @Override
-            public void sortByQuantityAscending(InventoryRepository repo) {
-            	
-            }
-            
-            @Override
-            public void sortByQuantityDescending(InventoryRepository repo) {
-            	
-            }
-            
-            @Override
-            public void sortByPriceAscending(InventoryRepository repo) {
-            	
-            }
-            
-            @Override
-            public void sortByPriceDescending(InventoryRepository repo) {
-            	
-            }
-            
-            @Override
-            public void sortBySupplier(InventoryRepository repo) {
-            	
-            }
-        };
+        // Thread-safe in-memory repository
+        InventoryRepository repo = new InMemoryInventoryRepository();
 
         // Temporary stub file storage
         CsvInventoryStorage storage = new CsvInventoryStorage();
 
         // Simple low-stock rule: quantity < 10
-        InventoryService.LowStockPolicy policy = item -> item != null && item.getQuantity() < 10;
+        InventoryService.LowStockPolicy policy = new GlobalThresholdPolicy(10);
 
 
         // Build service
@@ -350,15 +274,23 @@ public class Main {
 							String file_name = scnr.nextLine();
 							String full_path = "src/main/resources/" + file_name;
 
-							//file must be .csv in order to parsed
-							if (file_name.endsWith(".csv")) {
+							//file must be .csv or .ims (binary snapshot) in order to parsed
+							if (file_name.endsWith(".csv") || file_name.endsWith(".ims")) {
 								//replace existing repository with items loaded from a file
-								repo.replaceAll(storage.loadAll(full_path));
-								loopRunning = false;
-								System.out.println("Successfully loaded inventory: " + file_name);
+								InventoryService.Result<Void> result = service.loadAll(full_path);
+								if (result.isOk()) {
+									loopRunning = false;
+									System.out.println("Successfully loaded inventory: " + file_name);
+									if (result.message() != null) {
+										System.out.println("Warning: " + result.message());
+									}
+								}
+								else {
+									System.out.println("Failed to load inventory: " + result.message());
+								}
 							}
 							else {
-								throw new IllegalArgumentException("Invalid file type. File must be .csv format.");
+								throw new IllegalArgumentException("Invalid file type. File must be .csv or .ims format.");
 							}
 						}
 						catch (Exception e) {
@@ -375,15 +307,23 @@ public class Main {
 								String file_name = scnr.nextLine();
 								String full_path = "src/main/resources/" + file_name;
 
-								//file must be .csv in order to save to
-								if (file_name.endsWith(".csv")) {
-									storage.saveAll(repo.findAll(), full_path);
-									loopRunning = false;
+								//file must be .csv or .ims (binary snapshot) in order to save to
+								if (file_name.endsWith(".csv") || file_name.endsWith(".ims")) {
 									System.out.println("Saving to: " + new File(full_path).getAbsolutePath());
-									System.out.println("Successfully saved inventory to file: " + file_name);
+									InventoryService.Result<Void> result = service.saveAll(full_path);
+									if (result.isOk()) {
+										loopRunning = false;
+										System.out.println("Successfully saved inventory to file: " + file_name);
+										if (result.message() != null) {
+											System.out.println("Warning: " + result.message());
+										}
+									}
+									else {
+										System.out.println("Failed to save inventory: " + result.message());
+									}
 								}
 								else {
-									throw new IllegalArgumentException("Invalid file type. File must be .csv format.");
+									throw new IllegalArgumentException("Invalid file type. File must be .csv or .ims format.");
 								}
 							}
 							catch (Exception e) {
@@ -395,6 +335,7 @@ public class Main {
                 case "8":
                     System.out.println("Goodbye!");
                     scnr.close();
+                    service.close();
                     return;
 
                 default:
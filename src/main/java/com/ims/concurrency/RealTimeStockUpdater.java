@@ -0,0 +1,323 @@
+package com.ims.concurrency;
+
+import com.ims.model.StockMovement;
+import com.ims.service.InventoryService;
+import com.ims.service.InventoryService.BatchResult;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Applies {@link StockMovement}s to the inventory in the background.
+ *
+ * Movements are partitioned by item id onto bounded queues, each drained by a
+ * single worker, so movements for one SKU are applied in submission order
+ * while different SKUs are applied in parallel. A worker takes whatever has
+ * queued up (up to 256 movements) and hands it to
+ * {@link InventoryService#applyMovements(List)}, so a burst for one SKU
+ * costs one write; as there, an item's movements in one batch succeed or
+ * fail together, on their net change. Any number of threads may
+ * {@link #submit(StockMovement)}; what happens when a partition is full is
+ * decided by the configured {@link Backpressure}. A worker that dies stops
+ * its partition: submits to it are rejected instead of waiting for space
+ * that never comes.
+ *
+ * Workers are created by the supplied {@link ThreadFactory}; on Java 21+ pass
+ * {@code Thread.ofVirtual().factory()} to run them on virtual threads.
+ */
+public class RealTimeStockUpdater implements AutoCloseable {
+
+    /** What {@link #submit(StockMovement)} does when the target partition is full. */
+    public enum Backpressure {
+        /** Wait for space, as long as the partition's worker is running. */
+        BLOCK,
+        /** Discard the movement and return false. */
+        DROP,
+        /** Throw {@link RejectedExecutionException}. */
+        REJECT
+    }
+
+    private static final int MAX_DRAIN = 256;
+    private static final long POLL_MILLIS = 50;
+
+    private final InventoryService service;
+    private final Backpressure backpressure;
+    private final ThreadFactory threadFactory;
+    private final Partition[] partitions;
+    private final CountDownLatch terminated;
+
+    private volatile boolean accepting = true;
+    private volatile boolean started;
+    // One atomic counter, not a LongAdder: workers must never see a sum that
+    // includes a submit's decrement but not its increment
+    private final AtomicLong inFlightSubmits = new AtomicLong();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public RealTimeStockUpdater(InventoryService service) {
+        this(service, Runtime.getRuntime().availableProcessors(), 1024, Backpressure.BLOCK, defaultThreadFactory());
+    }
+
+    public RealTimeStockUpdater(InventoryService service,
+            int partitionCount,
+            int capacityPerPartition,
+            Backpressure backpressure,
+            ThreadFactory threadFactory) {
+        this.service = Objects.requireNonNull(service, "service");
+        this.backpressure = Objects.requireNonNull(backpressure, "backpressure");
+        this.threadFactory = Objects.requireNonNull(threadFactory, "threadFactory");
+        if (partitionCount <= 0)
+            throw new IllegalArgumentException("partitionCount must be > 0");
+        if (capacityPerPartition <= 0)
+            throw new IllegalArgumentException("capacityPerPartition must be > 0");
+
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++)
+            partitions[i] = new Partition(i, capacityPerPartition);
+        this.terminated = new CountDownLatch(partitionCount);
+    }
+
+    /** Starts one worker per partition. */
+    public synchronized void start() {
+        if (started)
+            throw new IllegalStateException("already started");
+        started = true;
+        for (int i = 0; i < partitions.length; i++) {
+            Thread worker = threadFactory.newThread(new Worker(partitions[i]));
+            worker.start();
+        }
+    }
+
+    /**
+     * Enqueue a movement for its item's partition.
+     *
+     * @return true if queued, false if dropped under {@link Backpressure#DROP}
+     * @throws RejectedExecutionException if shut down, if the partition's
+     *                                    worker has stopped, or if the
+     *                                    partition is full under
+     *                                    {@link Backpressure#REJECT}
+     */
+    public boolean submit(StockMovement movement) throws InterruptedException {
+        Objects.requireNonNull(movement, "movement");
+        inFlightSubmits.incrementAndGet();
+        try {
+            if (!accepting) {
+                rejected.increment();
+                throw new RejectedExecutionException("updater is shut down");
+            }
+            Partition partition = partitions[partitionOf(movement.itemId())];
+            BlockingQueue<StockMovement> queue = partition.queue;
+            partition.checkRunning();
+            switch (backpressure) {
+                case BLOCK:
+                    // Wait in slices, so a worker that dies meanwhile does not strand us
+                    while (!queue.offer(movement, POLL_MILLIS, TimeUnit.MILLISECONDS))
+                        partition.checkRunning();
+                    break;
+                case DROP:
+                    if (!queue.offer(movement)) {
+                        dropped.increment();
+                        return false;
+                    }
+                    break;
+                case REJECT:
+                    if (!queue.offer(movement)) {
+                        rejected.increment();
+                        throw new RejectedExecutionException("partition full for item " + movement.itemId());
+                    }
+                    break;
+            }
+            submitted.increment();
+            return true;
+        } finally {
+            inFlightSubmits.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stop accepting movements. Already queued movements are still applied;
+     * use {@link #awaitTermination(long, TimeUnit)} to wait for the drain.
+     */
+    public void shutdown() {
+        accepting = false;
+        if (!started) {
+            // Nothing will ever drain the queues
+            for (int i = 0; i < partitions.length; i++)
+                terminated.countDown();
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    /**
+     * Graceful shutdown: stops intake and waits for the queues to drain. If
+     * interrupted, returns early with the interrupt status set; the workers
+     * keep draining.
+     */
+    @Override
+    public void close() {
+        shutdown();
+        try {
+            terminated.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------- Counters ----------
+
+    public long submittedCount() {
+        return submitted.sum();
+    }
+
+    public long appliedCount() {
+        return applied.sum();
+    }
+
+    /**
+     * Movements dequeued but refused by the service (unknown item, negative
+     * net stock in their batch).
+     */
+    public long failedCount() {
+        return failed.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    /** Movements queued but not yet applied, across all partitions. */
+    public int queueDepth() {
+        int depth = 0;
+        for (Partition p : partitions)
+            depth += p.queue.size();
+        return depth;
+    }
+
+    public int queueDepth(int partition) {
+        return partitions[partition].queue.size();
+    }
+
+    public int partitionCount() {
+        return partitions.length;
+    }
+
+    int partitionOf(String itemId) {
+        int h = itemId.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, partitions.length);
+    }
+
+    private static ThreadFactory defaultThreadFactory() {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, "stock-updater-" + seq.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /** One queue and whether its worker still drains it. */
+    private static final class Partition {
+        final int index;
+        final BlockingQueue<StockMovement> queue;
+        volatile boolean stopped;
+
+        Partition(int index, int capacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void checkRunning() {
+            if (stopped)
+                throw new RejectedExecutionException("worker for partition " + index + " has stopped");
+        }
+    }
+
+    /** Single consumer for one partition. */
+    private final class Worker implements Runnable {
+        private final Partition partition;
+        private final BlockingQueue<StockMovement> queue;
+        private final List<StockMovement> batch = new ArrayList<>(MAX_DRAIN);
+
+        Worker(Partition partition) {
+            this.partition = partition;
+            this.queue = partition.queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    StockMovement first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        // Exit only once intake is closed, no submit is mid-flight and
+                        // the queue is empty; otherwise a late put could be stranded.
+                        // A submit counts itself in before it checks accepting.
+                        if (!accepting && inFlightSubmits.get() == 0 && queue.isEmpty())
+                            return;
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_DRAIN - 1);
+                    apply(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                partition.stopped = true;
+                terminated.countDown();
+            }
+        }
+
+        /** Applies the batch in one call and counts each movement by its item's outcome. */
+        private void apply(List<StockMovement> movements) {
+            BatchResult result;
+            try {
+                result = service.applyMovements(movements);
+            } catch (RuntimeException e) {
+                failed.add(movements.size());
+                return;
+            }
+            Set<String> appliedIds = new HashSet<>();
+            for (int i = 0; i < result.size(); i++) {
+                if (result.isApplied(i))
+                    appliedIds.add(result.itemId(i));
+            }
+            int ok = 0;
+            for (StockMovement m : movements) {
+                if (appliedIds.contains(m.itemId()))
+                    ok++;
+            }
+            applied.add(ok);
+            failed.add(movements.size() - ok);
+        }
+    }
+}
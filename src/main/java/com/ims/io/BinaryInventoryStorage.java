@@ -0,0 +1,465 @@
+package com.ims.io;
+
+import com.ims.model.Item;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Versioned binary snapshot format, an exact (lossless for {@code double}
+ * prices) and much faster alternative to CSV.
+ *
+ * <pre>
+ * header   int magic "IMSB", int version, int itemCount,
+ *          long generation, long logId, long logSequence (see {@link SnapshotInfo})
+ * strings  int supplierCount, then supplierCount x [int len][utf-8]
+ * columns  int[itemCount] quantity
+ *          long[itemCount] price (raw double bits)
+ *          int[itemCount] supplier code (index into the string table)
+ * rows     itemCount x [int len][utf-8 id][int len][utf-8 name]
+ * trailer  int crc32c of everything before the trailer
+ * </pre>
+ *
+ * Version 2 files, whose header ends after itemCount, and version 1 files,
+ * whose checksum also starts after the header, are still read.
+ *
+ * All I/O goes through a {@link FileChannel} and a large direct buffer that
+ * each thread allocates once and reuses. The checksum is verified before any
+ * item is handed out.
+ */
+public class BinaryInventoryStorage implements InventoryFileStorage {
+
+    /** File extension that selects this format. */
+    public static final String EXTENSION = ".ims";
+
+    private static final int MAGIC = 0x494D5342; // "IMSB"
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 36;
+    private static final int OLD_HEADER_BYTES = 12; // versions 1 and 2
+    private static final int BUFFER_BYTES = 8 << 20;
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    // Taken while in use, so a nested call on the same thread gets its own buffer
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<>();
+
+    public static boolean handles(String fileName) {
+        return fileName != null && fileName.endsWith(EXTENSION);
+    }
+
+    @Override
+    public List<Item> loadAll(String fileName) throws IOException {
+        List<Item> items = new ArrayList<>();
+        loadInChunks(fileName, 64 * 1024, items::addAll);
+        return items;
+    }
+
+    @Override
+    public void saveAll(List<Item> items, String fileName, SnapshotInfo info) throws IOException {
+        int n = items.size();
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> suppliers = new ArrayList<>();
+        int[] supplierCodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            String supplier = items.get(i).getSupplier();
+            Integer code = codes.get(supplier);
+            if (code == null) {
+                code = suppliers.size();
+                codes.put(supplier, code);
+                suppliers.add(supplier);
+            }
+            supplierCodes[i] = code;
+        }
+
+        Path path = Path.of(fileName);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer buffer = takeBuffer();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Writer out = new Writer(channel, buffer);
+            out.buf.putInt(MAGIC).putInt(VERSION).putInt(n)
+                    .putLong(info.generation()).putLong(info.logId()).putLong(info.logSequence());
+
+            out.putInt(suppliers.size());
+            for (String s : suppliers)
+                out.putString(s);
+            for (int i = 0; i < n; i++)
+                out.putInt(items.get(i).getQuantity());
+            for (int i = 0; i < n; i++)
+                out.putLong(Double.doubleToRawLongBits(items.get(i).getPrice()));
+            for (int i = 0; i < n; i++)
+                out.putInt(supplierCodes[i]);
+            for (int i = 0; i < n; i++) {
+                Item it = items.get(i);
+                out.putString(it.getId());
+                out.putString(it.getName());
+            }
+            out.finish();
+            channel.force(true);
+        } finally {
+            releaseBuffer(buffer);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Verifies the checksum, then streams items in file order. Only the fixed
+     * columns (16 bytes per item) are held for the whole file; rows are
+     * decoded chunk by chunk.
+     */
+    @Override
+    public long loadInChunks(String fileName, int chunkSize, Consumer<List<Item>> sink) throws IOException {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize must be > 0");
+        ByteBuffer buffer = takeBuffer();
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            int version = verifyChecksum(channel, fileName, buffer);
+
+            Reader in = new Reader(channel, buffer);
+            in.require(headerBytes(version));
+            in.buf.position(8); // magic and version were checked with the checksum
+            int n = in.buf.getInt();
+            in.buf.position(headerBytes(version));
+            if (n < 0)
+                throw new IOException("corrupt snapshot header: " + fileName);
+
+            int supplierCount = in.getInt();
+            if (supplierCount < 0)
+                throw new IOException("corrupt string table: " + fileName);
+            String[] suppliers = new String[supplierCount];
+            for (int i = 0; i < supplierCount; i++)
+                suppliers[i] = in.getString();
+
+            int[] quantities = new int[n];
+            for (int i = 0; i < n; i++)
+                quantities[i] = in.getInt();
+            long[] prices = new long[n];
+            for (int i = 0; i < n; i++)
+                prices[i] = in.getLong();
+            int[] supplierCodes = new int[n];
+            for (int i = 0; i < n; i++)
+                supplierCodes[i] = in.getInt();
+
+            List<Item> chunk = new ArrayList<>(Math.min(chunkSize, n));
+            for (int i = 0; i < n; i++) {
+                String id = in.getString();
+                String name = in.getString();
+                chunk.add(new Item(id, name, quantities[i], Double.longBitsToDouble(prices[i]),
+                        suppliers[supplierCodes[i]]));
+                if (chunk.size() == chunkSize) {
+                    sink.accept(chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty())
+                sink.accept(chunk);
+            return n;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("corrupt snapshot: " + fileName, e);
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /** Reads the header only; the checksum covering it is verified when the snapshot is loaded. */
+    @Override
+    public SnapshotInfo readInfo(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0)
+                    break;
+            }
+            if (header.position() < OLD_HEADER_BYTES || header.getInt(0) != MAGIC)
+                throw new IOException("not an inventory snapshot: " + fileName);
+            int version = header.getInt(4);
+            if (version < VERSION)
+                return SnapshotInfo.NONE;
+            if (version > VERSION)
+                throw new IOException("unsupported snapshot version " + version + ": " + fileName);
+            if (header.hasRemaining())
+                throw new IOException("truncated snapshot: " + fileName);
+            return new SnapshotInfo(header.getLong(12), header.getLong(20), header.getLong(28));
+        }
+    }
+
+    /**
+     * Maps a snapshot for random access. Lookups by id binary-search the rows,
+     * so the snapshot must have been saved in id order; the checksum is
+     * verified once here. Snapshots over 2 GB are not supported.
+     */
+    public static IndexedSnapshot openIndexed(Path file) throws IOException {
+        String fileName = file.toString();
+        MappedByteBuffer map;
+        int version;
+        ByteBuffer buffer = takeBuffer();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            version = verifyChecksum(channel, fileName, buffer);
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("snapshot too large to map: " + fileName);
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            releaseBuffer(buffer);
+        }
+        try {
+            return new IndexedSnapshot(map, headerBytes(version), fileName);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("corrupt snapshot: " + fileName, e);
+        }
+    }
+
+    /**
+     * Checks magic and version, then the checksum, using buf as scratch space.
+     *
+     * @return the format version
+     */
+    private static int verifyChecksum(FileChannel channel, String fileName, ByteBuffer buf) throws IOException {
+        long size = channel.size();
+        if (size < OLD_HEADER_BYTES + 4)
+            throw new IOException("truncated snapshot: " + fileName);
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0)
+                throw new EOFException("truncated snapshot: " + fileName);
+        }
+        if (header.getInt(0) != MAGIC)
+            throw new IOException("not an inventory snapshot: " + fileName);
+        int version = header.getInt(4);
+        if (version < 1 || version > VERSION)
+            throw new IOException("unsupported snapshot version " + version + ": " + fileName);
+        if (size < headerBytes(version) + 4)
+            throw new IOException("truncated snapshot: " + fileName);
+
+        CRC32C crc = new CRC32C();
+        long pos = version == 1 ? OLD_HEADER_BYTES : 0; // version 1 left the header unchecked
+        long end = size - 4;
+        while (pos < end) {
+            buf.clear();
+            if (end - pos < buf.capacity())
+                buf.limit((int) (end - pos));
+            int read = channel.read(buf, pos);
+            if (read < 0)
+                throw new EOFException("truncated snapshot: " + fileName);
+            buf.flip();
+            crc.update(buf);
+            pos += read;
+        }
+        ByteBuffer trailer = ByteBuffer.allocate(4);
+        while (trailer.hasRemaining()) {
+            if (channel.read(trailer, end + trailer.position()) < 0)
+                throw new EOFException("truncated snapshot: " + fileName);
+        }
+        if (trailer.flip().getInt() != (int) crc.getValue())
+            throw new IOException("snapshot checksum mismatch: " + fileName);
+        return version;
+    }
+
+    private static int headerBytes(int version) {
+        return version < 3 ? OLD_HEADER_BYTES : HEADER_BYTES;
+    }
+
+    private static ByteBuffer takeBuffer() {
+        ByteBuffer buf = BUFFERS.get();
+        if (buf == null)
+            return ByteBuffer.allocateDirect(BUFFER_BYTES);
+        BUFFERS.set(null);
+        return buf.clear();
+    }
+
+    private static void releaseBuffer(ByteBuffer buf) {
+        BUFFERS.set(buf);
+    }
+
+    /** A memory-mapped snapshot saved in id order; see {@link #openIndexed(Path)}. */
+    public static final class IndexedSnapshot {
+        private final ByteBuffer map;
+        private final String[] suppliers;
+        private final int size;
+        private final int quantityColumn;
+        private final int priceColumn;
+        private final int supplierColumn;
+        private final int[] rowOffsets;
+
+        private IndexedSnapshot(ByteBuffer map, int headerBytes, String fileName) throws IOException {
+            this.map = map;
+            size = map.getInt(8); // magic and version were checked with the checksum
+            if (size < 0)
+                throw new IOException("corrupt snapshot header: " + fileName);
+
+            int pos = headerBytes;
+            int supplierCount = map.getInt(pos);
+            if (supplierCount < 0)
+                throw new IOException("corrupt string table: " + fileName);
+            pos += 4;
+            suppliers = new String[supplierCount];
+            for (int i = 0; i < supplierCount; i++) {
+                suppliers[i] = string(pos);
+                pos += 4 + map.getInt(pos);
+            }
+            quantityColumn = pos;
+            priceColumn = quantityColumn + 4 * size;
+            supplierColumn = priceColumn + 8 * size;
+
+            // One pass over the row lengths; strings are only decoded on lookup
+            rowOffsets = new int[size];
+            pos = supplierColumn + 4 * size;
+            for (int i = 0; i < size; i++) {
+                rowOffsets[i] = pos;
+                pos += 4 + map.getInt(pos);
+                pos += 4 + map.getInt(pos);
+            }
+            if (pos != map.capacity() - 4)
+                throw new IOException("corrupt snapshot rows: " + fileName);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Binary search by id. */
+        public Optional<Item> find(String id) {
+            int lo = 0;
+            int hi = size - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = string(rowOffsets[mid]).compareTo(id);
+                if (c < 0)
+                    lo = mid + 1;
+                else if (c > 0)
+                    hi = mid - 1;
+                else
+                    return Optional.of(item(mid));
+            }
+            return Optional.empty();
+        }
+
+        /** The i-th item, in file (id) order. */
+        public Item item(int i) {
+            int row = rowOffsets[i];
+            int nameAt = row + 4 + map.getInt(row);
+            return new Item(string(row), string(nameAt), map.getInt(quantityColumn + 4 * i),
+                    Double.longBitsToDouble(map.getLong(priceColumn + 8 * i)),
+                    suppliers[map.getInt(supplierColumn + 4 * i)]);
+        }
+
+        private String string(int at) {
+            int len = map.getInt(at);
+            if (len < 0 || len > MAX_STRING_BYTES)
+                throw new IllegalArgumentException("corrupt string length " + len);
+            byte[] bytes = new byte[len];
+            map.get(at + 4, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    // ---------- Buffered channel access ----------
+
+    private static final class Writer {
+        final FileChannel channel;
+        final ByteBuffer buf;
+        final CRC32C crc = new CRC32C();
+
+        Writer(FileChannel channel, ByteBuffer buf) {
+            this.channel = channel;
+            this.buf = buf;
+        }
+
+        void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes)
+                flush();
+        }
+
+        void putInt(int v) throws IOException {
+            ensure(4);
+            buf.putInt(v);
+        }
+
+        void putLong(long v) throws IOException {
+            ensure(8);
+            buf.putLong(v);
+        }
+
+        void putString(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_STRING_BYTES)
+                throw new IOException("string too long for snapshot: " + bytes.length + " bytes");
+            ensure(4 + bytes.length);
+            buf.putInt(bytes.length);
+            buf.put(bytes);
+        }
+
+        void flush() throws IOException {
+            buf.flip();
+            crc.update(buf.duplicate());
+            while (buf.hasRemaining())
+                channel.write(buf);
+            buf.clear();
+        }
+
+        void finish() throws IOException {
+            flush();
+            buf.putInt((int) crc.getValue()).flip();
+            while (buf.hasRemaining())
+                channel.write(buf);
+        }
+    }
+
+    private static final class Reader {
+        final FileChannel channel;
+        final ByteBuffer buf;
+        byte[] scratch = new byte[256];
+
+        Reader(FileChannel channel, ByteBuffer buf) {
+            this.channel = channel;
+            this.buf = buf;
+            buf.clear().limit(0);
+        }
+
+        /** Makes at least n bytes readable at the buffer's position. */
+        void require(int n) throws IOException {
+            if (buf.remaining() >= n)
+                return;
+            buf.compact();
+            while (buf.position() < n) {
+                if (channel.read(buf) < 0)
+                    throw new EOFException("truncated snapshot");
+            }
+            buf.flip();
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buf.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(8);
+            return buf.getLong();
+        }
+
+        String getString() throws IOException {
+            int len = getInt();
+            if (len < 0 || len > MAX_STRING_BYTES)
+                throw new IOException("corrupt string length " + len);
+            require(len);
+            if (len > scratch.length)
+                scratch = new byte[Math.max(len, scratch.length * 2)];
+            buf.get(scratch, 0, len);
+            return new String(scratch, 0, len, StandardCharsets.UTF_8);
+        }
+    }
+}
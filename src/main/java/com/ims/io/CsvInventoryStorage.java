@@ -3,58 +3,322 @@ package com.ims.io;
 import com.ims.model.Item;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 import java.io.*;
 
-interface InventoryFileStorage {
-    List<Item> loadAll(String fileName) throws IOException;
-
-	void saveAll(List<Item> items, String fileName) throws IOException;
-}
-
 //class for loading and saving from/to csv file
+//a snapshot with SnapshotInfo starts with one "# ims-snapshot ..." line before the column header
 public class CsvInventoryStorage implements InventoryFileStorage {
+	// Largest slice of the file mapped at once; a record may not be longer than this
+	private static final long MAP_WINDOW = 1L << 28;
+	private static final String INFO_PREFIX = "# ims-snapshot ";
+	private static final int MAX_INFO_LINE = 256;
+
 	@Override
 	public List<Item> loadAll(String fileName) throws IOException {
 		//create a new empty list object
         List<Item> items = new ArrayList<>();
-        int lineCount = 0;
-        
-        //try-with-resources to auto-close the file when finished reading
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-        	//skip the header line
-        	reader.readLine();
-        	
-        	String line;
-            while ((line = reader.readLine()) != null) {
-                //separates properties and add to list as new item
-                String[] properties = line.split(",");
-                Item item = new Item(properties[0], properties[1], Integer.parseInt(properties[2]), Double.parseDouble(properties[3]), properties[4]);
-                items.add(item);
-                //add to total lines read
-            	lineCount++;
-            }
-        }
-        catch (IOException e) {
-            e.printStackTrace();
-        }
-        System.out.println("[DEBUG] Successfully loaded" + lineCount + "items!");
+        loadInChunks(fileName, 8192, items::addAll);
         return items;
 	}
+
+	/**
+	 * Streams the file's items to {@code sink} in chunks of at most
+	 * {@code chunkSize}, so the whole file never has to be held in memory.
+	 * The file is memory-mapped and parsed straight from its bytes. The chunk
+	 * list is reused once the sink returns, so the sink must copy anything it
+	 * keeps.
+	 *
+	 * @return number of items read
+	 */
 	@Override
-	public void saveAll(List<Item> items, String fileName) throws IOException {
-		System.out.println("[DEBUG] Saving " + items.size() + " items (stubbed)");
-		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+	public long loadInChunks(String fileName, int chunkSize, Consumer<List<Item>> sink) throws IOException {
+		if (chunkSize <= 0)
+			throw new IllegalArgumentException("chunkSize must be > 0");
+		List<Item> chunk = new ArrayList<>(chunkSize);
+		long[] count = new long[1];
+		Consumer<Item> collector = item -> {
+			chunk.add(item);
+			if (chunk.size() == chunkSize) {
+				sink.accept(chunk);
+				count[0] += chunk.size();
+				chunk.clear();
+			}
+		};
+
+		try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long offset = 0;
+			CsvItemParser parser = null;
+			while (offset < size) {
+				int len = (int) Math.min(size - offset, MAP_WINDOW);
+				boolean eof = offset + len == size;
+				MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, offset, len);
+
+				int from = 0;
+				if (parser == null) {
+					// the column header, after the info line if there is one
+					int headerLines = buf.get(0) == '#' ? 2 : 1;
+					for (int i = 0; i < headerLines; i++)
+						from = CsvItemParser.skipLine(buf, from, len);
+					parser = new CsvItemParser(headerLines + 1);
+				}
+				int consumed = parser.parse(buf, from, len, eof, collector);
+				if (consumed == 0 && !eof)
+					throw new IOException("Record at line " + parser.line() + " exceeds " + MAP_WINDOW + " bytes");
+				offset += consumed;
+				if (eof)
+					break;
+			}
+		}
+		if (!chunk.isEmpty()) {
+			sink.accept(chunk);
+			count[0] += chunk.size();
+			chunk.clear();
+		}
+		return count[0];
+	}
+
+	/**
+	 * Parallel variant of {@link #loadInChunks}: the file is cut into segments
+	 * at line boundaries, the segments are parsed concurrently on {@code pool},
+	 * and each segment's items are handed to {@code sink} in file order, so
+	 * duplicate ids still resolve last-occurrence-wins. The sink is only ever
+	 * called from one thread at a time.
+	 *
+	 * Segments are cut only at line breaks outside quoted fields. Finding them
+	 * takes one sequential pass over the bytes, which is much cheaper than
+	 * the parsing it lets run in parallel.
+	 *
+	 * @param segments number of segments to parse; a few per core keeps all
+	 *                 workers busy when segments parse at different speeds
+	 * @return number of items read
+	 */
+	public long loadParallel(String fileName, int segments, ForkJoinPool pool, Consumer<List<Item>> sink)
+			throws IOException {
+		if (segments <= 0)
+			throw new IllegalArgumentException("segments must be > 0");
+		try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long dataStart = scanToNewline(channel, 0, size); // skip header
+			if (size > 0 && firstByte(channel) == '#')
+				dataStart = scanToNewline(channel, dataStart, size); // info line came first
+			long dataLength = size - dataStart;
+			if (dataLength <= 0)
+				return 0;
+
+			int count = (int) Math.max(segments, (dataLength + MAP_WINDOW - 1) / MAP_WINDOW);
+			long[] bounds = new long[count + 1];
+			for (int i = 0; i < count; i++)
+				bounds[i] = dataStart + dataLength * i / count;
+			bounds[count] = size;
+			alignToRecords(channel, bounds);
+
+			List<ForkJoinTask<List<Item>>> tasks = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				long from = bounds[i];
+				long to = bounds[i + 1];
+				if (to - from > MAP_WINDOW)
+					throw new IOException("Record near byte " + from + " exceeds " + MAP_WINDOW + " bytes");
+				tasks.add(pool.submit(new SegmentTask(channel, from, to)));
+			}
+
+			// Hand segments over in file order as they complete
+			long total = 0;
+			for (ForkJoinTask<List<Item>> task : tasks) {
+				List<Item> items;
+				try {
+					items = task.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					tasks.forEach(t -> t.cancel(true));
+					throw new InterruptedIOException("parallel load interrupted");
+				} catch (ExecutionException e) {
+					tasks.forEach(t -> t.cancel(true));
+					if (e.getCause() instanceof UncheckedIOException)
+						throw ((UncheckedIOException) e.getCause()).getCause();
+					throw new IOException("parallel load failed", e.getCause());
+				}
+				if (!items.isEmpty())
+					sink.accept(items);
+				total += items.size();
+			}
+			return total;
+		}
+	}
+
+	private static byte firstByte(FileChannel channel) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(1);
+		return channel.read(b, 0) == 1 ? b.get(0) : 0;
+	}
+
+	// offset just past the first line break at or after pos, or size if there is none
+	private static long scanToNewline(FileChannel channel, long pos, long size) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(8192);
+		while (pos < size) {
+			buf.clear();
+			int n = channel.read(buf, pos);
+			if (n <= 0)
+				break;
+			for (int i = 0; i < n; i++) {
+				if (buf.get(i) == '\n')
+					return pos + i + 1;
+			}
+			pos += n;
+		}
+		return size;
+	}
+
+	/**
+	 * Moves each inner bound forward to the start of the first record at or
+	 * after it. Quote state is tracked from bounds[0] the way CsvItemParser
+	 * reads it: a quote opens a field only at the field's start, and a doubled
+	 * quote inside a quoted field is an escaped quote.
+	 */
+	private static void alignToRecords(FileChannel channel, long[] bounds) throws IOException {
+		int last = bounds.length - 1;
+		long size = bounds[last];
+		int next = 1;
+		while (next < last && bounds[next] <= bounds[0])
+			bounds[next++] = bounds[0];
+		ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+		boolean quoted = false;
+		boolean fieldStart = true;
+		boolean closed = false; // previous byte closed a quoted field
+		long pos = bounds[0];
+		while (next < last && pos < size) {
+			buf.clear();
+			int n = channel.read(buf, pos);
+			if (n <= 0)
+				break;
+			for (int i = 0; i < n && next < last; i++) {
+				byte b = buf.get(i);
+				if (quoted) {
+					if (b == '"') {
+						quoted = false;
+						closed = true;
+					}
+					continue;
+				}
+				if (b == '"' && (fieldStart || closed)) {
+					quoted = true; // opens the field, or "" inside it
+				} else if (b == '\n') {
+					long lineStart = pos + i + 1;
+					while (next < last && bounds[next] <= lineStart)
+						bounds[next++] = lineStart;
+				}
+				closed = false;
+				fieldStart = b == ',' || b == '\n';
+			}
+			pos += n;
+		}
+		while (next < last)
+			bounds[next++] = size;
+	}
+
+	// parses one line-aligned byte range of the file; never serialized
+	@SuppressWarnings("serial")
+	private static final class SegmentTask extends RecursiveTask<List<Item>> {
+		private final FileChannel channel;
+		private final long from;
+		private final long to;
+
+		SegmentTask(FileChannel channel, long from, long to) {
+			this.channel = channel;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<Item> compute() {
+			List<Item> items = new ArrayList<>();
+			if (from >= to)
+				return items;
+			try {
+				MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+				new CsvItemParser("segment @" + from + " line", 1).parse(buf, 0, (int) (to - from), true, items::add);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return items;
+		}
+	}
+
+	@Override
+	public void saveAll(List<Item> items, String fileName, SnapshotInfo info) throws IOException {
+		Path path = Path.of(fileName);
+		Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+				BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+			if (!info.equals(SnapshotInfo.NONE)) {
+				writer.write(INFO_PREFIX + "generation=" + info.generation() + " log=" + info.logId()
+						+ " sequence=" + info.logSequence());
+				writer.newLine();
+			}
 			writer.write("ID, Name, Quantity, Price, Supplier\n");
 			for (Item item1 : items) {
-    			writer.write(item1.getId() + "," + item1.getName() + "," + item1.getQuantity() + "," + item1.getPrice() + "," + item1.getSupplier());
+    			writer.write(csvField(item1.getId()) + "," + csvField(item1.getName()) + "," + item1.getQuantity() + "," + item1.getPrice() + "," + csvField(item1.getSupplier()));
                 writer.newLine();
             }
+			writer.flush();
+			out.getFD().sync();
         }
-        catch (IOException e) {
-            e.printStackTrace();
-        }
-		System.out.println("[DEBUG] Successfully saved all items!");
+		// the old file stays in place until the new one is complete on disk
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Override
+	public SnapshotInfo readInfo(String fileName) throws IOException {
+		byte[] bytes;
+		try (InputStream in = Files.newInputStream(Path.of(fileName))) {
+			bytes = in.readNBytes(MAX_INFO_LINE);
+		}
+		String head = new String(bytes, StandardCharsets.US_ASCII);
+		if (!head.startsWith(INFO_PREFIX))
+			return SnapshotInfo.NONE;
+		int end = head.indexOf('\n');
+		if (end < 0)
+			throw new IOException("Malformed snapshot info line in " + fileName);
+		long generation = 0;
+		long log = 0;
+		long sequence = SnapshotInfo.NO_SEQUENCE;
+		try {
+			for (String field : head.substring(INFO_PREFIX.length(), end).trim().split(" ")) {
+				// keys this version does not know are skipped
+				if (field.startsWith("generation="))
+					generation = Long.parseLong(field.substring(11));
+				else if (field.startsWith("log="))
+					log = Long.parseLong(field.substring(4));
+				else if (field.startsWith("sequence="))
+					sequence = Long.parseLong(field.substring(9));
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Malformed snapshot info line in " + fileName, e);
+		}
+		return new SnapshotInfo(generation, log, sequence);
+	}
+
+	// quote a text field if it contains a separator, quote or line break
+	private static String csvField(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == ',' || c == '"' || c == '\n' || c == '\r')
+				return '"' + value.replace("\"", "\"\"") + '"';
+		}
+		return value;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,331 @@
+package com.ims.io;
+
+import com.ims.model.Item;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Byte-level parser for the inventory CSV layout
+ * {@code id,name,quantity,price,supplier}.
+ *
+ * Works directly on a (typically memory-mapped) {@link ByteBuffer} using
+ * absolute reads: no line strings, no split arrays, and quantity/price are
+ * parsed from the bytes. Only the three text fields become Strings, since
+ * {@link Item} needs them. Fields may be quoted RFC 4180 style, so commas,
+ * quotes ({@code ""}) and line breaks inside quotes are preserved.
+ *
+ * Not thread-safe; use one instance per thread.
+ */
+final class CsvItemParser {
+
+    private static final int FIELDS = 5;
+    private static final int INCOMPLETE = -1;
+
+    // Exact powers of ten representable as doubles (10^0..10^22)
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++)
+            POW10[i] = POW10[i - 1] * 10;
+    }
+
+    private final int[] fieldStart = new int[FIELDS];
+    private final int[] fieldEnd = new int[FIELDS];
+    private final boolean[] fieldQuoted = new boolean[FIELDS];
+    private byte[] scratch = new byte[256];
+    private final String location;
+    private long line;
+
+    /**
+     * @param firstLine 1-based line number of the first record, for error messages
+     */
+    CsvItemParser(long firstLine) {
+        this("line", firstLine);
+    }
+
+    /**
+     * @param location  prefix for error messages, e.g. which file segment is parsed
+     * @param firstLine line number of the first record relative to location
+     */
+    CsvItemParser(String location, long firstLine) {
+        this.location = location;
+        this.line = firstLine;
+    }
+
+    /**
+     * Parses every complete record in {@code [from, to)}.
+     *
+     * @param eof true if {@code to} is the end of the input, so a final record
+     *            without a trailing newline is complete
+     * @return offset of the first byte not consumed: {@code to} when everything
+     *         was parsed, otherwise the start of a trailing partial record
+     */
+    int parse(ByteBuffer buf, int from, int to, boolean eof, Consumer<Item> sink) throws IOException {
+        int pos = from;
+        while (pos < to) {
+            int next = parseRecord(buf, pos, to, eof);
+            if (next == INCOMPLETE)
+                return pos;
+            if (next >= 0) {
+                sink.accept(toItem(buf));
+                pos = next;
+            } else {
+                pos = -2 - next; // blank line
+            }
+            line++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the offset of the byte at which the line after {@code pos}
+     * starts, honouring quotes, or {@code to} if there is none.
+     */
+    static int skipLine(ByteBuffer buf, int pos, int to) {
+        boolean quoted = false;
+        while (pos < to) {
+            byte b = buf.get(pos++);
+            if (b == '"')
+                quoted = !quoted;
+            else if (b == '\n' && !quoted)
+                return pos;
+        }
+        return to;
+    }
+
+    long line() {
+        return line;
+    }
+
+    // ---------- Record scanning ----------
+
+    /**
+     * Scans one record starting at pos, filling the field offset arrays.
+     *
+     * @return offset after the record's line terminator; {@code -2 - next} for
+     *         a blank line (next = offset after it); {@link #INCOMPLETE} if the
+     *         buffer ends mid-record and {@code eof} is false
+     */
+    private int parseRecord(ByteBuffer buf, int pos, int to, boolean eof) throws IOException {
+        // Blank line (LF, CRLF, or a CR ending the input)
+        byte first = buf.get(pos);
+        if (first == '\n')
+            return -2 - (pos + 1);
+        if (first == '\r' && pos + 1 < to && buf.get(pos + 1) == '\n')
+            return -2 - (pos + 2);
+        if (first == '\r' && pos + 1 == to)
+            return eof ? -2 - to : INCOMPLETE;
+
+        int field = 0;
+        while (true) {
+            if (field == FIELDS)
+                throw malformed("too many fields");
+
+            int start = pos;
+            boolean quoted = pos < to && buf.get(pos) == '"';
+            if (quoted) {
+                pos++;
+                start = pos;
+                while (true) {
+                    if (pos >= to)
+                        return incompleteOrFail(eof, "unterminated quoted field");
+                    byte b = buf.get(pos);
+                    if (b == '"') {
+                        if (pos + 1 < to && buf.get(pos + 1) == '"') {
+                            pos += 2; // escaped quote
+                            continue;
+                        }
+                        if (pos + 1 >= to && !eof)
+                            return INCOMPLETE; // can't tell yet whether it is escaped
+                        break;
+                    }
+                    pos++;
+                }
+                fieldStart[field] = start;
+                fieldEnd[field] = pos;
+                fieldQuoted[field] = true;
+                pos++; // closing quote
+            } else {
+                while (pos < to) {
+                    byte b = buf.get(pos);
+                    if (b == ',' || b == '\n')
+                        break;
+                    pos++;
+                }
+                fieldStart[field] = start;
+                int end = pos;
+                if (end > start && buf.get(end - 1) == '\r' && (pos >= to || buf.get(pos) == '\n'))
+                    end--;
+                fieldEnd[field] = end;
+                fieldQuoted[field] = false;
+            }
+            field++;
+
+            if (pos >= to) {
+                if (!eof)
+                    return INCOMPLETE;
+                if (field != FIELDS)
+                    throw malformed("expected " + FIELDS + " fields but found " + field);
+                return to;
+            }
+            byte sep = buf.get(pos);
+            if (sep == '\r' && pos + 1 == to) {
+                // CR as the last byte: the input's line end, or the first half of a CRLF
+                if (!eof)
+                    return INCOMPLETE;
+                if (field != FIELDS)
+                    throw malformed("expected " + FIELDS + " fields but found " + field);
+                return to;
+            }
+            if (sep == '\r' && buf.get(pos + 1) == '\n')
+                sep = buf.get(++pos);
+            if (sep == ',') {
+                pos++;
+                continue;
+            }
+            if (sep == '\n') {
+                if (field != FIELDS)
+                    throw malformed("expected " + FIELDS + " fields but found " + field);
+                return pos + 1;
+            }
+            throw malformed("unexpected character after quoted field");
+        }
+    }
+
+    private int incompleteOrFail(boolean eof, String message) throws IOException {
+        if (!eof)
+            return INCOMPLETE;
+        throw malformed(message);
+    }
+
+    private IOException malformed(String message) {
+        return new IOException("Malformed CSV at " + location + " " + line + ": " + message);
+    }
+
+    // ---------- Field conversion ----------
+
+    private Item toItem(ByteBuffer buf) throws IOException {
+        try {
+            return new Item(
+                    text(buf, 0),
+                    text(buf, 1),
+                    parseInt(buf, fieldStart[2], fieldEnd[2]),
+                    parseDouble(buf, fieldStart[3], fieldEnd[3]),
+                    text(buf, 4));
+        } catch (IllegalArgumentException e) {
+            throw malformed(e.getMessage());
+        }
+    }
+
+    private String text(ByteBuffer buf, int field) {
+        int start = fieldStart[field];
+        int len = fieldEnd[field] - start;
+        if (len > scratch.length)
+            scratch = new byte[Math.max(len, scratch.length * 2)];
+        buf.get(start, scratch, 0, len);
+        if (fieldQuoted[field]) {
+            // Collapse "" to "
+            int w = 0;
+            for (int r = 0; r < len; r++) {
+                scratch[w++] = scratch[r];
+                if (scratch[r] == '"')
+                    r++;
+            }
+            len = w;
+        }
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private static int skipSpaces(ByteBuffer buf, int pos, int end) {
+        while (pos < end && buf.get(pos) == ' ')
+            pos++;
+        return pos;
+    }
+
+    private static int trimSpaces(ByteBuffer buf, int start, int end) {
+        while (end > start && buf.get(end - 1) == ' ')
+            end--;
+        return end;
+    }
+
+    static int parseInt(ByteBuffer buf, int start, int end) {
+        start = skipSpaces(buf, start, end);
+        end = trimSpaces(buf, start, end);
+        if (start == end)
+            throw new NumberFormatException("empty quantity");
+        boolean negative = false;
+        byte b = buf.get(start);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            start++;
+            if (start == end)
+                throw new NumberFormatException("invalid quantity");
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9)
+                throw new NumberFormatException("invalid quantity");
+            value = value * 10 + d;
+            if (value > (long) Integer.MAX_VALUE + 1)
+                throw new NumberFormatException("quantity out of range");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+            throw new NumberFormatException("quantity out of range");
+        return (int) value;
+    }
+
+    /**
+     * Fast path for plain decimals like {@code 322.99}: with at most 15
+     * significant digits and 22 fraction digits, mantissa / 10^k is a single
+     * correctly rounded division, so the result matches
+     * {@link Double#parseDouble}. Anything else falls back to it.
+     */
+    static double parseDouble(ByteBuffer buf, int start, int end) {
+        start = skipSpaces(buf, start, end);
+        end = trimSpaces(buf, start, end);
+        if (start == end)
+            throw new NumberFormatException("empty price");
+
+        int i = start;
+        boolean negative = false;
+        byte b = buf.get(i);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            i++;
+        }
+        long mantissa = 0;
+        boolean anyDigit = false;
+        int digits = 0;
+        int fraction = -1;
+        boolean fast = i < end;
+        for (; i < end; i++) {
+            b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                anyDigit = true;
+                if (mantissa != 0)
+                    digits++;
+                if (fraction >= 0)
+                    fraction++;
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                fast = false;
+                break;
+            }
+        }
+        if (fast && anyDigit && digits <= 15 && fraction < POW10.length) {
+            double v = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+            return negative ? -v : v;
+        }
+
+        byte[] tmp = new byte[end - start];
+        buf.get(start, tmp, 0, tmp.length);
+        return Double.parseDouble(new String(tmp, StandardCharsets.US_ASCII));
+    }
+}
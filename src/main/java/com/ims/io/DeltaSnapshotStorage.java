@@ -0,0 +1,279 @@
+package com.ims.io;
+
+import com.ims.model.Item;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Incremental snapshots on top of a full base snapshot.
+ *
+ * A delta holds the items upserted and the ids deleted since the previous
+ * save. Deltas for base {@code inventory.ims} are named
+ * {@code inventory.ims.delta.000001}, {@code .000002}, ... and are applied in
+ * that order. {@link #compact} folds them into a new base.
+ *
+ * Each delta carries a {@link SnapshotInfo}: the generation of the base it
+ * was written against, and the movement log position it reaches. Deltas of
+ * another generation, e.g. left behind by a crash just after a new base was
+ * written, are never applied.
+ *
+ * Not thread-safe; callers serialize writes, compaction and loads.
+ *
+ * <pre>
+ * header   int magic "IMSD", int version, long baseGeneration, long logId,
+ *          long logSequence, int upsertCount, int deleteCount
+ * upserts  upsertCount x [id][name][int quantity][long price bits][supplier]
+ * deletes  deleteCount x [id]
+ * trailer  int crc32c of everything before it
+ * </pre>
+ * Strings are {@code [int len][utf-8]}. Version 1 deltas, whose header
+ * ends after version, are still read.
+ */
+public class DeltaSnapshotStorage {
+
+    private static final int MAGIC = 0x494D5344; // "IMSD"
+    private static final int VERSION = 2;
+    private static final String DELTA_INFIX = ".delta.";
+
+    private final InventoryFileStorage csv;
+    private final InventoryFileStorage binary;
+
+    public DeltaSnapshotStorage(InventoryFileStorage csv, InventoryFileStorage binary) {
+        this.csv = csv;
+        this.binary = binary;
+    }
+
+    /**
+     * Writes the next delta for baseFile and returns its path.
+     *
+     * @param info generation of baseFile, and the log position the delta reaches
+     */
+    public Path writeDelta(String baseFile, SnapshotInfo info, Collection<Item> upserts, Collection<String> deletes)
+            throws IOException {
+        int size = 40 + 4;
+        List<byte[][]> encoded = new ArrayList<>(upserts.size());
+        for (Item it : upserts) {
+            byte[][] fields = {
+                    utf8(it.getId()), utf8(it.getName()), utf8(it.getSupplier())
+            };
+            encoded.add(fields);
+            size += 12 + fields[0].length + fields[1].length + fields[2].length + 12;
+        }
+        List<byte[]> deleted = new ArrayList<>(deletes.size());
+        for (String id : deletes) {
+            byte[] b = utf8(id);
+            deleted.add(b);
+            size += 4 + b.length;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC).putInt(VERSION)
+                .putLong(info.generation()).putLong(info.logId()).putLong(info.logSequence())
+                .putInt(upserts.size()).putInt(deletes.size());
+        int i = 0;
+        for (Item it : upserts) {
+            byte[][] fields = encoded.get(i++);
+            putBytes(buf, fields[0]);
+            putBytes(buf, fields[1]);
+            buf.putInt(it.getQuantity());
+            buf.putLong(Double.doubleToRawLongBits(it.getPrice()));
+            putBytes(buf, fields[2]);
+        }
+        for (byte[] b : deleted)
+            putBytes(buf, b);
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), 0, buf.position());
+        buf.putInt((int) crc.getValue());
+        buf.flip();
+
+        List<Path> existing = deltasFor(baseFile);
+        long next = existing.isEmpty() ? 1 : sequenceOf(existing.get(existing.size() - 1)) + 1;
+        Path target = deltaPath(baseFile, next);
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining())
+                ch.write(buf);
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /** Existing deltas for baseFile, oldest first. */
+    public List<Path> deltasFor(String baseFile) throws IOException {
+        Path base = Path.of(baseFile).toAbsolutePath();
+        Path dir = base.getParent();
+        String prefix = base.getFileName() + DELTA_INFIX;
+        List<Path> deltas = new ArrayList<>();
+        if (dir == null || !Files.isDirectory(dir))
+            return deltas;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path p : stream) {
+                String suffix = p.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit))
+                    deltas.add(p);
+            }
+        }
+        deltas.sort((a, b) -> Long.compare(sequenceOf(a), sequenceOf(b)));
+        return deltas;
+    }
+
+    /**
+     * Replays, oldest first, the deltas of baseFile written against base,
+     * skipping any of another generation.
+     *
+     * @return the log position reached: that of the last delta applied, or base's
+     */
+    public SnapshotInfo applyDeltas(String baseFile, SnapshotInfo base, Consumer<Item> upsert,
+            Consumer<String> delete) throws IOException {
+        SnapshotInfo position = base;
+        for (Path d : deltasFor(baseFile)) {
+            SnapshotInfo info = read(d, base.generation(), upsert, delete);
+            if (info != null)
+                position = info;
+        }
+        return position;
+    }
+
+    /**
+     * Replays one delta: upserts first, then deletes.
+     *
+     * @return the info it was written with; {@link SnapshotInfo#NONE} for version 1
+     */
+    public SnapshotInfo readDelta(Path delta, Consumer<Item> upsert, Consumer<String> delete) throws IOException {
+        return read(delta, null, upsert, delete);
+    }
+
+    // null without replaying anything if generation is given and the delta's differs
+    private SnapshotInfo read(Path delta, Long generation, Consumer<Item> upsert, Consumer<String> delete)
+            throws IOException {
+        byte[] bytes = Files.readAllBytes(delta);
+        if (bytes.length < 20)
+            throw new IOException("truncated delta: " + delta);
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bytes.length - 4);
+        if ((int) crc.getValue() != buf.getInt(bytes.length - 4))
+            throw new IOException("delta checksum mismatch: " + delta);
+        buf.limit(bytes.length - 4);
+
+        if (buf.getInt() != MAGIC)
+            throw new IOException("not a delta snapshot: " + delta);
+        int version = buf.getInt();
+        if (version != 1 && version != VERSION)
+            throw new IOException("unsupported delta version " + version + ": " + delta);
+        SnapshotInfo info = SnapshotInfo.NONE;
+        try {
+            if (version == VERSION)
+                info = new SnapshotInfo(buf.getLong(), buf.getLong(), buf.getLong());
+            if (generation != null && info.generation() != generation)
+                return null;
+            int upserts = buf.getInt();
+            int deletes = buf.getInt();
+            for (int i = 0; i < upserts; i++) {
+                String id = getString(buf);
+                String name = getString(buf);
+                int quantity = buf.getInt();
+                double price = Double.longBitsToDouble(buf.getLong());
+                String supplier = getString(buf);
+                upsert.accept(new Item(id, name, quantity, price, supplier));
+            }
+            for (int i = 0; i < deletes; i++)
+                delete.accept(getString(buf));
+        } catch (RuntimeException e) {
+            throw new IOException("corrupt delta: " + delta, e);
+        }
+        return info;
+    }
+
+    /** Removes every delta of baseFile, e.g. after a full save replaced the base. */
+    public void deleteDeltas(String baseFile) throws IOException {
+        for (Path p : deltasFor(baseFile))
+            Files.deleteIfExists(p);
+    }
+
+    /**
+     * Folds base plus its deltas into a new base of a new generation,
+     * written atomically in the base's own format, then removes the deltas,
+     * including any stale ones. The new base reaches the same log position
+     * as its last delta. A crash before the deltas are gone leaves deltas of
+     * the old generation, which are then ignored.
+     *
+     * @return number of deltas folded
+     */
+    public int compact(String baseFile) throws IOException {
+        List<Path> deltas = deltasFor(baseFile);
+        if (deltas.isEmpty())
+            return 0;
+        InventoryFileStorage format = formatOf(baseFile);
+        Map<String, Item> merged = new LinkedHashMap<>();
+        SnapshotInfo base = format.readInfo(baseFile);
+        format.loadInChunks(baseFile, 64 * 1024, chunk -> {
+            for (Item it : chunk)
+                merged.put(it.getId(), it);
+        });
+        int folded = 0;
+        SnapshotInfo position = base;
+        for (Path d : deltas) {
+            SnapshotInfo info = read(d, base.generation(), it -> merged.put(it.getId(), it), merged::remove);
+            if (info != null) {
+                position = info;
+                folded++;
+            }
+        }
+
+        // A base without info keeps none, so loading it still replays the whole log; its
+        // deltas then still match after a crash, but reapplying them in order is harmless
+        SnapshotInfo info = base.equals(SnapshotInfo.NONE) ? base : position.nextGeneration();
+        format.saveAll(new ArrayList<>(merged.values()), baseFile, info);
+        for (Path d : deltas)
+            Files.deleteIfExists(d);
+        return folded;
+    }
+
+    private InventoryFileStorage formatOf(String fileName) {
+        return BinaryInventoryStorage.handles(fileName) ? binary : csv;
+    }
+
+    private static Path deltaPath(String baseFile, long seq) {
+        Path base = Path.of(baseFile);
+        return base.resolveSibling(base.getFileName() + DELTA_INFIX + String.format("%06d", seq));
+    }
+
+    private static long sequenceOf(Path delta) {
+        String name = delta.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('.') + 1));
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putBytes(ByteBuffer buf, byte[] bytes) {
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getInt();
+        String s = new String(buf.array(), buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+}
@@ -0,0 +1,39 @@
+package com.ims.io;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Instants as signed nanoseconds since the epoch, the form in which history
+ * rows and checkpoint names store them. A long covers the years 1678 to 2261.
+ */
+final class EpochNanos {
+
+    static final long PER_SECOND = 1_000_000_000L;
+
+    private EpochNanos() {
+    }
+
+    /** Exact conversion; what names the kind of value in the error for instants out of range. */
+    static long of(Instant t, String what) {
+        try {
+            return Math.addExact(Math.multiplyExact(t.getEpochSecond(), PER_SECOND), t.getNano());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(what + " out of range: " + t);
+        }
+    }
+
+    /** For window bounds: instants out of range become Long.MIN_VALUE or Long.MAX_VALUE. */
+    static long clamp(Instant t) {
+        Objects.requireNonNull(t, "window bound");
+        if (t.getEpochSecond() >= Long.MAX_VALUE / PER_SECOND)
+            return Long.MAX_VALUE;
+        if (t.getEpochSecond() <= Long.MIN_VALUE / PER_SECOND)
+            return Long.MIN_VALUE;
+        return t.getEpochSecond() * PER_SECOND + t.getNano();
+    }
+
+    static Instant toInstant(long nanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(nanos, PER_SECOND), Math.floorMod(nanos, PER_SECOND));
+    }
+}
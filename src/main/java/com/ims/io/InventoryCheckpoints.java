@@ -0,0 +1,171 @@
+package com.ims.io;
+
+import com.ims.model.Item;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Timestamped full snapshots of the inventory for point-in-time queries,
+ * kept as {@code checkpoint-<epochNanos>-<mark>.ims} files in one directory.
+ * The mark is the {@link MovementHistoryStore#mark() history mark} taken
+ * together with the snapshot, and is what queries replay movements from; the
+ * time only picks which checkpoint is nearest. Older files named without a
+ * mark are ignored.
+ *
+ * Each checkpoint is a {@link BinaryInventoryStorage} snapshot written in id
+ * order, so a single item is found by binary search over the mapped file
+ * instead of by loading it. The few most recently used checkpoints stay
+ * mapped.
+ */
+public class InventoryCheckpoints {
+
+    private static final Pattern NAME = Pattern.compile("checkpoint-(-?\\d+)-(\\d+)\\.ims");
+    private static final int OPEN_CHECKPOINTS = 4;
+
+    private final Path directory;
+    private final BinaryInventoryStorage storage = new BinaryInventoryStorage();
+    private final ConcurrentSkipListMap<Long, Entry> files = new ConcurrentSkipListMap<>();
+
+    // Access-ordered: the eldest entry is the least recently used checkpoint
+    private final Map<Long, BinaryInventoryStorage.IndexedSnapshot> open =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, BinaryInventoryStorage.IndexedSnapshot> e) {
+                    return size() > OPEN_CHECKPOINTS;
+                }
+            };
+
+    public InventoryCheckpoints(Path directory) throws IOException {
+        this.directory = Objects.requireNonNull(directory, "directory");
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "checkpoint-*")) {
+            for (Path file : entries) {
+                Matcher m = NAME.matcher(file.getFileName().toString());
+                if (m.matches())
+                    files.put(Long.parseLong(m.group(1)), new Entry(file, Long.parseLong(m.group(2))));
+            }
+        }
+    }
+
+    /**
+     * Writes items (in any order) as the state of the inventory at history
+     * mark, taken at about time at.
+     */
+    public void write(List<Item> items, Instant at, long mark) throws IOException {
+        if (mark < 0)
+            throw new IllegalArgumentException("mark must be >= 0");
+        long key = EpochNanos.of(at, "checkpoint time");
+        List<Item> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparing(Item::getId));
+        Path file = directory.resolve("checkpoint-" + key + "-" + mark + ".ims");
+        storage.saveAll(sorted, file.toString());
+        synchronized (open) {
+            open.remove(key); // replaced on disk
+        }
+        Entry previous = files.put(key, new Entry(file, mark));
+        if (previous != null && !previous.file().equals(file))
+            Files.deleteIfExists(previous.file());
+    }
+
+    /**
+     * The checkpoint nearest to at: the latest one at or before it, or if
+     * there is none, the earliest one after it.
+     */
+    public Optional<Checkpoint> nearest(Instant at) {
+        long key = EpochNanos.clamp(at);
+        Map.Entry<Long, Entry> e = files.floorEntry(key);
+        if (e == null)
+            e = files.ceilingEntry(key);
+        return e == null ? Optional.empty() : Optional.of(new Checkpoint(e.getKey(), e.getValue().mark()));
+    }
+
+    /** Checkpoint times, oldest first. */
+    public List<Instant> list() {
+        List<Instant> times = new ArrayList<>(files.size());
+        for (long key : files.keySet())
+            times.add(EpochNanos.toInstant(key));
+        return times;
+    }
+
+    /** Deletes checkpoints taken before the given time. */
+    public void deleteBefore(Instant before) throws IOException {
+        for (Map.Entry<Long, Entry> e : files.headMap(EpochNanos.clamp(before)).entrySet()) {
+            synchronized (open) {
+                open.remove(e.getKey());
+            }
+            files.remove(e.getKey());
+            Files.deleteIfExists(e.getValue().file());
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    private BinaryInventoryStorage.IndexedSnapshot snapshot(long key) throws IOException {
+        synchronized (open) {
+            BinaryInventoryStorage.IndexedSnapshot s = open.get(key);
+            if (s != null)
+                return s;
+        }
+        Entry entry = files.get(key);
+        if (entry == null)
+            throw new IOException("checkpoint was deleted: " + EpochNanos.toInstant(key));
+        // Mapped and indexed outside the lock; a concurrent open of the same file is only wasted work
+        BinaryInventoryStorage.IndexedSnapshot s = BinaryInventoryStorage.openIndexed(entry.file());
+        synchronized (open) {
+            open.put(key, s);
+        }
+        return s;
+    }
+
+    private record Entry(Path file, long mark) {
+    }
+
+    /** One checkpoint; its contents are opened on first use. */
+    public final class Checkpoint {
+        private final long key;
+        private final long mark;
+
+        private Checkpoint(long key, long mark) {
+            this.key = key;
+            this.mark = mark;
+        }
+
+        public Instant time() {
+            return EpochNanos.toInstant(key);
+        }
+
+        /** History mark the contents correspond to. */
+        public long mark() {
+            return mark;
+        }
+
+        public Optional<Item> find(String id) throws IOException {
+            return snapshot(key).find(id);
+        }
+
+        /** All items, in id order. */
+        public List<Item> items() throws IOException {
+            BinaryInventoryStorage.IndexedSnapshot s = snapshot(key);
+            List<Item> items = new ArrayList<>(s.size());
+            for (int i = 0; i < s.size(); i++)
+                items.add(s.item(i));
+            return items;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ims.io;
+
+import com.ims.model.Item;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** Reads and writes a full inventory snapshot in one file format. */
+public interface InventoryFileStorage {
+    List<Item> loadAll(String fileName) throws IOException;
+
+    /** Saves items with no {@link SnapshotInfo}. */
+    default void saveAll(List<Item> items, String fileName) throws IOException {
+        saveAll(items, fileName, SnapshotInfo.NONE);
+    }
+
+    /**
+     * Replaces fileName with a snapshot of items carrying info. The file is
+     * written under a temporary name, forced to disk and renamed over the
+     * old one, so a failed save leaves the previous snapshot intact.
+     */
+    void saveAll(List<Item> items, String fileName, SnapshotInfo info) throws IOException;
+
+    /** The info the snapshot was saved with; {@link SnapshotInfo#NONE} if it has none. */
+    SnapshotInfo readInfo(String fileName) throws IOException;
+
+    /**
+     * Streams the file's items to sink in chunks of at most chunkSize. The
+     * chunk list may be reused once the sink returns. Formats that can stream
+     * should override this; the default loads everything first.
+     *
+     * @return number of items read
+     */
+    default long loadInChunks(String fileName, int chunkSize, Consumer<List<Item>> sink) throws IOException {
+        List<Item> items = loadAll(fileName);
+        for (int i = 0; i < items.size(); i += chunkSize)
+            sink.accept(items.subList(i, Math.min(items.size(), i + chunkSize)));
+        return items.size();
+    }
+}
@@ -0,0 +1,1150 @@
+package com.ims.io;
+
+import com.ims.model.MovementType;
+import com.ims.model.StockMovement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * Embedded, append-only history of stock movements, kept in one directory
+ * and queried per item and per time window.
+ *
+ * Appends go to an in-memory buffer and, sequentially, to a journal
+ * ({@code history.journal}). When the buffer reaches its row or byte limit,
+ * or on {@link #flush()}, its rows are written out as one immutable segment
+ * per time partition ({@code seg-<partitionStartSecond>-<generation>.seg})
+ * and the journal is emptied. Inside a segment rows are grouped by item and
+ * sorted by time; timestamps are delta-encoded varints, quantities zig-zag
+ * varints, and item ids and references are codes into a shared dictionary
+ * ({@code strings.dict}). A directory at the end of the segment gives, per
+ * item, the offset of its rows, their time range and their net change.
+ *
+ * Queries skip segments outside the window, binary-search the directory of
+ * the others (memory-mapped) and decode only the rows of the requested item.
+ * Net change over a window uses the stored net of every item whose rows lie
+ * wholly inside the window and decodes only the items straddling its edges.
+ *
+ * Windows are half-open, {@code [from, to)}; timestamps are kept to the
+ * nanosecond, so they must fall between the years 1678 and 2261.
+ *
+ * The same directory holds the {@link InventoryCheckpoints} that
+ * point-in-time queries replay these movements from. A checkpoint is tied to
+ * a {@link #mark()}, which splits rows by when they were recorded, so a
+ * movement that arrives late or backdated is still counted exactly once.
+ */
+public class MovementHistoryStore implements Closeable {
+
+    public static final Duration DEFAULT_PARTITION = Duration.ofDays(1);
+    public static final int DEFAULT_RUN_ROWS = 1 << 20;
+
+    private static final int JOURNAL_MAGIC = 0x494D534A; // "IMSJ"
+    private static final int DICT_MAGIC = 0x494D5344; // "IMSD"
+    private static final int SEGMENT_MAGIC = 0x494D5348; // "IMSH"
+    private static final int VERSION = 1;
+    private static final int JOURNAL_HEADER_BYTES = 16;
+    private static final int DICT_HEADER_BYTES = 8;
+    private static final int SEGMENT_HEADER_BYTES = 52;
+    private static final int SEGMENT_TRAILER_BYTES = 16;
+    private static final int DIR_ENTRY_BYTES = 40;
+    private static final int MAX_RECORD = 1 << 20;
+    private static final long MAX_BUFFERED_BYTES = 64L << 20;
+    private static final int HAS_NOTE = 0x80;
+    private static final int TYPE_MASK = 0x7F;
+    private static final MovementType[] TYPES = MovementType.values();
+    private static final Pattern SEGMENT_NAME = Pattern.compile("seg-(-?\\d+)-(\\d+)\\.seg");
+
+    private final Path directory;
+    private final long partitionNanos;
+    private final int runRows;
+    private final FileChannel journal;
+    private final FileChannel dictionary;
+    private final InventoryCheckpoints checkpoints;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock
+    private final RowBuffer buffer = new RowBuffer();
+    private final Bytes scratch = new Bytes(4096);
+    private long generation;
+    private boolean closed;
+
+    // Written under lock; codes and strings only grow, so queries read them without it
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private volatile String[] strings = new String[1024];
+    private volatile int stringCount;
+    private volatile List<Segment> segments = List.of();
+
+    /** Opens (or creates) a store with daily partitions and 1M-row segments. */
+    public MovementHistoryStore(Path directory) throws IOException {
+        this(directory, DEFAULT_PARTITION, DEFAULT_RUN_ROWS);
+    }
+
+    /**
+     * @param partition time span covered by one segment; at least a second
+     * @param runRows   buffered rows that trigger writing segments; bounds
+     *                  both memory and the size of each segment
+     */
+    public MovementHistoryStore(Path directory, Duration partition, int runRows) throws IOException {
+        this.directory = Objects.requireNonNull(directory, "directory");
+        Objects.requireNonNull(partition, "partition");
+        if (partition.compareTo(Duration.ofSeconds(1)) < 0)
+            throw new IllegalArgumentException("partition must be at least one second");
+        if (runRows <= 0 || runRows > 1 << 24)
+            throw new IllegalArgumentException("runRows must be in 1.." + (1 << 24));
+        this.partitionNanos = partition.toNanos();
+        this.runRows = runRows;
+
+        this.checkpoints = new InventoryCheckpoints(directory);
+        this.dictionary = FileChannel.open(directory.resolve("strings.dict"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.journal = FileChannel.open(directory.resolve("history.journal"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            loadDictionary();
+            openJournal();
+            loadSegments();
+            replayJournal();
+        } catch (IOException | RuntimeException e) {
+            dictionary.close();
+            journal.close();
+            throw e;
+        }
+    }
+
+    // ---------- Appends ----------
+
+    /** Records one movement. */
+    public void append(StockMovement movement) throws IOException {
+        appendAll(List.of(movement));
+    }
+
+    /**
+     * Records movements in order with one journal write. Rows are queryable
+     * as soon as this returns; {@link #sync()} makes them durable.
+     */
+    public void appendAll(List<StockMovement> movements) throws IOException {
+        if (movements.isEmpty())
+            return;
+        long[] nanos = new long[movements.size()];
+        for (int i = 0; i < nanos.length; i++)
+            nanos[i] = EpochNanos.of(Objects.requireNonNull(movements.get(i), "movement").timestamp(),
+                    "timestamp for movement history");
+
+        lock.lock();
+        try {
+            ensureOpen();
+            Bytes out = scratch.clear();
+            int first = buffer.rows;
+            long end = journal.size();
+            try {
+                encode(movements, nanos, out);
+                writeFully(journal, out.wrap(), end);
+            } catch (IOException | RuntimeException e) {
+                // Not journaled, so not kept; drop any partial record so later appends replay
+                buffer.truncate(first);
+                try {
+                    journal.truncate(end);
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            if (buffer.rows >= runRows || buffer.bytes >= MAX_BUFFERED_BYTES)
+                flushLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Adds movements to the buffer and their journal records to out. Caller holds lock. */
+    private void encode(List<StockMovement> movements, long[] nanos, Bytes out) throws IOException {
+        for (int i = 0; i < nanos.length; i++) {
+            StockMovement m = movements.get(i);
+            int item = code(m.itemId());
+            int ref = m.reference() == null ? -1 : code(m.reference());
+            byte[] note = m.note() == null ? null : m.note().getBytes(StandardCharsets.UTF_8);
+            if (note != null && note.length > MAX_RECORD - 64)
+                throw new IllegalArgumentException("note too large for history: " + note.length + " bytes");
+            int flags = m.movementType().ordinal() | (note == null ? 0 : HAS_NOTE);
+
+            int start = out.size();
+            out.putInt(0); // length, patched below
+            out.putVarint(item);
+            out.putVarint(ref + 1);
+            out.put(flags);
+            out.putVarint(zigzag(m.quantityChange()));
+            out.putLong(nanos[i]);
+            if (note != null) {
+                out.putVarint(note.length);
+                out.put(note, 0, note.length);
+            }
+            int payload = out.size() - start - 4;
+            out.patchInt(start, payload);
+            out.putInt(out.crc(start + 4, payload));
+
+            buffer.add(item, ref, m.quantityChange(), (byte) flags, nanos[i], m.note(),
+                    note == null ? 0 : note.length);
+        }
+    }
+
+    /** Writes buffered rows out as segments and empties the journal. */
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            flushLocked();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Forces the dictionary and journal to disk; segments are synced when written. */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            dictionary.force(false);
+            journal.force(false);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------- Queries ----------
+
+    /** Movements of itemId with from <= timestamp < to, oldest first; ties in append order. */
+    public List<StockMovement> movements(String itemId, Instant from, Instant to) {
+        Objects.requireNonNull(itemId, "itemId");
+        long lo = EpochNanos.clamp(from);
+        long hi = EpochNanos.clamp(to);
+        checkWindow(lo, hi);
+        Integer code = codes.get(itemId);
+        if (code == null)
+            return List.of();
+
+        List<Segment> segs;
+        List<StockMovement> recent = new ArrayList<>();
+        lock.lock();
+        try {
+            segs = segments;
+            buffer.collect(code, lo, hi, this::string, recent);
+        } finally {
+            lock.unlock();
+        }
+        List<StockMovement> result = new ArrayList<>();
+        for (Segment s : segs) {
+            if (s.overlaps(lo, hi))
+                s.collect(code, lo, hi, this::string, result);
+        }
+        result.addAll(recent);
+        // Segments are in append (generation) order, so a stable sort keeps ties in append order
+        result.sort(Comparator.comparing(StockMovement::timestamp));
+        return result;
+    }
+
+    /** Net quantity change of itemId over [from, to). */
+    public long netChange(String itemId, Instant from, Instant to) {
+        Objects.requireNonNull(itemId, "itemId");
+        long lo = EpochNanos.clamp(from);
+        long hi = EpochNanos.clamp(to);
+        checkWindow(lo, hi);
+        Integer code = codes.get(itemId);
+        if (code == null)
+            return 0;
+
+        List<Segment> segs;
+        long net;
+        lock.lock();
+        try {
+            segs = segments;
+            net = buffer.net(code, lo, hi);
+        } finally {
+            lock.unlock();
+        }
+        for (Segment s : segs) {
+            int entry = s.overlaps(lo, hi) ? s.find(code) : -1;
+            if (entry >= 0) {
+                long[] acc = new long[1];
+                s.sum(entry, lo, hi, acc);
+                net += acc[0];
+            }
+        }
+        return net;
+    }
+
+    /** Net quantity change over [from, to) of every item that moved in it, ordered by item id. */
+    public Map<String, Long> netChangeByItem(Instant from, Instant to) {
+        NetChanges changes = netChanges(from, to);
+        String[] names = strings;
+        List<String> ids = new ArrayList<>();
+        for (int code = 0; code < changes.moved.length; code++) {
+            if (changes.moved[code])
+                ids.add(names[code]);
+        }
+        ids.sort(null);
+        Map<String, Long> result = new LinkedHashMap<>(ids.size() * 4 / 3 + 1);
+        for (String id : ids)
+            result.put(id, changes.net[codes.get(id)]);
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Net quantity change over [from, to) as a lookup by item id, 0 for items
+     * that did not move. Unordered, so cheaper than {@link #netChangeByItem}
+     * when probing many ids.
+     */
+    public ToLongFunction<String> netChangeLookup(Instant from, Instant to) {
+        return lookup(netChanges(from, to));
+    }
+
+    // ---------- Marks ----------
+
+    /**
+     * Marks the current end of the history, e.g. for a checkpoint of the
+     * inventory taken at the same moment. Buffered rows are written out
+     * first, so every row recorded so far is in a segment of a generation
+     * below the mark and every later row at or above it.
+     */
+    public long mark() throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            flushLocked();
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The change that takes itemId's quantity from what it was at mark to
+     * what the movements stamped before to add up to: rows recorded after
+     * the mark and stamped before to, minus rows recorded before it and
+     * stamped at or after to.
+     */
+    public long netChangeSinceMark(String itemId, long mark, Instant to) {
+        Objects.requireNonNull(itemId, "itemId");
+        long hi = EpochNanos.clamp(to);
+        Integer code = codes.get(itemId);
+        if (code == null)
+            return 0;
+
+        List<Segment> segs;
+        long net;
+        lock.lock();
+        try {
+            segs = segments;
+            net = buffer.net(code, Long.MIN_VALUE, hi); // buffered rows are past every mark
+        } finally {
+            lock.unlock();
+        }
+        long[] acc = new long[1];
+        for (Segment s : segs) {
+            boolean after = s.generation >= mark;
+            long lo = after ? Long.MIN_VALUE : hi;
+            long up = after ? hi : Long.MAX_VALUE;
+            int entry = s.overlaps(lo, up) ? s.find(code) : -1;
+            if (entry >= 0) {
+                acc[0] = 0;
+                s.sum(entry, lo, up, acc);
+                net += after ? acc[0] : -acc[0];
+            }
+        }
+        return net;
+    }
+
+    /** {@link #netChangeSinceMark} for every item, as a lookup by item id. */
+    public ToLongFunction<String> netChangeSinceMarkLookup(long mark, Instant to) {
+        long hi = EpochNanos.clamp(to);
+        NetChanges changes;
+        List<Segment> segs;
+        lock.lock();
+        try {
+            segs = segments;
+            changes = new NetChanges(stringCount);
+            buffer.netByItem(Long.MIN_VALUE, hi, changes.net, changes.moved);
+        } finally {
+            lock.unlock();
+        }
+        for (Segment s : segs) {
+            if (s.generation >= mark)
+                accumulate(s, Long.MIN_VALUE, hi, 1, changes);
+            else
+                accumulate(s, hi, Long.MAX_VALUE, -1, changes);
+        }
+        return lookup(changes);
+    }
+
+    private ToLongFunction<String> lookup(NetChanges changes) {
+        return id -> {
+            Integer code = codes.get(id);
+            return code == null || code >= changes.net.length ? 0 : changes.net[code];
+        };
+    }
+
+    /** Dense per-code accumulation; codes in use are all below stringCount. */
+    private NetChanges netChanges(Instant from, Instant to) {
+        long lo = EpochNanos.clamp(from);
+        long hi = EpochNanos.clamp(to);
+        checkWindow(lo, hi);
+
+        NetChanges changes;
+        List<Segment> segs;
+        lock.lock();
+        try {
+            segs = segments;
+            changes = new NetChanges(stringCount);
+            buffer.netByItem(lo, hi, changes.net, changes.moved);
+        } finally {
+            lock.unlock();
+        }
+        for (Segment s : segs)
+            accumulate(s, lo, hi, 1, changes);
+        return changes;
+    }
+
+    /** Adds sign times each item's net change in [lo, hi) of segment s. */
+    private static void accumulate(Segment s, long lo, long hi, int sign, NetChanges changes) {
+        if (!s.overlaps(lo, hi))
+            return;
+        long[] acc = new long[1];
+        for (int e = 0; e < s.itemCount; e++) {
+            acc[0] = 0;
+            if (s.sum(e, lo, hi, acc)) {
+                int code = s.itemCode(e);
+                changes.net[code] += sign * acc[0];
+                changes.moved[code] = true;
+            }
+        }
+    }
+
+    private static final class NetChanges {
+        final long[] net;
+        final boolean[] moved;
+
+        NetChanges(int codes) {
+            net = new long[codes];
+            moved = new boolean[codes];
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /** Inventory snapshots kept alongside the history. */
+    public InventoryCheckpoints checkpoints() {
+        return checkpoints;
+    }
+
+    /** Rows recorded, in segments and buffered. */
+    public long rowCount() {
+        lock.lock();
+        try {
+            long n = buffer.rows;
+            for (Segment s : segments)
+                n += s.rowCount;
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /** Flushes buffered rows to segments and closes the files. */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            try {
+                flushLocked();
+            } finally {
+                closed = true;
+                dictionary.close();
+                journal.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("movement history is closed: " + directory);
+    }
+
+    // ---------- Dictionary ----------
+
+    /** Code of s, adding it to the dictionary file first if new. Caller holds lock. */
+    private int code(String s) throws IOException {
+        Integer code = codes.get(s);
+        if (code != null)
+            return code;
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_RECORD)
+            throw new IllegalArgumentException("string too large for history dictionary: " + bytes.length + " bytes");
+        ByteBuffer record = ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).flip();
+        writeFully(dictionary, record, dictionary.size());
+        return register(s);
+    }
+
+    private int register(String s) {
+        int code = stringCount;
+        String[] arr = strings;
+        if (code == arr.length) {
+            arr = Arrays.copyOf(arr, arr.length * 2);
+            strings = arr;
+        }
+        arr[code] = s;
+        stringCount = code + 1;
+        codes.put(s, code);
+        return code;
+    }
+
+    private String string(int code) {
+        return strings[code];
+    }
+
+    private void loadDictionary() throws IOException {
+        long size = dictionary.size();
+        if (size == 0) {
+            writeFully(dictionary, ByteBuffer.allocate(DICT_HEADER_BYTES).putInt(DICT_MAGIC).putInt(VERSION).flip(), 0);
+            return;
+        }
+        ByteBuffer all = ByteBuffer.allocate((int) Math.min(size, Integer.MAX_VALUE));
+        readFully(dictionary, all, 0);
+        all.flip();
+        if (all.remaining() < DICT_HEADER_BYTES || all.getInt() != DICT_MAGIC)
+            throw new IOException("not a movement history dictionary: " + directory);
+        int version = all.getInt();
+        if (version != VERSION)
+            throw new IOException("unsupported history dictionary version " + version + ": " + directory);
+        while (all.remaining() >= 4) {
+            int len = all.getInt(all.position());
+            if (len < 0 || len > MAX_RECORD || all.remaining() < 4 + len)
+                break; // torn tail
+            all.position(all.position() + 4);
+            register(new String(all.array(), all.position(), len, StandardCharsets.UTF_8));
+            all.position(all.position() + len);
+        }
+        if (all.position() < size)
+            dictionary.truncate(all.position());
+    }
+
+    // ---------- Journal ----------
+
+    private void openJournal() throws IOException {
+        if (journal.size() < JOURNAL_HEADER_BYTES) {
+            resetJournal(0);
+            return;
+        }
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_BYTES);
+        readFully(journal, header, 0);
+        header.flip();
+        if (header.getInt() != JOURNAL_MAGIC)
+            throw new IOException("not a movement history journal: " + directory);
+        int version = header.getInt();
+        if (version != VERSION)
+            throw new IOException("unsupported history journal version " + version + ": " + directory);
+        generation = header.getLong();
+    }
+
+    /** Empties the journal; its rows are now in segments of earlier generations. */
+    private void resetJournal(long newGeneration) throws IOException {
+        journal.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(JOURNAL_HEADER_BYTES)
+                .putInt(JOURNAL_MAGIC).putInt(VERSION).putLong(newGeneration).flip();
+        writeFully(journal, header, 0);
+        journal.force(true);
+        generation = newGeneration;
+    }
+
+    /** Loads journaled rows back into the buffer and cuts off a torn or corrupt tail. */
+    private void replayJournal() throws IOException {
+        long size = journal.size();
+        long pos = JOURNAL_HEADER_BYTES;
+        ByteBuffer lenBuf = ByteBuffer.allocate(4);
+        CRC32C crc = new CRC32C();
+        while (pos + 4 <= size) {
+            lenBuf.clear();
+            readFully(journal, lenBuf, pos);
+            int payloadLen = lenBuf.flip().getInt();
+            if (payloadLen <= 0 || payloadLen > MAX_RECORD || pos + 4 + payloadLen + 4 > size)
+                break;
+            ByteBuffer record = ByteBuffer.allocate(payloadLen + 4);
+            readFully(journal, record, pos + 4);
+            record.flip();
+            crc.reset();
+            crc.update(record.array(), 0, payloadLen);
+            if ((int) crc.getValue() != record.getInt(payloadLen))
+                break;
+            record.limit(payloadLen);
+            if (!replayRecord(record))
+                break; // refers to a dictionary entry lost in a crash
+            pos += 4 + payloadLen + 4;
+        }
+        if (pos < size) {
+            journal.truncate(pos);
+            journal.force(true);
+        }
+    }
+
+    private boolean replayRecord(ByteBuffer r) {
+        int item = getVarint(r);
+        int ref = getVarint(r) - 1;
+        int flags = r.get() & 0xFF;
+        int quantity = unzigzag(getVarint(r));
+        long nanos = r.getLong();
+        int count = stringCount;
+        if (item >= count || ref >= count || (flags & TYPE_MASK) >= TYPES.length)
+            return false;
+        String note = null;
+        int noteBytes = 0;
+        if ((flags & HAS_NOTE) != 0) {
+            noteBytes = getVarint(r);
+            note = new String(r.array(), r.position(), noteBytes, StandardCharsets.UTF_8);
+        }
+        buffer.add(item, ref, quantity, (byte) flags, nanos, note, noteBytes);
+        return true;
+    }
+
+    // ---------- Segments ----------
+
+    /**
+     * Opens the segments in generation order. Segments of the journal's own
+     * generation come from a flush that did not finish; the journal still
+     * holds their rows, so they are removed and the rows replayed instead.
+     */
+    private void loadSegments() throws IOException {
+        List<Segment> loaded = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "seg-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                Matcher m = SEGMENT_NAME.matcher(name);
+                if (!m.matches())
+                    continue;
+                if (Long.parseLong(m.group(2)) >= generation) {
+                    Files.delete(file);
+                    continue;
+                }
+                loaded.add(Segment.open(file));
+            }
+        }
+        loaded.sort(Comparator.comparingLong((Segment s) -> s.generation).thenComparingLong(s -> s.minNanos));
+        segments = List.copyOf(loaded);
+    }
+
+    /** Writes one segment per partition in the buffer, then empties buffer and journal. Caller holds lock. */
+    private void flushLocked() throws IOException {
+        int n = buffer.rows;
+        if (n == 0)
+            return;
+        // Segments refer to dictionary codes, so those must be durable first
+        dictionary.force(false);
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+            order[i] = i;
+        long[] nanos = buffer.nanos;
+        int[] item = buffer.item;
+        Arrays.sort(order, Comparator
+                .comparingLong((Integer i) -> Math.floorDiv(nanos[i], partitionNanos))
+                .thenComparingInt(i -> item[i])
+                .thenComparingLong(i -> nanos[i])
+                .thenComparingInt(i -> i));
+
+        List<Segment> written = new ArrayList<>();
+        for (int from = 0; from < n; ) {
+            long partition = Math.floorDiv(nanos[order[from]], partitionNanos);
+            int to = from;
+            while (to < n && Math.floorDiv(nanos[order[to]], partitionNanos) == partition)
+                to++;
+            written.add(writeSegment(partition * partitionNanos, order, from, to));
+            from = to;
+        }
+        List<Segment> all = new ArrayList<>(segments);
+        all.addAll(written);
+        segments = List.copyOf(all);
+        buffer.clear();
+        resetJournal(generation + 1);
+    }
+
+    private Segment writeSegment(long partitionStart, Integer[] order, int from, int to) throws IOException {
+        RowBuffer b = buffer;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        int items = 0;
+        for (int k = from; k < to; k++) {
+            int r = order[k];
+            min = Math.min(min, b.nanos[r]);
+            max = Math.max(max, b.nanos[r]);
+            if (k == from || b.item[r] != b.item[order[k - 1]])
+                items++;
+        }
+
+        String name = "seg-" + Math.floorDiv(partitionStart, EpochNanos.PER_SECOND) + "-" + generation + ".seg";
+        Path target = directory.resolve(name);
+        Path tmp = directory.resolve(name + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            Bytes out = new Bytes(1 << 16);
+            out.putInt(SEGMENT_MAGIC).putInt(VERSION).putLong(generation).putLong(partitionStart)
+                    .putLong(min).putLong(max).putLong(to - from).putInt(items);
+            long written = 0;
+            Bytes dir = new Bytes(items * DIR_ENTRY_BYTES);
+
+            for (int k = from; k < to; ) {
+                int code = b.item[order[k]];
+                long offset = written + out.size();
+                long prev = min;
+                long net = 0;
+                long first = b.nanos[order[k]];
+                int count = 0;
+                for (; k < to && b.item[order[k]] == code; k++, count++) {
+                    int r = order[k];
+                    out.putVarlong(b.nanos[r] - prev);
+                    prev = b.nanos[r];
+                    out.putVarint(zigzag(b.quantity[r]));
+                    out.put(b.flags[r]);
+                    out.putVarint(b.ref[r] + 1);
+                    if (b.note[r] != null) {
+                        byte[] note = b.note[r].getBytes(StandardCharsets.UTF_8);
+                        out.putVarint(note.length);
+                        out.put(note, 0, note.length);
+                    }
+                    net += b.quantity[r];
+                }
+                dir.putInt(code).putInt(count).putLong(offset).putLong(first).putLong(prev).putLong(net);
+                if (out.size() >= 1 << 20) {
+                    written += writeFully(ch, out.wrap(), written);
+                    out.clear();
+                }
+            }
+            long dirOffset = written + out.size();
+            out.put(dir.array(), 0, dir.size());
+            out.putLong(dirOffset).putInt(dir.crc(0, dir.size())).putInt(SEGMENT_MAGIC);
+            written += writeFully(ch, out.wrap(), written);
+            if (written > Integer.MAX_VALUE)
+                throw new IOException("history segment too large to map: " + written + " bytes");
+            ch.force(true);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return Segment.open(target);
+    }
+
+    /** One immutable, memory-mapped segment file. */
+    private static final class Segment {
+        final long generation;
+        final long minNanos;
+        final long maxNanos;
+        final long rowCount;
+        final int itemCount;
+        private final int dirOffset;
+        private final MappedByteBuffer map;
+
+        private Segment(MappedByteBuffer map, long generation, long minNanos, long maxNanos,
+                long rowCount, int itemCount, int dirOffset) {
+            this.map = map;
+            this.generation = generation;
+            this.minNanos = minNanos;
+            this.maxNanos = maxNanos;
+            this.rowCount = rowCount;
+            this.itemCount = itemCount;
+            this.dirOffset = dirOffset;
+        }
+
+        static Segment open(Path file) throws IOException {
+            MappedByteBuffer map;
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                if (size < SEGMENT_HEADER_BYTES + SEGMENT_TRAILER_BYTES || size > Integer.MAX_VALUE)
+                    throw new IOException("not a movement history segment: " + file);
+                map = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            int size = map.capacity();
+            if (map.getInt(0) != SEGMENT_MAGIC || map.getInt(size - 4) != SEGMENT_MAGIC)
+                throw new IOException("not a movement history segment: " + file);
+            if (map.getInt(4) != VERSION)
+                throw new IOException("unsupported history segment version " + map.getInt(4) + ": " + file);
+            int items = map.getInt(48);
+            long dirOffset = map.getLong(size - SEGMENT_TRAILER_BYTES);
+            if (items < 0 || dirOffset < SEGMENT_HEADER_BYTES
+                    || dirOffset + (long) items * DIR_ENTRY_BYTES != size - SEGMENT_TRAILER_BYTES)
+                throw new IOException("corrupt history segment: " + file);
+            CRC32C crc = new CRC32C();
+            crc.update(map.slice((int) dirOffset, items * DIR_ENTRY_BYTES));
+            if ((int) crc.getValue() != map.getInt(size - 8))
+                throw new IOException("history segment checksum mismatch: " + file);
+            return new Segment(map, map.getLong(8), map.getLong(24), map.getLong(32),
+                    map.getLong(40), items, (int) dirOffset);
+        }
+
+        boolean overlaps(long lo, long hi) {
+            return maxNanos >= lo && minNanos < hi;
+        }
+
+        boolean overlaps(int entry, long lo, long hi) {
+            return last(entry) >= lo && first(entry) < hi;
+        }
+
+        int itemCode(int entry) {
+            return map.getInt(dirOffset + entry * DIR_ENTRY_BYTES);
+        }
+
+        private int count(int entry) {
+            return map.getInt(dirOffset + entry * DIR_ENTRY_BYTES + 4);
+        }
+
+        private long offset(int entry) {
+            return map.getLong(dirOffset + entry * DIR_ENTRY_BYTES + 8);
+        }
+
+        private long first(int entry) {
+            return map.getLong(dirOffset + entry * DIR_ENTRY_BYTES + 16);
+        }
+
+        private long last(int entry) {
+            return map.getLong(dirOffset + entry * DIR_ENTRY_BYTES + 24);
+        }
+
+        private long storedNet(int entry) {
+            return map.getLong(dirOffset + entry * DIR_ENTRY_BYTES + 32);
+        }
+
+        /** Directory entry of an item code, or -1. Entries are sorted by code. */
+        int find(int code) {
+            int lo = 0;
+            int hi = itemCount - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = itemCode(mid);
+                if (c < code)
+                    lo = mid + 1;
+                else if (c > code)
+                    hi = mid - 1;
+                else
+                    return mid;
+            }
+            return -1;
+        }
+
+        /** Adds the entry's net change in [lo, hi) to acc[0]; false if none of its rows is in the window. */
+        boolean sum(int entry, long lo, long hi, long[] acc) {
+            if (!overlaps(entry, lo, hi))
+                return false;
+            if (first(entry) >= lo && last(entry) < hi) {
+                acc[0] += storedNet(entry); // wholly inside the window
+                return true;
+            }
+            ByteBuffer r = map.duplicate().position((int) offset(entry));
+            long nanos = minNanos;
+            long net = 0;
+            boolean any = false;
+            for (int i = count(entry); i > 0; i--) {
+                nanos += getVarlong(r);
+                if (nanos >= hi)
+                    break;
+                int quantity = unzigzag(getVarint(r));
+                int flags = r.get() & 0xFF;
+                getVarint(r);
+                if ((flags & HAS_NOTE) != 0) {
+                    int len = getVarint(r);
+                    r.position(r.position() + len);
+                }
+                if (nanos >= lo) {
+                    net += quantity;
+                    any = true;
+                }
+            }
+            acc[0] += net;
+            return any;
+        }
+
+        void collect(int code, long lo, long hi, Strings names, List<StockMovement> out) {
+            int entry = find(code);
+            if (entry < 0 || !overlaps(entry, lo, hi))
+                return;
+            ByteBuffer r = map.duplicate().position((int) offset(entry));
+            long nanos = minNanos;
+            for (int i = count(entry); i > 0; i--) {
+                nanos += getVarlong(r);
+                if (nanos >= hi)
+                    break;
+                int quantity = unzigzag(getVarint(r));
+                int flags = r.get() & 0xFF;
+                int ref = getVarint(r) - 1;
+                String note = null;
+                if ((flags & HAS_NOTE) != 0) {
+                    int len = getVarint(r);
+                    if (nanos >= lo) {
+                        byte[] bytes = new byte[len];
+                        r.get(bytes);
+                        note = new String(bytes, StandardCharsets.UTF_8);
+                    } else {
+                        r.position(r.position() + len);
+                    }
+                }
+                if (nanos >= lo)
+                    out.add(movement(names.get(code), quantity, flags, nanos, ref < 0 ? null : names.get(ref), note));
+            }
+        }
+    }
+
+    /** Columns of rows not yet in a segment, in append order. */
+    private static final class RowBuffer {
+        int rows;
+        long bytes;
+        int[] item = new int[1024];
+        int[] ref = new int[1024];
+        int[] quantity = new int[1024];
+        byte[] flags = new byte[1024];
+        long[] nanos = new long[1024];
+        String[] note = new String[1024];
+        // Rows of one item chained newest first: head[code] and previous[row] hold row + 1, 0 ends
+        int[] head = new int[1024];
+        int[] previous = new int[1024];
+
+        void add(int itemCode, int refCode, int qty, byte flag, long ts, String noteText, int noteBytes) {
+            if (rows == item.length) {
+                int cap = rows * 2;
+                item = Arrays.copyOf(item, cap);
+                ref = Arrays.copyOf(ref, cap);
+                quantity = Arrays.copyOf(quantity, cap);
+                flags = Arrays.copyOf(flags, cap);
+                nanos = Arrays.copyOf(nanos, cap);
+                note = Arrays.copyOf(note, cap);
+                previous = Arrays.copyOf(previous, cap);
+            }
+            if (itemCode >= head.length)
+                head = Arrays.copyOf(head, Math.max(head.length * 2, itemCode + 1));
+            previous[rows] = head[itemCode];
+            head[itemCode] = rows + 1;
+            item[rows] = itemCode;
+            ref[rows] = refCode;
+            quantity[rows] = qty;
+            flags[rows] = flag;
+            nanos[rows] = ts;
+            note[rows] = noteText;
+            rows++;
+            bytes += 32 + noteBytes;
+        }
+
+        void truncate(int newRows) {
+            // Newest rows first, so each head falls back to the row before the removed ones
+            for (int r = rows - 1; r >= newRows; r--)
+                head[item[r]] = previous[r];
+            Arrays.fill(note, newRows, rows, null);
+            rows = newRows;
+        }
+
+        void clear() {
+            for (int r = 0; r < rows; r++)
+                head[item[r]] = 0;
+            Arrays.fill(note, 0, rows, null);
+            rows = 0;
+            bytes = 0;
+        }
+
+        void collect(int code, long lo, long hi, Strings names, List<StockMovement> out) {
+            int from = out.size();
+            for (int r = code < head.length ? head[code] - 1 : -1; r >= 0; r = previous[r] - 1) {
+                if (nanos[r] >= lo && nanos[r] < hi)
+                    out.add(movement(names.get(code), quantity[r], flags[r], nanos[r],
+                            ref[r] < 0 ? null : names.get(ref[r]), note[r]));
+            }
+            Collections.reverse(out.subList(from, out.size())); // back to append order
+        }
+
+        long net(int code, long lo, long hi) {
+            long net = 0;
+            for (int r = code < head.length ? head[code] - 1 : -1; r >= 0; r = previous[r] - 1) {
+                if (nanos[r] >= lo && nanos[r] < hi)
+                    net += quantity[r];
+            }
+            return net;
+        }
+
+        void netByItem(long lo, long hi, long[] net, boolean[] moved) {
+            for (int r = 0; r < rows; r++) {
+                if (nanos[r] >= lo && nanos[r] < hi) {
+                    net[item[r]] += quantity[r];
+                    moved[item[r]] = true;
+                }
+            }
+        }
+    }
+
+    private interface Strings {
+        String get(int code);
+    }
+
+    /** Growable byte array for encoding journal records and segments. */
+    private static final class Bytes {
+        private byte[] buf;
+        private int size;
+
+        Bytes(int capacity) {
+            buf = new byte[Math.max(capacity, 16)];
+        }
+
+        Bytes clear() {
+            size = 0;
+            return this;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        ByteBuffer wrap() {
+            return ByteBuffer.wrap(buf, 0, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buf.length)
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, size + extra));
+        }
+
+        Bytes put(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+            return this;
+        }
+
+        Bytes put(byte[] src, int off, int len) {
+            ensure(len);
+            System.arraycopy(src, off, buf, size, len);
+            size += len;
+            return this;
+        }
+
+        Bytes putInt(int v) {
+            ensure(4);
+            patchInt(size, v);
+            size += 4;
+            return this;
+        }
+
+        void patchInt(int at, int v) {
+            buf[at] = (byte) (v >>> 24);
+            buf[at + 1] = (byte) (v >>> 16);
+            buf[at + 2] = (byte) (v >>> 8);
+            buf[at + 3] = (byte) v;
+        }
+
+        Bytes putLong(long v) {
+            putInt((int) (v >>> 32));
+            return putInt((int) v);
+        }
+
+        Bytes putVarint(int v) {
+            return putVarlong(v & 0xFFFFFFFFL);
+        }
+
+        Bytes putVarlong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+            return this;
+        }
+
+        int crc(int from, int len) {
+            CRC32C crc = new CRC32C();
+            crc.update(buf, from, len);
+            return (int) crc.getValue();
+        }
+    }
+
+    // ---------- Encoding helpers ----------
+
+    private static StockMovement movement(String itemId, int quantity, int flags, long nanos,
+            String reference, String note) {
+        return new StockMovement(itemId, quantity, TYPES[flags & TYPE_MASK], EpochNanos.toInstant(nanos),
+                reference, note);
+    }
+
+    private static void checkWindow(long lo, long hi) {
+        if (lo > hi)
+            throw new IllegalArgumentException("from must not be after to");
+    }
+
+    private static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int getVarint(ByteBuffer b) {
+        return (int) getVarlong(b);
+    }
+
+    private static long getVarlong(ByteBuffer b) {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte x = b.get();
+            v |= (long) (x & 0x7F) << shift;
+            if (x >= 0)
+                return v;
+        }
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, position);
+            if (n < 0)
+                break;
+            position += n;
+        }
+    }
+
+    private static int writeFully(FileChannel ch, ByteBuffer src, long position) throws IOException {
+        int total = src.remaining();
+        while (src.hasRemaining())
+            position += ch.write(src, position);
+        return total;
+    }
+}
@@ -0,0 +1,544 @@
+package com.ims.io;
+
+import com.ims.model.MovementType;
+import com.ims.model.StockMovement;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary log of accepted {@link StockMovement}s.
+ *
+ * Appenders encode their record, hand it to a background flusher and block
+ * until it is on disk. The flusher collects everything that arrives within
+ * the group-commit window, writes it with one {@link FileChannel#write} and
+ * makes it durable with a single {@link FileChannel#force}, so many
+ * movements share one fsync. A lone appender is synced at once instead of
+ * waiting out the window; appenders that arrive during that sync are
+ * committed together next.
+ *
+ * Records are numbered 1, 2, 3, ... for the life of the log. A snapshot
+ * notes {@link #id()} and {@link #lastSequence()} at the moment it captures
+ * the inventory; replay skips what it already contains, and
+ * {@link #discardThrough} drops those records once the snapshot is safely on
+ * disk. A crash between the two only leaves records that replay skips.
+ *
+ * File layout: 24-byte header ({@code IMSW}, int version, long id, long
+ * sequence of the record before the first one in the file), then records of
+ * {@code [int payloadLength][payload][int crc32c(payload)]}. A torn or corrupt
+ * tail left by a crash is cut off when the log is opened.
+ */
+public class MovementWriteAheadLog implements Closeable {
+
+    private static final int MAGIC = 0x494D5357; // "IMSW"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 24;
+    private static final int MAX_PAYLOAD = 1 << 20;
+    private static final MovementType[] TYPES = MovementType.values();
+
+    private final Path path;
+    private final long id;
+    private final long windowNanos;
+    private final Thread flusher;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workAvailable = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+
+    // Guarded by lock. The flusher writes a batch without it, but only to the
+    // channel it read alongside the batch, and discardThrough swaps the channel
+    // only while no batch is outstanding.
+    private FileChannel channel;
+    private long baseSeq; // sequence of the record before the first one in the file
+    private List<ByteBuffer> pending = new ArrayList<>();
+    private int pendingAppenders; // appendAll calls whose records are in pending
+    private long appendedSeq;
+    private long durableSeq;
+    private IOException failure;
+    private boolean closed;
+
+    private volatile long recordCount;
+    private volatile long syncCount;
+
+    /** Opens (or creates) the log with a 2 ms group-commit window. */
+    public MovementWriteAheadLog(Path path) throws IOException {
+        this(path, Duration.ofMillis(2));
+    }
+
+    /**
+     * @param groupCommitWindow how long the flusher waits for more records
+     *                          before syncing when more than one appender is
+     *                          waiting; zero syncs as soon as anything is
+     *                          pending
+     */
+    public MovementWriteAheadLog(Path path, Duration groupCommitWindow) throws IOException {
+        this.path = Objects.requireNonNull(path, "path");
+        Objects.requireNonNull(groupCommitWindow, "groupCommitWindow");
+        if (groupCommitWindow.isNegative())
+            throw new IllegalArgumentException("groupCommitWindow must be >= 0");
+        this.windowNanos = groupCommitWindow.toNanos();
+
+        FileChannel ch = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (ch.size() == 0) {
+                id = newId();
+                writeHeader(ch, id, 0);
+                ch.force(true);
+            } else {
+                Header header = readHeader(ch);
+                long[] last = {header.base()};
+                long end = walk(ch, header, (seq, offset, payload) -> {
+                    last[0] = seq;
+                    return true;
+                });
+                id = header.id();
+                if (end < ch.size()) {
+                    ch.truncate(end);
+                    ch.force(true);
+                }
+                baseSeq = header.base();
+                appendedSeq = last[0];
+                durableSeq = last[0];
+            }
+            ch.position(ch.size());
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+        this.channel = ch;
+
+        this.flusher = new Thread(this::flushLoop, "wal-flusher-" + path.getFileName());
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /** Appends one movement and returns once it is durable. */
+    public void append(StockMovement movement) throws IOException {
+        appendAll(List.of(movement));
+    }
+
+    /** Appends movements in order and returns once all of them are durable. */
+    public void appendAll(List<StockMovement> movements) throws IOException {
+        if (movements.isEmpty())
+            return;
+        List<ByteBuffer> records = new ArrayList<>(movements.size());
+        for (StockMovement m : movements)
+            records.add(encode(Objects.requireNonNull(m, "movement")));
+
+        long mySeq;
+        lock.lock();
+        try {
+            ensureOpen();
+            pending.addAll(records);
+            pendingAppenders++;
+            appendedSeq += records.size();
+            mySeq = appendedSeq;
+            workAvailable.signal();
+
+            boolean interrupted = false;
+            while (durableSeq < mySeq && failure == null) {
+                try {
+                    flushed.await();
+                } catch (InterruptedException e) {
+                    // The record is already queued; finish waiting, then restore the flag
+                    interrupted = true;
+                }
+            }
+            if (interrupted)
+                Thread.currentThread().interrupt();
+            if (durableSeq < mySeq)
+                throw new IOException("write-ahead log failed", failure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads every intact record still in the log, in append order.
+     *
+     * @return number of movements replayed
+     */
+    public long replay(Consumer<StockMovement> consumer) throws IOException {
+        return replayAfter(0, consumer);
+    }
+
+    /**
+     * Reads the intact records numbered above sequence, in append order.
+     * Appends wait until the replay is done, so consumer must not append.
+     *
+     * @return number of movements replayed
+     */
+    public long replayAfter(long sequence, Consumer<StockMovement> consumer) throws IOException {
+        Objects.requireNonNull(consumer, "consumer");
+        long[] count = new long[1];
+        lock.lock();
+        try {
+            ensureOpen();
+            walk(channel, readHeader(channel), (seq, offset, payload) -> {
+                if (seq > sequence) {
+                    consumer.accept(decode(payload));
+                    count[0]++;
+                }
+                return true;
+            });
+        } finally {
+            lock.unlock();
+        }
+        return count[0];
+    }
+
+    /**
+     * Drops the records numbered up to sequence, e.g. once a snapshot holding
+     * their effect is on disk. The remaining records are copied to a new
+     * file that replaces the log atomically, so a crash leaves either the
+     * old or the new log. Waits for in-progress appends to become durable
+     * first, and holds up new ones while it runs.
+     */
+    public void discardThrough(long sequence) throws IOException {
+        lock.lock();
+        try {
+            ensureOpen();
+            while (durableSeq < appendedSeq && failure == null)
+                flushed.awaitUninterruptibly();
+            if (failure != null)
+                throw new IOException("write-ahead log failed", failure);
+            // Nothing is pending, so the flusher is idle until the lock is released
+            long through = Math.min(sequence, durableSeq);
+            if (through <= baseSeq)
+                return;
+            long from = walk(channel, readHeader(channel), (seq, offset, payload) -> seq <= through);
+            channel = rewrite(channel, from, channel.size(), through);
+            baseSeq = through;
+            syncDirectory(path); // so the rename survives a crash
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /** Random id fixed when the log file is created; snapshots name the log they refer to by it. */
+    public long id() {
+        return id;
+    }
+
+    /** Number of the last record appended, or of the last one discarded if none is left. */
+    public long lastSequence() {
+        lock.lock();
+        try {
+            return appendedSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Records written since the log was opened. */
+    public long recordCount() {
+        return recordCount;
+    }
+
+    /** fsyncs issued since the log was opened; recordCount / syncCount is the group-commit factor. */
+    public long syncCount() {
+        return syncCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed)
+                return;
+            closed = true;
+            workAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------- Flusher ----------
+
+    private void flushLoop() {
+        while (true) {
+            List<ByteBuffer> batch;
+            long batchSeq;
+            FileChannel ch;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed)
+                    workAvailable.awaitUninterruptibly();
+                if (pending.isEmpty())
+                    return; // closed and fully drained
+                if (windowNanos > 0 && pendingAppenders > 1 && !closed) {
+                    // Others are appending too: let more of them join this commit
+                    long remaining = windowNanos;
+                    while (remaining > 0 && !closed) {
+                        try {
+                            remaining = workAvailable.awaitNanos(remaining);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+                batch = pending;
+                batchSeq = appendedSeq;
+                ch = channel;
+                pending = new ArrayList<>();
+                pendingAppenders = 0;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                ByteBuffer[] buffers = batch.toArray(new ByteBuffer[0]);
+                long remaining = 0;
+                for (ByteBuffer b : buffers)
+                    remaining += b.remaining();
+                while (remaining > 0)
+                    remaining -= ch.write(buffers);
+                ch.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableSeq = batchSeq;
+                    recordCount += batch.size();
+                    syncCount++;
+                }
+                flushed.signalAll();
+                if (error != null)
+                    return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("write-ahead log is closed: " + path);
+        if (failure != null)
+            throw new IOException("write-ahead log failed", failure);
+    }
+
+    // ---------- Encoding ----------
+
+    private static ByteBuffer encode(StockMovement m) {
+        byte[] id = m.itemId().getBytes(StandardCharsets.UTF_8);
+        byte[] ref = m.reference() == null ? null : m.reference().getBytes(StandardCharsets.UTF_8);
+        byte[] note = m.note() == null ? null : m.note().getBytes(StandardCharsets.UTF_8);
+        int payload = 4 + id.length + 4 + 1 + 8 + 4
+                + 4 + (ref == null ? 0 : ref.length)
+                + 4 + (note == null ? 0 : note.length);
+        if (payload > MAX_PAYLOAD)
+            throw new IllegalArgumentException("movement too large for log: " + payload + " bytes");
+
+        ByteBuffer buf = ByteBuffer.allocate(4 + payload + 4);
+        buf.putInt(payload);
+        putBytes(buf, id);
+        buf.putInt(m.quantityChange());
+        buf.put((byte) m.movementType().ordinal());
+        buf.putLong(m.timestamp().getEpochSecond());
+        buf.putInt(m.timestamp().getNano());
+        putBytes(buf, ref);
+        putBytes(buf, note);
+
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), 4, payload);
+        buf.putInt((int) crc.getValue());
+        return buf.flip();
+    }
+
+    private static StockMovement decode(ByteBuffer payload) {
+        String itemId = getString(payload);
+        int quantityChange = payload.getInt();
+        MovementType type = TYPES[payload.get()];
+        Instant timestamp = Instant.ofEpochSecond(payload.getLong(), payload.getInt());
+        String reference = getString(payload);
+        String note = getString(payload);
+        return new StockMovement(itemId, quantityChange, type, timestamp, reference, note);
+    }
+
+    private static void putBytes(ByteBuffer buf, byte[] bytes) {
+        if (bytes == null) {
+            buf.putInt(-1);
+            return;
+        }
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len < 0)
+            return null;
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+        buf.position(buf.position() + len);
+        return s;
+    }
+
+    // ---------- File access ----------
+
+    private record Header(long id, long base) {
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        /** Returns false to stop before this record. */
+        boolean visit(long sequence, long offset, ByteBuffer payload);
+    }
+
+    private Header readHeader(FileChannel ch) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(ch, header, 0);
+        header.flip();
+        if (header.remaining() < 8 || header.getInt() != MAGIC)
+            throw new IOException("not a movement log: " + path);
+        int version = header.getInt();
+        if (version != VERSION)
+            throw new IOException("unsupported movement log version " + version + ": " + path);
+        if (header.remaining() < HEADER_BYTES - 8)
+            throw new IOException("truncated movement log header: " + path);
+        return new Header(header.getLong(), header.getLong());
+    }
+
+    private static void writeHeader(FileChannel ch, long id, long base) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC).putInt(VERSION).putLong(id).putLong(base).flip();
+        writeFully(ch, header, 0);
+    }
+
+    /**
+     * Walks the intact records after the header, handing each one's number,
+     * offset and payload to visitor, and returns the offset of the first
+     * record not walked past: the end of the intact records, or the record
+     * the visitor stopped at.
+     */
+    private long walk(FileChannel ch, Header header, RecordVisitor visitor) throws IOException {
+        long size = ch.size();
+        long pos = HEADER_BYTES;
+        long seq = header.base();
+        ByteBuffer lenBuf = ByteBuffer.allocate(4);
+        CRC32C crc = new CRC32C();
+        while (pos + 4 <= size) {
+            lenBuf.clear();
+            readFully(ch, lenBuf, pos);
+            int payloadLen = lenBuf.flip().getInt();
+            if (payloadLen <= 0 || payloadLen > MAX_PAYLOAD || pos + 4 + payloadLen + 4 > size)
+                break; // torn tail
+
+            ByteBuffer record = ByteBuffer.allocate(payloadLen + 4);
+            readFully(ch, record, pos + 4);
+            record.flip();
+            crc.reset();
+            crc.update(record.array(), 0, payloadLen);
+            if ((int) crc.getValue() != record.getInt(payloadLen))
+                break; // corrupt tail
+
+            record.limit(payloadLen);
+            if (!visitor.visit(seq + 1, pos, record))
+                break;
+            seq++;
+            pos += 4 + payloadLen + 4;
+        }
+        return pos;
+    }
+
+    /**
+     * Replaces the log with a new file holding the records in
+     * [from, to) of ch, numbered on from base + 1, and returns a channel to
+     * it positioned at the end. ch is closed once the new file is in place;
+     * on failure it is left open and the log unchanged.
+     */
+    private FileChannel rewrite(FileChannel ch, long from, long to, long base) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel fresh = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            writeHeader(fresh, id, base);
+            fresh.position(HEADER_BYTES);
+            long pos = from;
+            while (pos < to)
+                pos += ch.transferTo(pos, to - pos, fresh);
+            fresh.force(true);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            fresh.close();
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        ch.close();
+        return fresh;
+    }
+
+    /** Makes a rename in file's directory durable. */
+    private static void syncDirectory(Path file) throws IOException {
+        FileChannel dir;
+        try {
+            dir = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            return; // platforms such as Windows cannot open a directory, and need no sync for the rename
+        }
+        try (dir) {
+            dir.force(true);
+        }
+    }
+
+    private static long newId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return id;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, position);
+            if (n < 0)
+                break;
+            position += n;
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer src, long position) throws IOException {
+        while (src.hasRemaining())
+            position += ch.write(src, position);
+    }
+}
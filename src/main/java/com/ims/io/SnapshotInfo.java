@@ -0,0 +1,50 @@
+package com.ims.io;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * What a snapshot file says about itself: which base it is, and how far into
+ * the movement log its contents reach.
+ *
+ * @param generation  identifies one written base; deltas name the generation
+ *                    they apply to, so deltas left over from an older base
+ *                    are recognised and ignored. 0 when unknown.
+ * @param logId       id of the {@link MovementWriteAheadLog} the sequence
+ *                    refers to, or 0 when the snapshot is not tied to a log
+ * @param logSequence last log record whose effect the snapshot contains, or
+ *                    {@link #NO_SEQUENCE}
+ */
+public record SnapshotInfo(long generation, long logId, long logSequence) {
+
+    public static final long NO_SEQUENCE = -1;
+
+    /** Files written without any of this information, e.g. by older versions. */
+    public static final SnapshotInfo NONE = new SnapshotInfo(0, 0, NO_SEQUENCE);
+
+    /** A new base generation holding the effect of the log up to logSequence. */
+    public static SnapshotInfo at(long logId, long logSequence) {
+        return new SnapshotInfo(newGeneration(), logId, logSequence);
+    }
+
+    /** A new base generation not tied to any log. */
+    public static SnapshotInfo detached() {
+        return new SnapshotInfo(newGeneration(), 0, NO_SEQUENCE);
+    }
+
+    /** Same log position under a new generation, e.g. for a compacted base. */
+    public SnapshotInfo nextGeneration() {
+        return new SnapshotInfo(newGeneration(), logId, logSequence);
+    }
+
+    public boolean hasLogPosition() {
+        return logId != 0 && logSequence != NO_SEQUENCE;
+    }
+
+    private static long newGeneration() {
+        long g;
+        do {
+            g = ThreadLocalRandom.current().nextLong();
+        } while (g == 0);
+        return g;
+    }
+}
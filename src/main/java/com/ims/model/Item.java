@@ -2,13 +2,22 @@ package com.ims.model;
 
 import java.util.Objects;
 
-/** Core entity: ID, name, quantity, price, supplier. */
+/**
+ * Core entity: ID, name, quantity, price, supplier.
+ *
+ * version is stamped by the repository that stores the item: each write to
+ * an id stores a higher version than the one it replaces.
+ * An item built by hand has version 0. Copies made with the {@code with...}
+ * helpers keep the version they were derived from, which is what
+ * {@code InventoryRepository.compareAndSave} checks against.
+ */
 public record Item(
         String id,
         String name,
         int quantity,
         double price,
-        String supplier) {
+        String supplier,
+        long version) {
     public Item {
         Objects.requireNonNull(id, "id");
         Objects.requireNonNull(name, "name");
@@ -23,6 +32,13 @@ public record Item(
             throw new IllegalArgumentException("quantity cannot be negative");
         if (price < 0)
             throw new IllegalArgumentException("price cannot be negative");
+        if (version < 0)
+            throw new IllegalArgumentException("version cannot be negative");
+    }
+
+    /** A new, never stored item (version 0). */
+    public Item(String id, String name, int quantity, double price, String supplier) {
+        this(id, name, quantity, price, supplier, 0);
     }
 
     // ---- Getters ----
@@ -46,6 +62,10 @@ public record Item(
         return supplier;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     /**
      * Convenience for stock change. Positive to add, negative to deduct. Could
      * possibly combine next two functions, I jsut thought it would be nice to have
@@ -55,18 +75,22 @@ public record Item(
         int newQty = this.quantity + delta;
         if (newQty < 0)
             throw new IllegalArgumentException("resulting quantity cannot be negative");
-        return new Item(this.id, this.name, newQty, this.price, this.supplier);
+        return new Item(this.id, this.name, newQty, this.price, this.supplier, this.version);
     }
 
     public Item withUpdatedDetails(String newName, Double newPrice, String newSupplier) {
         String nn = newName != null ? newName : this.name;
         Double np = newPrice != null ? newPrice : this.price;
         String ns = newSupplier != null ? newSupplier : this.supplier;
-        return new Item(this.id, nn, this.quantity, np, ns);
+        return new Item(this.id, nn, this.quantity, np, ns, this.version);
     }
 
     public Item withQuantity(int newQuantity) {
-        return new Item(id, name, newQuantity, price, supplier);
+        return new Item(id, name, newQuantity, price, supplier, version);
+    }
+
+    public Item withVersion(long newVersion) {
+        return new Item(id, name, quantity, price, supplier, newVersion);
     }
 
     // equality and debugging
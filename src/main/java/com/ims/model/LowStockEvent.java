@@ -0,0 +1,16 @@
+package com.ims.model;
+
+import java.time.Instant;
+
+/**
+ * An item crossed the low-stock line: it became low ({@code low} is true) or
+ * recovered. quantity is the item's quantity after the last change that led
+ * to the event, and timestamp is when that change was seen.
+ */
+public record LowStockEvent(
+        String itemId,
+        boolean low,
+        int quantity,
+        Instant timestamp
+) {
+}
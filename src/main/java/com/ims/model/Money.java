@@ -0,0 +1,73 @@
+package com.ims.model;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Exact money arithmetic for stock values.
+ *
+ * Amounts are longs of 1/10,000 of the currency unit, so prices are taken to
+ * four decimal places ({@link #SCALE}) and sums never drift. A {@link Sum}
+ * widens to {@link BigInteger} only on overflow, so a total is the same
+ * however the work was split or ordered.
+ */
+public final class Money {
+
+    /** Decimal places amounts are kept to. */
+    public static final int SCALE = 4;
+
+    private static final double FACTOR = 10_000d;
+
+    private Money() {
+    }
+
+    /** price in 1/10,000 of the currency unit, rounded. */
+    public static long scaled(double price) {
+        return Math.round(price * FACTOR);
+    }
+
+    /** Exact stock value of quantity units at price. */
+    public static BigDecimal valueOf(long quantity, double price) {
+        return new BigDecimal(BigInteger.valueOf(quantity).multiply(BigInteger.valueOf(scaled(price))), SCALE);
+    }
+
+    /** Exact running sum of scaled amounts; a long until it would overflow. Not thread-safe. */
+    public static final class Sum {
+        private long sum;
+        private BigInteger overflow = BigInteger.ZERO;
+
+        /** Adds quantity x scaledPrice, which may itself exceed a long. */
+        public void add(long quantity, long scaledPrice) {
+            long value;
+            try {
+                value = Math.multiplyExact(quantity, scaledPrice);
+            } catch (ArithmeticException e) {
+                overflow = overflow.add(BigInteger.valueOf(quantity).multiply(BigInteger.valueOf(scaledPrice)));
+                return;
+            }
+            add(value);
+        }
+
+        /** Adds a scaled amount. */
+        public void add(long value) {
+            long r = sum + value;
+            if (((sum ^ r) & (value ^ r)) < 0) {
+                // Signed overflow: bank the running sum and start over
+                overflow = overflow.add(BigInteger.valueOf(sum));
+                r = value;
+            }
+            sum = r;
+        }
+
+        /** Adds other's total to this sum and returns this. */
+        public Sum merge(Sum other) {
+            add(other.sum);
+            overflow = overflow.add(other.overflow);
+            return this;
+        }
+
+        public BigDecimal toBigDecimal() {
+            return new BigDecimal(overflow.add(BigInteger.valueOf(sum)), SCALE);
+        }
+    }
+}
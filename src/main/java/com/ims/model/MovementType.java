@@ -0,0 +1,10 @@
+package com.ims.model;
+
+/**
+ * Type of stock movement.
+ */
+public enum MovementType {
+    INBOUND, // purchase, restock, return to stock
+    OUTBOUND, // sale, shipment, consumption
+    ADJUSTMENT // manual correction, inventory count correction
+}
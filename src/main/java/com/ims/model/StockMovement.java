@@ -49,11 +49,3 @@ public record StockMovement(
     }
 }
 
-/**
- * Type of stock movement.
- */
-enum MovementType {
-    INBOUND, // purchase, restock, return to stock
-    OUTBOUND, // sale, shipment, consumption
-    ADJUSTMENT // manual correction, inventory count correction
-}
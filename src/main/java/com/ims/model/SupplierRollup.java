@@ -0,0 +1,15 @@
+package com.ims.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Aggregates over the items of one supplier: how many SKUs, how many units
+ * in stock, and the stock value (sum of quantity x price).
+ */
+public record SupplierRollup(
+        String supplierId,
+        int skuCount,
+        long totalUnits,
+        BigDecimal totalValue
+) {
+}
@@ -0,0 +1,755 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Bounded read-through cache in front of a slower {@link InventoryRepository}.
+ *
+ * The cache is split into segments, each an access-ordered map behind its
+ * own lock. It is bounded by entry count or by estimated heap bytes. With
+ * {@link Eviction#LRU} the least recently used entry is evicted; with
+ * {@link Eviction#TINY_LFU} a new entry is only admitted over the LRU victim
+ * if a small count-min sketch says it is used more often, so one-off scans do
+ * not flush the hot set. Lookups that find nothing are remembered too
+ * (negative caching), so repeated {@link #existsById} misses stay off the
+ * backend.
+ *
+ * Writes are serialized per id and either go straight to the backend
+ * ({@link WriteMode#WRITE_THROUGH}) or are coalesced per id and flushed in
+ * the background ({@link WriteMode#WRITE_BEHIND}). With write-behind, reads
+ * see pending writes, listeners registered here are told about each write
+ * when it is accepted, and bulk reads (findAll, streams, sorted views) flush
+ * first. Call {@link #close()} to flush the remaining writes.
+ *
+ * Cached items carry the version the backend stores for them. With
+ * write-behind this repository stamps versions itself and the backend keeps
+ * them when the writes are flushed; conditional writes
+ * ({@link #compareAndSave}) are checked against the pending or cached item.
+ */
+public class CachingInventoryRepository implements InventoryRepository, Closeable {
+
+    public enum Sizing {
+        /** maxWeight is a number of items. */
+        ENTRIES,
+        /** maxWeight is an estimate of the cached items' heap footprint in bytes. */
+        BYTES
+    }
+
+    public enum Eviction {
+        LRU, TINY_LFU
+    }
+
+    public enum WriteMode {
+        WRITE_THROUGH, WRITE_BEHIND
+    }
+
+    private static final int SEGMENTS = 16;
+    private static final int WRITE_STRIPES = 256;
+    private static final int MAX_PENDING = 64 * 1024;
+    private static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(100);
+
+    private final InventoryRepository backend;
+    private final Sizing sizing;
+    private final WriteMode writeMode;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_STRIPES];
+    private final List<InventoryChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    // Write-behind state. A null value is a pending delete.
+    private final Object pendingLock = new Object();
+    private final Object flushLock = new Object();
+    private Map<String, Item> pending = new LinkedHashMap<>(); // guarded by pendingLock
+    private volatile Map<String, Item> inFlight = Map.of();
+    private final long flushIntervalMillis;
+    private final Thread flusher;
+    private volatile boolean closed;
+
+    /** LRU, write-through cache of up to maxEntries items. */
+    public CachingInventoryRepository(InventoryRepository backend, int maxEntries) {
+        this(backend, Sizing.ENTRIES, maxEntries, Eviction.LRU, WriteMode.WRITE_THROUGH);
+    }
+
+    public CachingInventoryRepository(InventoryRepository backend, Sizing sizing, long maxWeight,
+            Eviction eviction, WriteMode writeMode) {
+        this(backend, sizing, maxWeight, eviction, writeMode, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    /**
+     * @param flushInterval how often write-behind flushes pending writes;
+     *                      ignored for write-through
+     */
+    public CachingInventoryRepository(InventoryRepository backend, Sizing sizing, long maxWeight,
+            Eviction eviction, WriteMode writeMode, Duration flushInterval) {
+        this.backend = Objects.requireNonNull(backend, "backend");
+        this.sizing = Objects.requireNonNull(sizing, "sizing");
+        this.writeMode = Objects.requireNonNull(writeMode, "writeMode");
+        Objects.requireNonNull(eviction, "eviction");
+        Objects.requireNonNull(flushInterval, "flushInterval");
+        if (maxWeight <= 0)
+            throw new IllegalArgumentException("maxWeight must be > 0");
+        if (flushInterval.isNegative() || flushInterval.isZero())
+            throw new IllegalArgumentException("flushInterval must be > 0");
+
+        long perSegment = Math.max(1, (maxWeight + SEGMENTS - 1) / SEGMENTS);
+        // Rough entry count for sizing the sketch and the negative cache
+        long perSegmentEntries = sizing == Sizing.ENTRIES ? perSegment : Math.max(16, perSegment / 256);
+        for (int i = 0; i < SEGMENTS; i++)
+            segments[i] = new Segment(perSegment, perSegmentEntries, eviction == Eviction.TINY_LFU);
+        for (int i = 0; i < WRITE_STRIPES; i++)
+            writeLocks[i] = new ReentrantLock();
+
+        this.flushIntervalMillis = Math.max(1, flushInterval.toMillis());
+        if (writeMode == WriteMode.WRITE_BEHIND) {
+            this.flusher = new Thread(this::flushLoop, "cache-write-behind");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    // ---------- Reads ----------
+
+    @Override
+    public boolean existsById(String id) {
+        if (id == null)
+            return false;
+        Segment seg = segmentFor(id);
+        long stamp = seg.stamp();
+        Lookup pendingWrite = pendingValue(id);
+        if (pendingWrite != null)
+            return pendingWrite.item != null;
+        Object cached = seg.lookup(id);
+        if (cached == Segment.ABSENT) {
+            negativeHits.increment();
+            return false;
+        }
+        if (cached != null) {
+            hits.increment();
+            return true;
+        }
+        misses.increment();
+        boolean exists = backend.existsById(id);
+        if (!exists)
+            seg.storeAbsent(id, stamp);
+        return exists;
+    }
+
+    @Override
+    public Optional<Item> findById(String id) {
+        if (id == null)
+            return Optional.empty();
+        return Optional.ofNullable(load(id));
+    }
+
+    /** Pending write, then cache, then backend; caches what the backend returns. */
+    private Item load(String id) {
+        // Taken first: any write or flush that completes after this point
+        // bumps the stamp, so a stale backend read below is never cached
+        Segment seg = segmentFor(id);
+        long stamp = seg.stamp();
+        Lookup pendingWrite = pendingValue(id);
+        if (pendingWrite != null)
+            return pendingWrite.item;
+        Object cached = seg.lookup(id);
+        if (cached == Segment.ABSENT) {
+            negativeHits.increment();
+            return null;
+        }
+        if (cached != null) {
+            hits.increment();
+            return (Item) cached;
+        }
+        misses.increment();
+        Item item = backend.findById(id).orElse(null);
+        if (item == null)
+            seg.storeAbsent(id, stamp);
+        else
+            seg.storeLoaded(item, stamp);
+        return item;
+    }
+
+    @Override
+    public List<Item> findAll() {
+        flushIfWriteBehind();
+        return backend.findAll();
+    }
+
+    @Override
+    public Stream<Item> stream() {
+        flushIfWriteBehind();
+        return backend.stream();
+    }
+
+    @Override
+    public List<Item> findByQuantityAtOrBelow(int maxQuantity) {
+        flushIfWriteBehind();
+        return backend.findByQuantityAtOrBelow(maxQuantity);
+    }
+
+    @Override
+    public List<Item> findPage(String afterId, int limit) {
+        flushIfWriteBehind();
+        return backend.findPage(afterId, limit);
+    }
+
+    @Override
+    public ItemCursor sorted(SortOrder order) {
+        flushIfWriteBehind();
+        return backend.sorted(order);
+    }
+
+    // ---------- Writes ----------
+
+    @Override
+    public void save(Item item) {
+        Objects.requireNonNull(item, "item");
+        ReentrantLock lock = writeLock(item.getId());
+        lock.lock();
+        try {
+            if (writeMode == WriteMode.WRITE_THROUGH) {
+                // The backend stamps the version; without a cached copy we cannot tell which it chose
+                Item cached = segmentFor(item.getId()).cached(item.getId());
+                if (cached == null) {
+                    backend.save(item);
+                    segmentFor(item.getId()).invalidate(item.getId());
+                    return;
+                }
+                item = ItemVersions.stamp(cached, item);
+                backend.save(item);
+            } else {
+                Item before = load(item.getId());
+                item = ItemVersions.stamp(before, item);
+                fire(before, item);
+                enqueue(item.getId(), item);
+            }
+            segmentFor(item.getId()).storeWritten(item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Item> items) {
+        if (writeMode == WriteMode.WRITE_BEHIND) {
+            for (Item it : items)
+                save(it);
+            return;
+        }
+        backend.saveAll(items);
+        // Concurrent single writes may have raced the bulk write; dropping the entries is always safe
+        for (Item it : items)
+            segmentFor(it.getId()).invalidate(it.getId());
+    }
+
+    @Override
+    public Optional<Item> computeIfPresent(String id, UnaryOperator<Item> remapping) {
+        Objects.requireNonNull(remapping, "remapping");
+        if (id == null)
+            return Optional.empty();
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            if (writeMode == WriteMode.WRITE_THROUGH) {
+                Optional<Item> updated = backend.computeIfPresent(id, remapping);
+                if (updated.isPresent())
+                    segmentFor(id).storeWritten(updated.get());
+                else
+                    segmentFor(id).invalidate(id);
+                return updated;
+            }
+            Item current = load(id);
+            if (current == null)
+                return Optional.empty();
+            Item next = Objects.requireNonNull(remapping.apply(current), "remapped item");
+            if (!id.equals(next.id()))
+                throw new IllegalArgumentException("remapping must not change the item id");
+            next = ItemVersions.stamp(current, next);
+            fire(current, next);
+            enqueue(id, next);
+            segmentFor(id).storeWritten(next);
+            return Optional.of(next);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(String id) {
+        if (id == null)
+            return;
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            if (writeMode == WriteMode.WRITE_THROUGH) {
+                backend.deleteById(id);
+            } else {
+                Item before = load(id);
+                if (before == null)
+                    return;
+                fire(before, null);
+                enqueue(id, null);
+            }
+            segmentFor(id).storeAbsent(id, Long.MIN_VALUE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void replaceAll(List<Item> items) {
+        Objects.requireNonNull(items, "items");
+        if (writeMode == WriteMode.WRITE_BEHIND) {
+            synchronized (flushLock) {
+                Map<String, Item> dropped;
+                synchronized (pendingLock) {
+                    dropped = pending;
+                    pending = new LinkedHashMap<>();
+                }
+                if (!listeners.isEmpty()) {
+                    // Listeners have seen the pending writes, so remove what they saw
+                    Map<String, Item> current = new LinkedHashMap<>();
+                    for (Item item : backend.findAll())
+                        current.put(item.getId(), item);
+                    for (Map.Entry<String, Item> e : dropped.entrySet()) {
+                        if (e.getValue() == null)
+                            current.remove(e.getKey());
+                        else
+                            current.put(e.getKey(), e.getValue());
+                    }
+                    for (Item before : current.values())
+                        fire(before, null);
+                    for (Item after : items)
+                        fire(null, after);
+                }
+                backend.replaceAll(items);
+                clearCache();
+            }
+            return;
+        }
+        backend.replaceAll(items);
+        clearCache();
+    }
+
+    /**
+     * With write-through the backend fires events; with write-behind this
+     * repository fires them when a write is accepted, before it is flushed.
+     */
+    @Override
+    public void addChangeListener(InventoryChangeListener listener) {
+        if (writeMode == WriteMode.WRITE_THROUGH)
+            backend.addChangeListener(listener);
+        else
+            listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    @Override
+    public void removeChangeListener(InventoryChangeListener listener) {
+        if (writeMode == WriteMode.WRITE_THROUGH)
+            backend.removeChangeListener(listener);
+        else
+            listeners.remove(listener);
+    }
+
+    private void fire(Item before, Item after) {
+        for (InventoryChangeListener l : listeners)
+            l.onChange(before, after);
+    }
+
+    private ReentrantLock writeLock(String id) {
+        return writeLocks[spread(id.hashCode()) & (WRITE_STRIPES - 1)];
+    }
+
+    private void clearCache() {
+        for (Segment seg : segments)
+            seg.clear();
+    }
+
+    // ---------- Write-behind ----------
+
+    /**
+     * Writes every pending write to the backend and waits for it. A failed
+     * batch is put back (newer writes win) and the exception rethrown.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Item> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty())
+                    return;
+                batch = pending;
+                // Publish before releasing the lock so readers never miss the batch
+                inFlight = batch;
+                pending = new LinkedHashMap<>();
+            }
+            try {
+                List<Item> upserts = new ArrayList<>(batch.size());
+                for (Map.Entry<String, Item> e : batch.entrySet()) {
+                    if (e.getValue() == null)
+                        backend.deleteById(e.getKey());
+                    else
+                        upserts.add(e.getValue());
+                }
+                backend.saveAll(upserts);
+                flushes.increment();
+            } catch (RuntimeException e) {
+                flushFailures.increment();
+                synchronized (pendingLock) {
+                    Map<String, Item> merged = new LinkedHashMap<>(batch);
+                    merged.putAll(pending);
+                    pending = merged;
+                }
+                throw e;
+            } finally {
+                for (Segment seg : segments)
+                    seg.bumpStamp();
+                inFlight = Map.of();
+            }
+        }
+    }
+
+    /** Number of accepted writes not yet handed to the backend. */
+    public int pendingWrites() {
+        synchronized (pendingLock) {
+            return pending.size() + inFlight.size();
+        }
+    }
+
+    /** Stops the write-behind thread and flushes what is left. */
+    @Override
+    public void close() {
+        closed = true;
+        if (flusher != null) {
+            synchronized (pendingLock) {
+                pendingLock.notifyAll();
+            }
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+        }
+    }
+
+    private void enqueue(String id, Item item) {
+        if (closed)
+            throw new IllegalStateException("repository is closed");
+        synchronized (pendingLock) {
+            pending.put(id, item);
+            if (pending.size() >= MAX_PENDING)
+                pendingLock.notifyAll();
+        }
+    }
+
+    /** The pending write for id, or null if there is none. */
+    private Lookup pendingValue(String id) {
+        if (writeMode == WriteMode.WRITE_THROUGH)
+            return null;
+        synchronized (pendingLock) {
+            if (pending.containsKey(id)) {
+                hits.increment();
+                return new Lookup(pending.get(id));
+            }
+        }
+        Map<String, Item> flushing = inFlight;
+        if (flushing.containsKey(id)) {
+            hits.increment();
+            return new Lookup(flushing.get(id));
+        }
+        return null;
+    }
+
+    private void flushIfWriteBehind() {
+        if (writeMode == WriteMode.WRITE_BEHIND)
+            flush();
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            synchronized (pendingLock) {
+                if (pending.size() < MAX_PENDING && !closed) {
+                    try {
+                        pendingLock.wait(flushIntervalMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // Counted in flushFailures; the batch stays pending and is retried
+            }
+        }
+    }
+
+    // ---------- Statistics ----------
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /** Lookups answered by a cached "not found". */
+    public long negativeHitCount() {
+        return negativeHits.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long flushCount() {
+        return flushes.sum();
+    }
+
+    public long flushFailureCount() {
+        return flushFailures.sum();
+    }
+
+    /** Items currently cached. */
+    public long size() {
+        long n = 0;
+        for (Segment seg : segments)
+            n += seg.size();
+        return n;
+    }
+
+    // ---------- Segments ----------
+
+    private Segment segmentFor(String id) {
+        return segments[spread(id.hashCode()) >>> 28];
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x9E3779B9;
+    }
+
+    /** Rough heap footprint of a cached item, for {@link Sizing#BYTES}. */
+    static long estimateBytes(Item item) {
+        // Map entry + record + id and name strings; suppliers are usually shared
+        return 48 + 32 + 2 * (40 + (long) item.getId().length()) + (40 + item.getName().length());
+    }
+
+    private static final class Lookup {
+        final Item item;
+
+        Lookup(Item item) {
+            this.item = item;
+        }
+    }
+
+    /**
+     * One access-ordered slice of the cache. Loads from the backend are only
+     * cached if no write to the segment happened since the lookup missed
+     * ({@link #stamp}), so a slow read can never overwrite a newer write.
+     */
+    private final class Segment {
+        static final Object ABSENT = new Object();
+
+        private final LinkedHashMap<String, Item> items = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<String, Boolean> absent = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxWeight;
+        private final long maxAbsent;
+        private final FrequencySketch sketch;
+        private long weight;
+        private long stamp;
+
+        Segment(long maxWeight, long expectedEntries, boolean tinyLfu) {
+            this.maxWeight = maxWeight;
+            this.maxAbsent = expectedEntries;
+            this.sketch = tinyLfu ? new FrequencySketch(expectedEntries) : null;
+        }
+
+        /** The cached item, {@link #ABSENT} for a cached miss, or null. */
+        synchronized Object lookup(String id) {
+            if (sketch != null)
+                sketch.increment(id.hashCode());
+            Item item = items.get(id);
+            if (item != null)
+                return item;
+            return absent.get(id) != null ? ABSENT : null;
+        }
+
+        /** The cached item, or null; unlike {@link #lookup} this does not feed the sketch. */
+        synchronized Item cached(String id) {
+            return items.get(id);
+        }
+
+        synchronized long stamp() {
+            return stamp;
+        }
+
+        synchronized void bumpStamp() {
+            stamp++;
+        }
+
+        synchronized void storeLoaded(Item item, long seenStamp) {
+            if (stamp == seenStamp)
+                admit(item);
+        }
+
+        /** Records a miss; seenStamp of Long.MIN_VALUE means "this is a write". */
+        synchronized void storeAbsent(String id, long seenStamp) {
+            if (seenStamp == Long.MIN_VALUE) {
+                stamp++;
+            } else if (stamp != seenStamp) {
+                return;
+            }
+            remove(id);
+            absent.put(id, Boolean.TRUE);
+            if (absent.size() > maxAbsent) {
+                Iterator<String> it = absent.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+
+        synchronized void storeWritten(Item item) {
+            stamp++;
+            absent.remove(item.getId());
+            if (items.containsKey(item.getId()))
+                replace(item);
+            else
+                admit(item);
+        }
+
+        synchronized void invalidate(String id) {
+            stamp++;
+            remove(id);
+            absent.remove(id);
+        }
+
+        synchronized void clear() {
+            stamp++;
+            items.clear();
+            absent.clear();
+            weight = 0;
+        }
+
+        synchronized int size() {
+            return items.size();
+        }
+
+        private void admit(Item item) {
+            absent.remove(item.getId());
+            long w = weigh(item);
+            if (w > maxWeight)
+                return;
+            if (sketch != null && weight + w > maxWeight && !items.isEmpty()) {
+                // TinyLFU: only displace the LRU victim for a more frequently used item
+                Item victim = items.values().iterator().next();
+                if (sketch.frequency(item.getId().hashCode()) <= sketch.frequency(victim.getId().hashCode()))
+                    return;
+            }
+            items.put(item.getId(), item);
+            weight += w;
+            evictOverflow();
+        }
+
+        private void replace(Item item) {
+            Item old = items.put(item.getId(), item);
+            weight += weigh(item) - (old == null ? 0 : weigh(old));
+            evictOverflow();
+        }
+
+        private void remove(String id) {
+            Item old = items.remove(id);
+            if (old != null)
+                weight -= weigh(old);
+        }
+
+        private void evictOverflow() {
+            Iterator<Item> it = items.values().iterator();
+            while (weight > maxWeight && it.hasNext()) {
+                Item victim = it.next();
+                it.remove();
+                weight -= weigh(victim);
+                evictions.increment();
+            }
+        }
+
+        private long weigh(Item item) {
+            return sizing == Sizing.ENTRIES ? 1 : estimateBytes(item);
+        }
+    }
+
+    /**
+     * Count-min sketch of recent access frequencies with four rows of small
+     * counters (capped at 15). All counters are halved periodically so old
+     * popularity fades.
+     */
+    private static final class FrequencySketch {
+        private static final int[] SEEDS = { 0x97CB3127, 0xA4E4A9D3, 0xC2B2AE35, 0x85EBCA6B };
+
+        private final byte[] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(long expectedEntries) {
+            int width = 16;
+            while (width < expectedEntries && width < (1 << 24))
+                width <<= 1;
+            this.counters = new byte[width * SEEDS.length];
+            this.mask = width - 1;
+            this.sampleSize = width * 10;
+        }
+
+        int frequency(int hash) {
+            int min = Integer.MAX_VALUE;
+            for (int r = 0; r < SEEDS.length; r++)
+                min = Math.min(min, counters[index(hash, r)]);
+            return min;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int r = 0; r < SEEDS.length; r++) {
+                int i = index(hash, r);
+                if (counters[i] < 15) {
+                    counters[i]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < counters.length; i++)
+                    counters[i] >>= 1;
+                additions /= 2;
+            }
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * SEEDS[(row + 1) & 3];
+            h ^= h >>> 15;
+            return row * (mask + 1) + (h & mask);
+        }
+    }
+}
@@ -0,0 +1,782 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Memory-lean repository for very large catalogs.
+ *
+ * Items are not kept as objects. Each item owns a slot in a set of primitive
+ * columns: quantity and supplier code in {@code int[]}s, price as raw
+ * {@code double} bits and the item's version in {@code long[]}s, and one offset to the item's id and
+ * name, stored back to back as UTF-8 in a paged byte arena. Supplier names are
+ * stored once in a dictionary. Ids map to slots through an open-addressing
+ * table of {@code int}s, so there is no per-entry node either. {@link Item}s
+ * are created only when read.
+ *
+ * That is 28 bytes of columns, about 8 bytes of table and the raw string
+ * bytes per item, against roughly 200 bytes per item for
+ * {@link InMemoryInventoryRepository} with short ids and names.
+ *
+ * Structural writes (insert, delete, reload) take an exclusive lock. Updates
+ * of an existing item through {@link #save} or {@link #computeIfPresent} only
+ * share it and then lock the item's stripe, so adjustments to different
+ * items run in parallel. Listeners see the writes to any one id in order.
+ * A rename under the shared lock publishes the new name's arena entry with
+ * release semantics and id lookups read entries with acquire semantics, so
+ * a lookup racing a rename always finds the page the entry points into.
+ * Names left behind by renames and deletes are reclaimed by compacting the
+ * arena once they outweigh the live ones.
+ * Versions change under the same stripe as the other columns, so
+ * {@link #compareAndSave} never misses an adjustment.
+ * {@link #adjustQuantity} changes the quantity column in place and, while
+ * every listener accepts {@link InventoryChangeListener#onQuantityChange},
+ * allocates nothing for ASCII ids.
+ *
+ * {@link #findAll()} materializes every item and keeps the list until the
+ * next write, so repeated calls between writes share one copy; while it is
+ * kept the items are on the heap. Prefer
+ * {@link #findByQuantityAtOrBelow(int)}, {@link #findPage} or the sorted
+ * cursors for large catalogs.
+ */
+public class ColumnarInventoryRepository implements InventoryRepository {
+
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+    private static final int STRIPES = 64;
+    private static final int FREE = -1; // entry offset of an unused slot
+    private static final int PAGE_SHIFT = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final int MAX_PAGES = 1 << (31 - PAGE_SHIFT);
+    private static final int COMPACT_MIN_BYTES = 4 * PAGE_SIZE;
+    private static final VarHandle ENTRY = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+    private final Object[] stripes = new Object[STRIPES];
+    private final Object arenaLock = new Object();
+    private final SupplierDictionary suppliers = new SupplierDictionary();
+    private final List<InventoryChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // Bumped after every write, once the columns hold it
+    private final LongAdder modifications = new LongAdder();
+    private volatile Snapshot snapshot = new Snapshot(-1, List.of());
+    // The listeners as an array while all of them handle quantity changes, else null
+    private volatile InventoryChangeListener[] quantityListeners = new InventoryChangeListener[0];
+
+    // Columns indexed by slot. Replaced under the write lock; values change under the slot's stripe
+    private int[] entry; // arena offset of [id][name]
+    private int[] quantity;
+    private long[] priceBits;
+    private long[] version;
+    private int[] supplierCode;
+    private int slotCount; // slots ever handed out
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int size;
+
+    // id -> slot + 1 with linear probing, 0 = empty. Changed under the write lock
+    private int[] table;
+
+    // Entries are [varint len][utf-8 id][varint len][utf-8 name] and never span pages.
+    // Appends under arenaLock; pages are never modified once an entry is published.
+    private volatile byte[][] pages;
+    private int pageCount;
+    private int pageFill;
+    private long liveBytes;
+    private long garbageBytes;
+    private volatile boolean compactDue; // set by discard(), cleared by compactIfWasteful()
+
+    public ColumnarInventoryRepository() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ColumnarInventoryRepository(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("expectedSize must be >= 0");
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Object();
+        allocate(Math.max(16, expectedSize));
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        if (id == null)
+            return false;
+        structure.readLock().lock();
+        try {
+            return slotOf(id) >= 0;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(String id) {
+        if (id == null)
+            return Optional.empty();
+        structure.readLock().lock();
+        try {
+            int s = slotOf(id);
+            if (s < 0)
+                return Optional.empty();
+            synchronized (stripe(s)) {
+                return Optional.of(itemAt(s, id));
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Materializes every item. Repeated calls without intervening writes
+     * return the same list instance.
+     */
+    @Override
+    public List<Item> findAll() {
+        long version = modifications.sum();
+        Snapshot current = snapshot;
+        if (current.version == version)
+            return current.items;
+        structure.readLock().lock();
+        try {
+            List<Item> items = new ArrayList<>(size);
+            for (int s = 0; s < slotCount; s++) {
+                if (entry[s] == FREE)
+                    continue;
+                synchronized (stripe(s)) {
+                    items.add(itemAt(s, null));
+                }
+            }
+            items = Collections.unmodifiableList(items);
+            // Every write counted in version is in the copy; one that raced it
+            // moves the counter past version, so the next call rebuilds
+            snapshot = new Snapshot(version, items);
+            return items;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scans the quantity column and builds items only for the matches, so
+     * the cost of a low-stock query is one pass over an {@code int[]}.
+     */
+    @Override
+    public List<Item> findByQuantityAtOrBelow(int maxQuantity) {
+        structure.readLock().lock();
+        try {
+            List<Item> result = new ArrayList<>();
+            int[] q = quantity;
+            int[] e = entry;
+            for (int s = 0, n = slotCount; s < n; s++) {
+                if (q[s] > maxQuantity || e[s] == FREE)
+                    continue;
+                synchronized (stripe(s)) {
+                    // Re-check under the stripe: an adjustment may have raced the scan
+                    if (q[s] <= maxQuantity)
+                        result.add(itemAt(s, null));
+                }
+            }
+            return result;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * An existing item is rewritten under its stripe, as in
+     * {@link #computeIfPresent}; only an insert takes the exclusive lock.
+     */
+    @Override
+    public void save(Item item) {
+        Objects.requireNonNull(item, "item");
+        structure.readLock().lock();
+        try {
+            int s = slotOf(item.getId());
+            if (s >= 0) {
+                synchronized (stripe(s)) {
+                    write(s, itemAt(s, item.getId()), item);
+                }
+                return;
+            }
+        } finally {
+            structure.readLock().unlock();
+            if (compactDue && structure.getReadHoldCount() == 0)
+                compactArena();
+        }
+        structure.writeLock().lock();
+        try {
+            upsert(item); // inserts, or updates if the id arrived meanwhile
+            compactIfWasteful();
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Item> items) {
+        structure.writeLock().lock();
+        try {
+            for (Item it : items)
+                upsert(it);
+            compactIfWasteful();
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Updates the item's columns in place while holding only its stripe, so
+     * adjustments to different items do not block each other. A rename that
+     * leaves the arena mostly garbage compacts it afterwards under the
+     * exclusive lock.
+     */
+    @Override
+    public Optional<Item> computeIfPresent(String id, UnaryOperator<Item> remapping) {
+        Objects.requireNonNull(remapping, "remapping");
+        if (id == null)
+            return Optional.empty();
+        structure.readLock().lock();
+        try {
+            int s = slotOf(id);
+            if (s < 0)
+                return Optional.empty();
+            synchronized (stripe(s)) {
+                Item current = itemAt(s, id);
+                Item next = Objects.requireNonNull(remapping.apply(current), "remapped item");
+                if (!id.equals(next.id()))
+                    throw new IllegalArgumentException("remapping must not change the item id");
+                return Optional.of(write(s, current, next));
+            }
+        } finally {
+            structure.readLock().unlock();
+            if (compactDue && structure.getReadHoldCount() == 0)
+                compactArena();
+        }
+    }
+
+    /**
+     * Adds delta to the quantity column under the item's stripe. Listeners
+     * get {@link InventoryChangeListener#onQuantityChange}; if one of them
+     * needs full items this falls back to {@link #computeIfPresent}.
+     */
+    @Override
+    public int adjustQuantity(String id, int delta) {
+        if (id == null)
+            return NOT_FOUND;
+        InventoryChangeListener[] hooks = quantityListeners;
+        if (hooks == null)
+            return InventoryRepository.super.adjustQuantity(id, delta);
+        structure.readLock().lock();
+        try {
+            int s = slotOf(id);
+            if (s < 0)
+                return NOT_FOUND;
+            synchronized (stripe(s)) {
+                int q = quantity[s];
+                long next = (long) q + delta;
+                if (next < 0 || next > Integer.MAX_VALUE)
+                    return REJECTED;
+                for (InventoryChangeListener l : hooks)
+                    l.onQuantityChange(id, q, (int) next);
+                quantity[s] = (int) next;
+                version[s]++;
+                modifications.increment();
+                return (int) next;
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(String id) {
+        if (id == null)
+            return;
+        structure.writeLock().lock();
+        try {
+            int s = slotOf(id);
+            if (s < 0)
+                return;
+            fire(itemAt(s, id), null);
+            unlink(s);
+            discard(entry[s]);
+            entry[s] = FREE;
+            if (freeCount == freeSlots.length)
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            freeSlots[freeCount++] = s;
+            size--;
+            modifications.increment();
+            compactIfWasteful();
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void replaceAll(List<Item> items) {
+        Objects.requireNonNull(items, "items");
+        structure.writeLock().lock();
+        try {
+            if (!listeners.isEmpty()) {
+                for (int s = 0; s < slotCount; s++) {
+                    if (entry[s] != FREE)
+                        fire(itemAt(s, null), null);
+                }
+            }
+            allocate(Math.max(16, items.size()));
+            modifications.increment();
+            for (Item it : items)
+                upsert(it);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public synchronized void addChangeListener(InventoryChangeListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+        quantityListeners = quantityListenersOf(listeners);
+    }
+
+    @Override
+    public synchronized void removeChangeListener(InventoryChangeListener listener) {
+        listeners.remove(listener);
+        quantityListeners = quantityListenersOf(listeners);
+    }
+
+    public int size() {
+        structure.readLock().lock();
+        try {
+            return size;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    private void fire(Item before, Item after) {
+        for (InventoryChangeListener l : listeners)
+            l.onChange(before, after);
+    }
+
+    private static InventoryChangeListener[] quantityListenersOf(List<InventoryChangeListener> listeners) {
+        InventoryChangeListener[] all = listeners.toArray(new InventoryChangeListener[0]);
+        for (InventoryChangeListener l : all) {
+            if (!l.handlesQuantityChanges())
+                return null;
+        }
+        return all;
+    }
+
+    private Object stripe(int slot) {
+        return stripes[slot & (STRIPES - 1)];
+    }
+
+    // ---------- Slots (write lock held unless noted) ----------
+
+    private void allocate(int capacity) {
+        entry = new int[capacity];
+        quantity = new int[capacity];
+        priceBits = new long[capacity];
+        version = new long[capacity];
+        supplierCode = new int[capacity];
+        slotCount = 0;
+        freeCount = 0;
+        size = 0;
+        table = new int[tableSizeFor(capacity)];
+        synchronized (arenaLock) {
+            pages = new byte[16][];
+            pageCount = 0;
+            pageFill = PAGE_SIZE;
+            liveBytes = 0;
+            garbageBytes = 0;
+            compactDue = false;
+        }
+    }
+
+    private void upsert(Item item) {
+        int s = slotOf(item.getId());
+        if (s >= 0) {
+            write(s, itemAt(s, item.getId()), item);
+            return;
+        }
+        item = ItemVersions.stamp(null, item);
+
+        if (freeCount == 0 && slotCount == quantity.length)
+            growColumns();
+        if ((size + 1) * 4L > table.length * 3L)
+            rehash(table.length * 2);
+        int e = appendEntry(item.getId(), item.getName());
+        int code = suppliers.codeOf(item.getSupplier());
+        try {
+            fire(null, item);
+        } catch (RuntimeException ex) {
+            discard(e);
+            throw ex;
+        }
+        s = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+        entry[s] = e;
+        quantity[s] = item.getQuantity();
+        priceBits[s] = Double.doubleToRawLongBits(item.getPrice());
+        supplierCode[s] = code;
+        version[s] = item.getVersion();
+        link(s);
+        size++;
+        modifications.increment();
+    }
+
+    /**
+     * Replaces the item in slot s and returns it as stored, with its new
+     * version. Only a rename touches the arena. Caller holds the slot's
+     * stripe or the write lock.
+     */
+    private Item write(int s, Item current, Item next) {
+        next = ItemVersions.stamp(current, next);
+        boolean renamed = !next.getName().equals(current.getName());
+        int e = renamed ? appendEntry(next.getId(), next.getName()) : entry[s];
+        int code = suppliers.codeOf(next.getSupplier());
+        try {
+            fire(current, next);
+        } catch (RuntimeException ex) {
+            if (renamed)
+                discard(e);
+            throw ex;
+        }
+        if (renamed)
+            discard(entry[s]);
+        // Release: lookups that see the new offset also see its page (see slotOf)
+        ENTRY.setRelease(entry, s, e);
+        quantity[s] = next.getQuantity();
+        priceBits[s] = Double.doubleToRawLongBits(next.getPrice());
+        supplierCode[s] = code;
+        version[s] = next.getVersion();
+        modifications.increment();
+        return next;
+    }
+
+    private void growColumns() {
+        int capacity = quantity.length + (quantity.length >> 1) + 1;
+        entry = Arrays.copyOf(entry, capacity);
+        quantity = Arrays.copyOf(quantity, capacity);
+        priceBits = Arrays.copyOf(priceBits, capacity);
+        version = Arrays.copyOf(version, capacity);
+        supplierCode = Arrays.copyOf(supplierCode, capacity);
+    }
+
+    /** Builds the item in slot s; the caller holds the slot's stripe or the write lock. */
+    private Item itemAt(int s, String knownId) {
+        int e = entry[s];
+        byte[] page = pages[e >>> PAGE_SHIFT];
+        int pos = e & PAGE_MASK;
+        int idLen = readLength(page, pos);
+        pos += varintSize(idLen);
+        String id = knownId != null ? knownId : new String(page, pos, idLen, StandardCharsets.UTF_8);
+        pos += idLen;
+        int nameLen = readLength(page, pos);
+        pos += varintSize(nameLen);
+        String name = new String(page, pos, nameLen, StandardCharsets.UTF_8);
+        return new Item(id, name, quantity[s], Double.longBitsToDouble(priceBits[s]),
+                suppliers.name(supplierCode[s]), version[s]);
+    }
+
+    // ---------- Id table (read lock for lookups, write lock for changes) ----------
+
+    // Lookups hold no stripe, so a rename may move the entry they compare
+    // against. Reading the offset with acquire and only then the page table
+    // pairs with the release in write(): the page is published before it.
+
+    private int slotOf(String id) {
+        int h = 1;
+        for (int i = 0, n = id.length(); i < n; i++) {
+            char c = id.charAt(i);
+            if (c >= 0x80)
+                return slotOf(utf8(id));
+            h = 31 * h + c;
+        }
+        // ASCII: the chars are the UTF-8 bytes, so hash and compare without encoding
+        int[] t = table;
+        int mask = t.length - 1;
+        for (int i = mix(h) & mask; ; i = (i + 1) & mask) {
+            int e = t[i];
+            if (e == 0)
+                return -1;
+            int off = (int) ENTRY.getAcquire(entry, e - 1);
+            if (idEquals(pages, off, id))
+                return e - 1;
+        }
+    }
+
+    private int slotOf(byte[] key) {
+        int[] t = table;
+        int mask = t.length - 1;
+        for (int i = hash(key, 0, key.length) & mask; ; i = (i + 1) & mask) {
+            int e = t[i];
+            if (e == 0)
+                return -1;
+            int off = (int) ENTRY.getAcquire(entry, e - 1);
+            if (idEquals(pages, off, key))
+                return e - 1;
+        }
+    }
+
+    private int homeOf(int s) {
+        int e = entry[s];
+        byte[] page = pages[e >>> PAGE_SHIFT];
+        int pos = e & PAGE_MASK;
+        int len = readLength(page, pos);
+        pos += varintSize(len);
+        return hash(page, pos, pos + len) & (table.length - 1);
+    }
+
+    private void link(int s) {
+        int mask = table.length - 1;
+        int i = homeOf(s);
+        while (table[i] != 0)
+            i = (i + 1) & mask;
+        table[i] = s + 1;
+    }
+
+    /** Removes slot s from the table by shifting later probes back; no tombstones. */
+    private void unlink(int s) {
+        int mask = table.length - 1;
+        int i = homeOf(s);
+        while (table[i] != s + 1)
+            i = (i + 1) & mask;
+        for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+            int home = homeOf(table[j] - 1);
+            // Move the entry at j into the hole unless its home lies cyclically in (i, j]
+            boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!stays) {
+                table[i] = table[j];
+                i = j;
+            }
+        }
+        table[i] = 0;
+    }
+
+    private void rehash(int length) {
+        table = new int[length];
+        for (int s = 0; s < slotCount; s++) {
+            if (entry[s] != FREE)
+                link(s);
+        }
+    }
+
+    private static int tableSizeFor(int capacity) {
+        long min = capacity * 4L / 3 + 1;
+        int n = 16;
+        while (n < min)
+            n <<= 1;
+        return n;
+    }
+
+    private static int hash(byte[] a, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++)
+            h = 31 * h + a[i];
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    private static boolean idEquals(byte[][] p, int e, byte[] key) {
+        byte[] page = p[e >>> PAGE_SHIFT];
+        int pos = e & PAGE_MASK;
+        int len = readLength(page, pos);
+        if (len != key.length)
+            return false;
+        pos += varintSize(len);
+        return Arrays.equals(page, pos, pos + len, key, 0, len);
+    }
+
+    private static boolean idEquals(byte[][] p, int e, String asciiId) {
+        byte[] page = p[e >>> PAGE_SHIFT];
+        int pos = e & PAGE_MASK;
+        int len = readLength(page, pos);
+        if (len != asciiId.length())
+            return false;
+        pos += varintSize(len);
+        for (int i = 0; i < len; i++) {
+            if (page[pos + i] != asciiId.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    // ---------- String arena ----------
+
+    private int appendEntry(String id, String name) {
+        byte[] idBytes = utf8(id);
+        byte[] nameBytes = utf8(name);
+        int need = varintSize(idBytes.length) + idBytes.length + varintSize(nameBytes.length) + nameBytes.length;
+        if (need > PAGE_SIZE)
+            throw new IllegalArgumentException("id and name exceed " + PAGE_SIZE + " bytes");
+        synchronized (arenaLock) {
+            byte[][] p = pages;
+            if (pageFill + need > PAGE_SIZE) {
+                if (pageCount == MAX_PAGES)
+                    throw new IllegalStateException("string arena is full");
+                if (pageCount == p.length)
+                    p = Arrays.copyOf(p, Math.min(MAX_PAGES, p.length * 2));
+                p[pageCount++] = new byte[PAGE_SIZE];
+                pageFill = 0;
+            }
+            int off = ((pageCount - 1) << PAGE_SHIFT) | pageFill;
+            byte[] page = p[pageCount - 1];
+            int pos = writeLength(page, pageFill, idBytes.length);
+            System.arraycopy(idBytes, 0, page, pos, idBytes.length);
+            pos = writeLength(page, pos + idBytes.length, nameBytes.length);
+            System.arraycopy(nameBytes, 0, page, pos, nameBytes.length);
+            pageFill = pos + nameBytes.length;
+            liveBytes += need;
+            pages = p;
+            return off;
+        }
+    }
+
+    private void discard(int e) {
+        synchronized (arenaLock) {
+            int bytes = entryBytes(pages[e >>> PAGE_SHIFT], e & PAGE_MASK);
+            liveBytes -= bytes;
+            garbageBytes += bytes;
+            if (garbageBytes >= COMPACT_MIN_BYTES && garbageBytes >= liveBytes)
+                compactDue = true;
+        }
+    }
+
+    private void compactArena() {
+        structure.writeLock().lock();
+        try {
+            compactIfWasteful();
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /** Rewrites the arena without dead entries once they outweigh live ones. Write lock held. */
+    private void compactIfWasteful() {
+        synchronized (arenaLock) {
+            if (garbageBytes < COMPACT_MIN_BYTES || garbageBytes < liveBytes)
+                return;
+            byte[][] old = pages;
+            byte[][] p = new byte[Math.max(16, (int) (liveBytes >>> PAGE_SHIFT) + 1)][];
+            int count = 0;
+            int fill = PAGE_SIZE;
+            for (int s = 0; s < slotCount; s++) {
+                int e = entry[s];
+                if (e == FREE)
+                    continue;
+                byte[] from = old[e >>> PAGE_SHIFT];
+                int pos = e & PAGE_MASK;
+                int bytes = entryBytes(from, pos);
+                if (fill + bytes > PAGE_SIZE) {
+                    if (count == p.length)
+                        p = Arrays.copyOf(p, p.length * 2);
+                    p[count++] = new byte[PAGE_SIZE];
+                    fill = 0;
+                }
+                System.arraycopy(from, pos, p[count - 1], fill, bytes);
+                entry[s] = ((count - 1) << PAGE_SHIFT) | fill;
+                fill += bytes;
+            }
+            pages = p;
+            pageCount = count;
+            pageFill = fill;
+            garbageBytes = 0;
+            compactDue = false;
+        }
+    }
+
+    private static int entryBytes(byte[] page, int pos) {
+        int start = pos;
+        int idLen = readLength(page, pos);
+        pos += varintSize(idLen) + idLen;
+        int nameLen = readLength(page, pos);
+        return pos + varintSize(nameLen) + nameLen - start;
+    }
+
+    private static int writeLength(byte[] a, int pos, int len) {
+        while (len >= 0x80) {
+            a[pos++] = (byte) (len | 0x80);
+            len >>>= 7;
+        }
+        a[pos++] = (byte) len;
+        return pos;
+    }
+
+    private static int readLength(byte[] a, int pos) {
+        int len = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = a[pos++];
+            len |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return len;
+        }
+    }
+
+    private static int varintSize(int len) {
+        return len < 0x80 ? 1 : len < 0x4000 ? 2 : len < 0x200000 ? 3 : len < 0x10000000 ? 4 : 5;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Supplier names stored once, referenced by int code from the supplier column. */
+    private static final class Snapshot {
+        final long version;
+        final List<Item> items;
+
+        Snapshot(long version, List<Item> items) {
+            this.version = version;
+            this.items = items;
+        }
+    }
+
+    private static final class SupplierDictionary {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] names = new String[16];
+        private int count; // guarded by this
+
+        int codeOf(String supplier) {
+            Integer code = codes.get(supplier);
+            if (code != null)
+                return code;
+            synchronized (this) {
+                code = codes.get(supplier);
+                if (code != null)
+                    return code;
+                String[] n = names;
+                if (count == n.length)
+                    n = Arrays.copyOf(n, count * 2);
+                n[count] = supplier;
+                names = n;
+                codes.put(supplier, count);
+                return count++;
+            }
+        }
+
+        String name(int code) {
+            return names[code];
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers which item ids were inserted, updated or deleted since the last
+ * {@link #drain()}, so a save only has to write those.
+ */
+public class DirtyTracker implements InventoryChangeListener {
+
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void onChange(Item before, Item after) {
+        dirty.add(after != null ? after.id() : before.id());
+    }
+
+    @Override
+    public void onQuantityChange(String id, int before, int after) {
+        dirty.add(id);
+    }
+
+    @Override
+    public boolean handlesQuantityChanges() {
+        return true;
+    }
+
+    /**
+     * Removes and returns the dirty ids. An id written again while (or after)
+     * it is drained is marked dirty again, so no change is ever missed.
+     */
+    public List<String> drain() {
+        List<String> ids = new ArrayList<>();
+        for (Iterator<String> it = dirty.iterator(); it.hasNext();) {
+            ids.add(it.next());
+            it.remove();
+        }
+        return ids;
+    }
+
+    /** Marks ids dirty again, e.g. when writing a drained set failed. */
+    public void markDirty(Collection<String> ids) {
+        dirty.addAll(ids);
+    }
+
+    public int size() {
+        return dirty.size();
+    }
+
+    public void clear() {
+        dirty.clear();
+    }
+}
@@ -0,0 +1,337 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Thread-safe in-memory repository.
+ *
+ * Items live in a {@link ConcurrentHashMap}, so writers on different ids only
+ * contend when they hash to the same bin. Every write bumps a striped
+ * {@link LongAdder}; {@link #findAll()} hands out a cached immutable snapshot
+ * and only rebuilds it when that counter has moved since the last build.
+ *
+ * Change listeners run inside the map's per-key critical section, so they see
+ * the writes to any one id in order. Sorted views ({@link #sorted}) are
+ * maintained the same way.
+ *
+ * Versions are stamped inside the same critical section, so
+ * {@link #compareAndSave} checks and writes atomically. Items are immutable
+ * and carry their version, so {@link #findById} stays a lock-free map read
+ * and always returns a version that matches the fields it came with.
+ *
+ * {@link #replaceAll} builds a new map and swaps it in, so readers see
+ * either the old or the new contents, never a half-cleared store. Writers
+ * take no shared lock: each counts itself in and out on one of a set of
+ * padded counters picked by the id, so writers on different ids touch
+ * different cache lines. replaceAll raises a flag, waits for the counted
+ * writers to finish, and makes later ones wait until the new map is in,
+ * so no write lands in the map being replaced.
+ */
+public class InMemoryInventoryRepository implements InventoryRepository {
+
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+    private static final int WRITER_STRIPES = 64;
+    private static final int STRIPE_PAD = 16; // longs per counter, so counters sit a cache line apart
+    private static final int SNAPSHOT_ATTEMPTS = 3;
+
+    // Swapped only by replaceAll, while no writer is counted in
+    private volatile ConcurrentHashMap<String, Item> data;
+    private final AtomicLongArray writers = new AtomicLongArray(WRITER_STRIPES * STRIPE_PAD);
+    private volatile boolean replacing;
+    // Held for a whole replaceAll; writers that find it in progress wait on it
+    private final Object replaceLock = new Object();
+    private final LongAdder modifications = new LongAdder();
+    private final Object snapshotLock = new Object();
+    private volatile Snapshot snapshot = new Snapshot(-1, List.of());
+    private final List<InventoryChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<SortOrder, SortedView> views = new ConcurrentHashMap<>();
+    private final Object viewLock = new Object();
+
+    public InMemoryInventoryRepository() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public InMemoryInventoryRepository(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("expectedSize must be >= 0");
+        this.data = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        return id != null && data.containsKey(id);
+    }
+
+    @Override
+    public Optional<Item> findById(String id) {
+        if (id == null)
+            return Optional.empty();
+        return Optional.ofNullable(data.get(id));
+    }
+
+    /**
+     * Returns an unmodifiable point-in-time view of all items. Repeated calls
+     * without intervening writes return the same list instance.
+     */
+    @Override
+    public List<Item> findAll() {
+        long version = modifications.sum();
+        Snapshot current = snapshot;
+        if (current.version == version)
+            return current.items;
+
+        synchronized (snapshotLock) {
+            // Another reader may have rebuilt while we waited
+            version = modifications.sum();
+            current = snapshot;
+            if (current.version == version)
+                return current.items;
+
+            // Writes are counted once visible, so any write counted in `version`
+            // is in the copy. A copy that writes raced is taken again, so the
+            // list returned is one no write changed while it was being made.
+            List<Item> items;
+            for (int attempt = 1; ; attempt++) {
+                items = Collections.unmodifiableList(new ArrayList<>(data.values()));
+                long after = modifications.sum();
+                if (after == version || attempt == SNAPSHOT_ATTEMPTS)
+                    break; // tagged with the version read before the copy, so a raced copy is redone next call
+                version = after;
+            }
+            snapshot = new Snapshot(version, items);
+            return items;
+        }
+    }
+
+    @Override
+    public void save(Item item) {
+        Objects.requireNonNull(item, "item");
+        put(item);
+        modifications.increment();
+    }
+
+    @Override
+    public void saveAll(Collection<Item> items) {
+        for (Item it : items)
+            put(it);
+        modifications.increment();
+    }
+
+    private void put(Item item) {
+        int stripe = enter(item.id());
+        try {
+            put(data, item);
+        } finally {
+            exit(stripe);
+        }
+    }
+
+    private void put(ConcurrentHashMap<String, Item> map, Item item) {
+        map.compute(item.id(), (key, before) -> {
+            Item stored = ItemVersions.stamp(before, item);
+            fire(before, stored);
+            return stored;
+        });
+    }
+
+    /**
+     * Runs the remapping under the map's per-bin lock, so updates to one id are
+     * serialized while updates to other ids proceed in parallel.
+     */
+    @Override
+    public Optional<Item> computeIfPresent(String id, UnaryOperator<Item> remapping) {
+        Objects.requireNonNull(remapping, "remapping");
+        if (id == null)
+            return Optional.empty();
+        Item updated;
+        int stripe = enter(id);
+        try {
+            updated = data.computeIfPresent(id, (key, current) -> {
+                Item next = Objects.requireNonNull(remapping.apply(current), "remapped item");
+                if (!key.equals(next.id()))
+                    throw new IllegalArgumentException("remapping must not change the item id");
+                next = ItemVersions.stamp(current, next);
+                fire(current, next);
+                return next;
+            });
+        } finally {
+            exit(stripe);
+        }
+        if (updated == null)
+            return Optional.empty();
+        modifications.increment();
+        return Optional.of(updated);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        if (id == null)
+            return;
+        boolean[] removed = new boolean[1];
+        int stripe = enter(id);
+        try {
+            data.computeIfPresent(id, (key, before) -> {
+                fire(before, null);
+                removed[0] = true;
+                return null;
+            });
+        } finally {
+            exit(stripe);
+        }
+        if (removed[0])
+            modifications.increment();
+    }
+
+    /**
+     * Swaps in a map holding items. Listeners see every old item deleted and
+     * then the new ones added; readers see the old map until the swap.
+     */
+    @Override
+    public void replaceAll(List<Item> items) {
+        Objects.requireNonNull(items, "items");
+        synchronized (replaceLock) {
+            replacing = true;
+            try {
+                awaitWriters();
+                for (Item before : data.values())
+                    fire(before, null);
+                ConcurrentHashMap<String, Item> next = new ConcurrentHashMap<>(Math.max(items.size(), DEFAULT_CAPACITY));
+                for (Item it : items)
+                    put(next, it);
+                data = next;
+                modifications.increment();
+            } finally {
+                replacing = false;
+            }
+        }
+    }
+
+    /**
+     * Counts a write to id in; returns the counter to pass to {@link #exit}.
+     * Counting in before reading the flag, as replaceAll raises the flag
+     * before reading the counters, means one of them always sees the other.
+     */
+    private int enter(String id) {
+        int h = id.hashCode();
+        int stripe = ((h ^ (h >>> 16)) & (WRITER_STRIPES - 1)) * STRIPE_PAD;
+        while (true) {
+            writers.incrementAndGet(stripe);
+            if (!replacing)
+                return stripe;
+            writers.decrementAndGet(stripe);
+            synchronized (replaceLock) {
+                // Nothing to do: holding the lock means the replace is over
+            }
+        }
+    }
+
+    private void exit(int stripe) {
+        writers.decrementAndGet(stripe);
+    }
+
+    /** Waits until no write is counted in; called with the flag raised, so none can start. */
+    private void awaitWriters() {
+        for (int i = 0; i < WRITER_STRIPES; i++) {
+            while (writers.get(i * STRIPE_PAD) != 0)
+                Thread.yield(); // replaces are rare; writes in flight finish quickly
+        }
+    }
+
+    @Override
+    public void addChangeListener(InventoryChangeListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+    }
+
+    @Override
+    public void removeChangeListener(InventoryChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void fire(Item before, Item after) {
+        for (SortedView v : views.values()) {
+            if (before != null)
+                v.items.remove(before);
+            if (after != null)
+                v.items.add(after);
+        }
+        for (InventoryChangeListener l : listeners)
+            l.onChange(before, after);
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    // ---------- Sorted views ----------
+
+    /**
+     * Returns a cursor over a sorted view that is kept current by every write.
+     * The view for an order is built on first use (one pass over the items)
+     * and maintained incrementally from then on, so later calls copy nothing.
+     */
+    @Override
+    public ItemCursor sorted(SortOrder order) {
+        Objects.requireNonNull(order, "order");
+        SortedView view = views.get(order);
+        if (view == null || !view.seeded) {
+            synchronized (viewLock) {
+                view = views.get(order);
+                if (view == null) {
+                    view = new SortedView(order);
+                    // Publish before seeding so writes from here on update it
+                    views.put(order, view);
+                    // Held so a replace cannot swap maps halfway through the seeding
+                    synchronized (replaceLock) {
+                        ConcurrentHashMap<String, Item> map = data;
+                        for (String id : map.keySet()) {
+                            // Add the current item under its key lock, ordered with its writes
+                            SortedView v = view;
+                            map.computeIfPresent(id, (key, current) -> {
+                                v.items.add(current);
+                                return current;
+                            });
+                        }
+                    }
+                    view.seeded = true;
+                }
+            }
+        }
+        return new ItemCursor(view.readOnly);
+    }
+
+    private static final class Snapshot {
+        final long version;
+        final List<Item> items;
+
+        Snapshot(long version, List<Item> items) {
+            this.version = version;
+            this.items = items;
+        }
+    }
+
+    private static final class SortedView {
+        final NavigableSet<Item> items;
+        final NavigableSet<Item> readOnly;
+        volatile boolean seeded;
+
+        SortedView(SortOrder order) {
+            this.items = new ConcurrentSkipListSet<>(order.comparator());
+            this.readOnly = Collections.unmodifiableNavigableSet(items);
+        }
+    }
+}
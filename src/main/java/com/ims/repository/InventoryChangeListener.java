@@ -0,0 +1,33 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+
+/**
+ * Observes every write to a repository. Repositories call the listener while
+ * the written id is still locked, so events for one id arrive in the order
+ * the writes took effect. Implementations must be fast, thread-safe (events
+ * for different ids arrive concurrently) and must not throw.
+ */
+@FunctionalInterface
+public interface InventoryChangeListener {
+    /**
+     * @param before the previous item, or null if the id was inserted
+     * @param after  the new item, or null if the id was deleted
+     */
+    void onChange(Item before, Item after);
+
+    /**
+     * A quantity-only update of an existing item. Repositories that adjust
+     * quantities in place (see {@link InventoryRepository#adjustQuantity})
+     * report it here instead of building before and after items, but only
+     * while every registered listener returns true from
+     * {@link #handlesQuantityChanges()}.
+     */
+    default void onQuantityChange(String id, int before, int after) {
+    }
+
+    /** Whether {@link #onQuantityChange} is enough for this listener to stay correct. */
+    default boolean handlesQuantityChanges() {
+        return false;
+    }
+}
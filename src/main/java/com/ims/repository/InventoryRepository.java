@@ -2,33 +2,182 @@ package com.ims.repository;
 
 import com.ims.model.Item;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeSet;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Storage for items, keyed by id.
+ *
+ * Every write stamps the stored item with a version higher than the one it
+ * replaces (see {@link Item#version()}); a new id starts at 1. Deleting an id
+ * forgets its version, so an id that is deleted and added again, including by
+ * {@link #replaceAll}, starts over. Callers that edit a copy they read
+ * earlier use {@link #compareAndSave} to fail instead of overwriting a newer
+ * write.
+ */
 public interface InventoryRepository {
+
+    /** {@link #adjustQuantity} status: no item exists for the id. */
+    int NOT_FOUND = -1;
+
+    /** {@link #adjustQuantity} status: the result would be negative or overflow; nothing was written. */
+    int REJECTED = -2;
+
     boolean existsById(String id);
 
     Optional<Item> findById(String id);
 
     List<Item> findAll();
 
-    void save(Item item); // upsert by id
+    /**
+     * Streams one consistent snapshot of all items: writes made after the
+     * call are not seen. The default streams {@link #findAll()}, whose
+     * array-backed spliterator splits evenly for parallel use.
+     */
+    default Stream<Item> stream() {
+        return findAll().stream();
+    }
+
+    /**
+     * Keyset pagination by id: up to limit items with ids greater than
+     * afterId (or from the start when afterId is null), in id order. Each
+     * page reflects the writes made before it was read.
+     */
+    default List<Item> findPage(String afterId, int limit) {
+        ItemCursor cursor = sortById();
+        if (afterId != null)
+            cursor.seekAfter(idProbe(afterId));
+        return cursor.next(limit);
+    }
+
+    /** Items with quantity at or below maxQuantity, in no particular order. */
+    default List<Item> findByQuantityAtOrBelow(int maxQuantity) {
+        return stream()
+                .filter(it -> it.getQuantity() <= maxQuantity)
+                .collect(Collectors.toList());
+    }
+
+    void save(Item item); // upsert by id, unconditionally
+
+    /** Bulk upsert, e.g. one chunk of a streaming load. Later items win on duplicate ids. */
+    default void saveAll(Collection<Item> items) {
+        for (Item it : items)
+            save(it);
+    }
+
+    /**
+     * Atomic read-modify-write of a single item. The remapping function sees the
+     * current item and returns its replacement (same id); concurrent updates to
+     * the same id are serialized, never lost. If the function throws, the stored
+     * item is left untouched and the exception propagates.
+     *
+     * @return the stored replacement, stamped with its new version, or empty
+     *         if no item exists for id
+     */
+    Optional<Item> computeIfPresent(String id, UnaryOperator<Item> remapping);
+
+    /**
+     * Optimistic replace: stores item only if the stored item still has
+     * item's version, i.e. nobody has written it since item was read. The
+     * replacement is stored with the next version. Goes through
+     * {@link #computeIfPresent}, so the check and the write are one atomic
+     * step and reads are not blocked.
+     *
+     * @return the stored replacement, or empty if no item exists for the id
+     * @throws VersionConflictException if the stored version differs; nothing is written
+     */
+    default Optional<Item> compareAndSave(Item item) {
+        Objects.requireNonNull(item, "item");
+        long expected = item.getVersion();
+        Item next = item.withVersion(expected + 1);
+        return computeIfPresent(item.getId(), current -> {
+            if (current.getVersion() != expected)
+                throw new VersionConflictException(item.getId(), expected, current.getVersion());
+            return next;
+        });
+    }
+
+    /**
+     * Adds delta to an item's quantity atomically and returns the new
+     * quantity, or {@link #NOT_FOUND} / {@link #REJECTED}. Nothing is boxed or
+     * wrapped, so stores that keep quantities in primitive slots can override
+     * this to update in place without allocating. The default goes through
+     * {@link #computeIfPresent} and allocates the replacement item.
+     */
+    default int adjustQuantity(String id, int delta) {
+        if (id == null)
+            return NOT_FOUND;
+        try {
+            return computeIfPresent(id, current -> {
+                long q = (long) current.getQuantity() + delta;
+                if (q < 0 || q > Integer.MAX_VALUE)
+                    throw QuantityRejected.INSTANCE;
+                return new Item(current.id(), current.name(), (int) q, current.price(), current.supplier(),
+                        current.version() + 1);
+            }).map(Item::getQuantity).orElse(NOT_FOUND);
+        } catch (QuantityRejected e) {
+            return REJECTED;
+        }
+    }
 
     void deleteById(String id);
 
     void replaceAll(List<Item> items); // clear then add all
-    
-    void sortById(InventoryRepository repo);
-    
-    void sortByName(InventoryRepository repo);
-    
-    void sortByQuantityAscending(InventoryRepository repo);
-    
-    void sortByQuantityDescending(InventoryRepository repo);
-    
-    void sortByPriceAscending(InventoryRepository repo);
-    
-    void sortByPriceDescending(InventoryRepository repo);
-    
-    void sortBySupplier(InventoryRepository repo);
+
+    /** Registers a listener that is told about every subsequent write. */
+    void addChangeListener(InventoryChangeListener listener);
+
+    void removeChangeListener(InventoryChangeListener listener);
+
+    /**
+     * Items in the given order, as a lazy cursor. Implementations that keep
+     * the order maintained across writes should override this; the default
+     * sorts a copy of {@link #findAll()}.
+     */
+    default ItemCursor sorted(SortOrder order) {
+        NavigableSet<Item> view = new TreeSet<>(order.comparator());
+        view.addAll(findAll());
+        return new ItemCursor(Collections.unmodifiableNavigableSet(view));
+    }
+
+    /** Stand-in item that sorts exactly where afterId does in {@link SortOrder#ID}. */
+    private static Item idProbe(String afterId) {
+        return new Item(afterId, afterId, 0, 0, afterId);
+    }
+
+    default ItemCursor sortById() {
+        return sorted(SortOrder.ID);
+    }
+
+    default ItemCursor sortByName() {
+        return sorted(SortOrder.NAME);
+    }
+
+    default ItemCursor sortByQuantityAscending() {
+        return sorted(SortOrder.QUANTITY_ASC);
+    }
+
+    default ItemCursor sortByQuantityDescending() {
+        return sorted(SortOrder.QUANTITY_DESC);
+    }
+
+    default ItemCursor sortByPriceAscending() {
+        return sorted(SortOrder.PRICE_ASC);
+    }
+
+    default ItemCursor sortByPriceDescending() {
+        return sorted(SortOrder.PRICE_DESC);
+    }
+
+    default ItemCursor sortBySupplier() {
+        return sorted(SortOrder.SUPPLIER);
+    }
 }
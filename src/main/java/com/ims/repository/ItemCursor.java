@@ -0,0 +1,79 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+
+/**
+ * Lazy, paginated cursor over a sorted view. Nothing is copied up front:
+ * each page walks the view from the position after the last item returned
+ * (keyset pagination), so fetching page n costs the page size, not n times
+ * it.
+ *
+ * The underlying view may be live. Items written between pages show up (or
+ * disappear) according to their new sort key, so an item whose key moves
+ * across the cursor position can be seen twice or not at all.
+ */
+public final class ItemCursor {
+
+    private final NavigableSet<Item> view;
+    private Item last;
+    private boolean exhausted;
+
+    public ItemCursor(NavigableSet<Item> view) {
+        this.view = Objects.requireNonNull(view, "view");
+    }
+
+    /** Returns up to limit items following the previous page. */
+    public List<Item> next(int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("limit must be >= 0");
+        List<Item> page = new ArrayList<>(Math.min(limit, 256));
+        if (exhausted || limit == 0)
+            return page;
+        Iterator<Item> it = (last == null ? view : view.tailSet(last, false)).iterator();
+        while (page.size() < limit && it.hasNext())
+            page.add(it.next());
+        if (page.size() < limit)
+            exhausted = true;
+        if (!page.isEmpty())
+            last = page.get(page.size() - 1);
+        return page;
+    }
+
+    public boolean hasNext() {
+        if (exhausted)
+            return false;
+        return last == null ? !view.isEmpty() : view.higher(last) != null;
+    }
+
+    /**
+     * Repositions the cursor just after lastSeen, the final item of a page a
+     * client received earlier, so pagination can resume statelessly.
+     */
+    public ItemCursor seekAfter(Item lastSeen) {
+        this.last = Objects.requireNonNull(lastSeen, "lastSeen");
+        this.exhausted = false;
+        return this;
+    }
+
+    /**
+     * Offset pagination for callers that need it. Walks offset items, so
+     * prefer {@link #next(int)} or {@link #seekAfter(Item)} for deep pages.
+     */
+    public List<Item> page(int offset, int limit) {
+        if (offset < 0 || limit < 0)
+            throw new IllegalArgumentException("offset and limit must be >= 0");
+        List<Item> page = new ArrayList<>(Math.min(limit, 256));
+        Iterator<Item> it = view.iterator();
+        for (int i = 0; i < offset && it.hasNext(); i++)
+            it.next();
+        while (page.size() < limit && it.hasNext())
+            page.add(it.next());
+        return page;
+    }
+}
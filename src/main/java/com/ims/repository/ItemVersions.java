@@ -0,0 +1,26 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+
+/**
+ * Version stamping shared by the repositories. A write stores the larger of
+ * the written item's own version and one past the version it replaces, so
+ * versions only go up and a cache can pass versions it already stamped on to
+ * its backend unchanged. A new id starts at 1.
+ */
+final class ItemVersions {
+
+    private ItemVersions() {
+    }
+
+    /** The version a write over before (null for a new id) stores, given the written version. */
+    static long next(long before, long written) {
+        return Math.max(written, before + 1);
+    }
+
+    /** next as it will be stored over before; allocates only if the version has to change. */
+    static Item stamp(Item before, Item next) {
+        long version = next(before == null ? 0 : before.getVersion(), next.getVersion());
+        return version == next.getVersion() ? next : next.withVersion(version);
+    }
+}
@@ -0,0 +1,760 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Repository whose items live off-heap in two memory-mapped files inside one
+ * directory, so a restart maps the files and rebuilds the id index from the
+ * slots instead of parsing a snapshot.
+ *
+ * <pre>
+ * items.slots    header  int magic "IMSM", int version, long slotCount, long stringsEnd, pad to 64
+ *                slots   32 bytes each: int state, int quantity, long price bits,
+ *                        long string offset, long item version
+ * items.strings  header  int magic "IMST", int version
+ *                entries [int len][utf-8 id][int len][utf-8 name][int len][utf-8 supplier]
+ * </pre>
+ *
+ * Both files are mapped in 16 MB chunks and grow a chunk at a time; slots and
+ * entries never straddle a chunk. Quantities are read and written in place
+ * through a {@link VarHandle} view of the mapping, so
+ * {@link #adjustQuantity} changes the file's bytes directly, with no
+ * allocation beyond the id lookup. Every update of an item, adjustments
+ * included, runs under the item's stripe lock and bumps the version in its
+ * slot, so {@link #compareAndSave} never misses an adjustment. Versions
+ * survive a restart; stores written before versioning open at version 0.
+ * A rename or supplier change writes a new string entry; the space of the
+ * old one, like that of deleted items, is reused for later entries, and
+ * free space is found again from the gaps between live entries on open.
+ *
+ * Writes reach the page cache immediately and the disk when the OS flushes or
+ * {@link #flush()} / {@link #close()} is called. The files are consistent
+ * after flush() and survive a crash of the process, since the page cache
+ * does. The OS writes dirty pages back in no particular order, though, so
+ * after an OS crash or power loss without a flush a slot may point at string
+ * space that never reached the disk. Opening checks every live slot's
+ * string entry against the strings file and refuses a store that does not
+ * add up; recover such a store from a snapshot.
+ */
+public class MappedInventoryRepository implements InventoryRepository, Closeable {
+
+    public static final String SLOTS_FILE = "items.slots";
+    public static final String STRINGS_FILE = "items.strings";
+
+    private static final int SLOTS_MAGIC = 0x494D534D; // "IMSM"
+    private static final int STRINGS_MAGIC = 0x494D5354; // "IMST"
+    private static final int VERSION = 1;
+
+    private static final int CHUNK_SHIFT = 24;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final int HEADER_BYTES = 64;
+    private static final int H_SLOT_COUNT = 8;
+    private static final int H_STRINGS_END = 16;
+    private static final int STRINGS_HEADER_BYTES = 8;
+    private static final int MIN_ENTRY_BYTES = 15; // three length words and three non-blank strings
+
+    private static final int SLOT_BYTES = 32;
+    private static final int S_STATE = 0;
+    private static final int S_QUANTITY = 4;
+    private static final int S_PRICE = 8;
+    private static final int S_STRINGS = 16;
+    private static final int S_VERSION = 24;
+
+    private static final int FREE = 0;
+    private static final int LIVE = 1;
+    private static final int DELETED = 2;
+
+    private static final int STRIPES = 64;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ORDER);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ORDER);
+
+    private final Path directory;
+    private final FileChannel slotsChannel;
+    private final FileChannel stringsChannel;
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+    private final Object[] stripes = new Object[STRIPES];
+    private final Object stringsLock = new Object();
+    private final List<InventoryChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // The listeners as an array while all of them handle quantity changes, else null
+    private volatile InventoryChangeListener[] quantityListeners = new InventoryChangeListener[0];
+
+    // Guarded by structure
+    private final Map<String, Integer> index = new HashMap<>();
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private long slotCount;
+
+    private volatile MappedByteBuffer[] slotChunks = new MappedByteBuffer[0];
+    private volatile MappedByteBuffer[] stringChunks = new MappedByteBuffer[0];
+    private long stringsEnd; // guarded by stringsLock
+    // Unreferenced string space by size, best fit first; guarded by stringsLock
+    private final TreeMap<Integer, ArrayDeque<Long>> freeStrings = new TreeMap<>();
+
+    /** Opens the store in directory, creating it if needed, and rebuilds the id index. */
+    public MappedInventoryRepository(Path directory) throws IOException {
+        this.directory = Objects.requireNonNull(directory, "directory");
+        Files.createDirectories(directory);
+        for (int i = 0; i < STRIPES; i++)
+            stripes[i] = new Object();
+
+        Path slotsPath = directory.resolve(SLOTS_FILE);
+        Path stringsPath = directory.resolve(STRINGS_FILE);
+        boolean fresh = !Files.exists(slotsPath) || Files.size(slotsPath) == 0;
+        this.slotsChannel = FileChannel.open(slotsPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.stringsChannel = FileChannel.open(stringsPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (fresh) {
+                initialize();
+            } else {
+                open();
+            }
+        } catch (IOException | RuntimeException e) {
+            slotsChannel.close();
+            stringsChannel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean existsById(String id) {
+        if (id == null)
+            return false;
+        structure.readLock().lock();
+        try {
+            return index.containsKey(id);
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Item> findById(String id) {
+        if (id == null)
+            return Optional.empty();
+        structure.readLock().lock();
+        try {
+            Integer s = index.get(id);
+            if (s == null)
+                return Optional.empty();
+            synchronized (stripe(s)) {
+                return Optional.of(itemAt(s, id));
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /** Materializes every item; each call builds a new list. */
+    @Override
+    public List<Item> findAll() {
+        structure.readLock().lock();
+        try {
+            List<Item> items = new ArrayList<>(index.size());
+            for (int s = 0; s < slotCount; s++) {
+                if (state(s) != LIVE)
+                    continue;
+                synchronized (stripe(s)) {
+                    items.add(itemAt(s, null));
+                }
+            }
+            return Collections.unmodifiableList(items);
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /** Scans the quantity field of every slot and builds items only for the matches. */
+    @Override
+    public List<Item> findByQuantityAtOrBelow(int maxQuantity) {
+        structure.readLock().lock();
+        try {
+            List<Item> result = new ArrayList<>();
+            for (int s = 0; s < slotCount; s++) {
+                ByteBuffer b = slotChunk(s);
+                int p = slotPos(s);
+                if ((int) INT.getVolatile(b, p + S_QUANTITY) > maxQuantity || b.getInt(p + S_STATE) != LIVE)
+                    continue;
+                synchronized (stripe(s)) {
+                    Item it = itemAt(s, null);
+                    if (it.getQuantity() <= maxQuantity)
+                        result.add(it);
+                }
+            }
+            return result;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save(Item item) {
+        Objects.requireNonNull(item, "item");
+        structure.writeLock().lock();
+        try {
+            upsert(item);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<Item> items) {
+        structure.writeLock().lock();
+        try {
+            for (Item it : items)
+                upsert(it);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /** Runs the remapping under the item's stripe lock. */
+    @Override
+    public Optional<Item> computeIfPresent(String id, UnaryOperator<Item> remapping) {
+        Objects.requireNonNull(remapping, "remapping");
+        if (id == null)
+            return Optional.empty();
+        structure.readLock().lock();
+        try {
+            Integer s = index.get(id);
+            if (s == null)
+                return Optional.empty();
+            synchronized (stripe(s)) {
+                Item current = itemAt(s, id);
+                Item next = Objects.requireNonNull(remapping.apply(current), "remapped item");
+                if (!id.equals(next.id()))
+                    throw new IllegalArgumentException("remapping must not change the item id");
+                return Optional.of(write(s, current, next));
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds delta to the item's quantity in the mapped slot under the item's
+     * stripe, which keeps the quantity and version moving together and lets
+     * listeners that handle {@link InventoryChangeListener#onQuantityChange}
+     * see changes in order. Listeners that need full items make it fall back
+     * to {@link #computeIfPresent}.
+     */
+    @Override
+    public int adjustQuantity(String id, int delta) {
+        if (id == null)
+            return NOT_FOUND;
+        InventoryChangeListener[] hooks = quantityListeners;
+        if (hooks == null)
+            return InventoryRepository.super.adjustQuantity(id, delta);
+        structure.readLock().lock();
+        try {
+            Integer s = index.get(id);
+            if (s == null)
+                return NOT_FOUND;
+            synchronized (stripe(s)) {
+                return addQuantity(s, delta, id, hooks);
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(String id) {
+        if (id == null)
+            return;
+        structure.writeLock().lock();
+        try {
+            Integer s = index.get(id);
+            if (s == null)
+                return;
+            fire(itemAt(s, id), null);
+            INT.setVolatile(slotChunk(s), slotPos(s) + S_STATE, DELETED);
+            releaseStrings(slotChunk(s).getLong(slotPos(s) + S_STRINGS));
+            index.remove(id);
+            pushFree(s);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /** Clears the store and inserts items. Slots are reused; string space is reclaimed. */
+    @Override
+    public void replaceAll(List<Item> items) {
+        Objects.requireNonNull(items, "items");
+        structure.writeLock().lock();
+        try {
+            for (int s = 0; s < slotCount; s++) {
+                if (state(s) != LIVE)
+                    continue;
+                if (!listeners.isEmpty())
+                    fire(itemAt(s, null), null);
+                INT.setVolatile(slotChunk(s), slotPos(s) + S_STATE, DELETED);
+            }
+            index.clear();
+            freeCount = 0;
+            setSlotCount(0);
+            synchronized (stringsLock) {
+                freeStrings.clear();
+                setStringsEnd(STRINGS_HEADER_BYTES);
+            }
+            for (Item it : items)
+                upsert(it);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public synchronized void addChangeListener(InventoryChangeListener listener) {
+        listeners.add(Objects.requireNonNull(listener, "listener"));
+        quantityListeners = quantityListenersOf(listeners);
+    }
+
+    @Override
+    public synchronized void removeChangeListener(InventoryChangeListener listener) {
+        listeners.remove(listener);
+        quantityListeners = quantityListenersOf(listeners);
+    }
+
+    public int size() {
+        structure.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /** Forces every mapped chunk to disk. */
+    public void flush() {
+        structure.readLock().lock();
+        try {
+            for (MappedByteBuffer b : stringChunks)
+                b.force();
+            for (MappedByteBuffer b : slotChunks)
+                b.force();
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes and closes the files. The mappings themselves are released when
+     * they are garbage collected; the repository must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        structure.writeLock().lock();
+        try {
+            flush();
+            slotsChannel.close();
+            stringsChannel.close();
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /** Caller holds the slot's stripe. */
+    private int addQuantity(int s, int delta, String id, InventoryChangeListener[] hooks) {
+        ByteBuffer b = slotChunk(s);
+        int p = slotPos(s);
+        int q = (int) INT.getVolatile(b, p + S_QUANTITY);
+        long next = (long) q + delta;
+        if (next < 0 || next > Integer.MAX_VALUE)
+            return REJECTED;
+        INT.setVolatile(b, p + S_QUANTITY, (int) next);
+        LONG.setVolatile(b, p + S_VERSION, (long) LONG.getVolatile(b, p + S_VERSION) + 1);
+        for (InventoryChangeListener l : hooks)
+            l.onQuantityChange(id, q, (int) next);
+        return (int) next;
+    }
+
+    private static InventoryChangeListener[] quantityListenersOf(List<InventoryChangeListener> listeners) {
+        InventoryChangeListener[] all = listeners.toArray(new InventoryChangeListener[0]);
+        for (InventoryChangeListener l : all) {
+            if (!l.handlesQuantityChanges())
+                return null;
+        }
+        return all;
+    }
+
+    private void fire(Item before, Item after) {
+        for (InventoryChangeListener l : listeners)
+            l.onChange(before, after);
+    }
+
+    private Object stripe(int slot) {
+        return stripes[slot & (STRIPES - 1)];
+    }
+
+    // ---------- Open / create ----------
+
+    private void initialize() throws IOException {
+        ByteBuffer header = slotHeader();
+        header.putInt(0, SLOTS_MAGIC);
+        header.putInt(4, VERSION);
+        setSlotCount(0);
+        ByteBuffer strings = stringChunk(0);
+        strings.putInt(0, STRINGS_MAGIC);
+        strings.putInt(4, VERSION);
+        setStringsEnd(STRINGS_HEADER_BYTES);
+        flush();
+    }
+
+    private void open() throws IOException {
+        if (slotsChannel.size() < HEADER_BYTES || stringsChannel.size() < STRINGS_HEADER_BYTES)
+            throw new IOException("truncated inventory store: " + directory);
+        ByteBuffer header = slotHeader();
+        if (header.getInt(0) != SLOTS_MAGIC)
+            throw new IOException("not an inventory store: " + directory);
+        int version = header.getInt(4);
+        if (version != VERSION)
+            throw new IOException("unsupported inventory store version " + version + ": " + directory);
+        ByteBuffer strings = stringChunk(0);
+        if (strings.getInt(0) != STRINGS_MAGIC || strings.getInt(4) != VERSION)
+            throw new IOException("corrupt string file: " + directory);
+
+        slotCount = header.getLong(H_SLOT_COUNT);
+        stringsEnd = header.getLong(H_STRINGS_END);
+        if (slotCount < 0 || slotCount > Integer.MAX_VALUE
+                || HEADER_BYTES + slotCount * SLOT_BYTES > slotsChannel.size()
+                || stringsEnd < STRINGS_HEADER_BYTES || stringsEnd > stringsChannel.size())
+            throw new IOException("corrupt inventory store header: " + directory);
+        mapSlotsThrough(HEADER_BYTES + slotCount * SLOT_BYTES);
+        mapStringsThrough(stringsEnd);
+
+        List<long[]> used = new ArrayList<>(); // {offset, length} of each live entry
+        for (int s = 0; s < slotCount; s++) {
+            if (state(s) == LIVE) {
+                long off = slotChunk(s).getLong(slotPos(s) + S_STRINGS);
+                int length = off < STRINGS_HEADER_BYTES || off >= stringsEnd ? -1 : entryLength(off);
+                if (length < 0 || off + length > stringsEnd)
+                    throw new IOException("corrupt slot " + s + ": " + directory);
+                if (index.put(readId(off), s) != null)
+                    throw new IOException("duplicate id in slot " + s + ": " + directory);
+                used.add(new long[] {off, length});
+            } else {
+                pushFree(s);
+            }
+        }
+        collectFreeStrings(used);
+    }
+
+    /** Registers the gaps between live entries as free space; entries may not overlap. */
+    private void collectFreeStrings(List<long[]> used) throws IOException {
+        used.sort((a, b) -> Long.compare(a[0], b[0]));
+        long at = STRINGS_HEADER_BYTES;
+        for (long[] entry : used) {
+            if (entry[0] < at)
+                throw new IOException("overlapping string entries: " + directory);
+            addFreeStrings(at, entry[0]);
+            at = entry[0] + entry[1];
+        }
+        synchronized (stringsLock) {
+            setStringsEnd(at); // a free tail is simply cut off
+        }
+    }
+
+    // ---------- Slots ----------
+
+    private void upsert(Item item) {
+        Integer existing = index.get(item.getId());
+        if (existing != null) {
+            int s = existing;
+            write(s, itemAt(s, item.getId()), item);
+            return;
+        }
+        item = ItemVersions.stamp(null, item);
+        long strings = appendStrings(item);
+        try {
+            fire(null, item);
+        } catch (RuntimeException e) {
+            releaseStrings(strings);
+            throw e;
+        }
+        int s = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+        ByteBuffer b = slotChunk(s);
+        int p = slotPos(s);
+        b.putInt(p + S_QUANTITY, item.getQuantity());
+        b.putLong(p + S_PRICE, Double.doubleToRawLongBits(item.getPrice()));
+        b.putLong(p + S_STRINGS, strings);
+        b.putLong(p + S_VERSION, item.getVersion());
+        INT.setVolatile(b, p + S_STATE, LIVE);
+        index.put(item.getId(), s);
+    }
+
+    /**
+     * Installs next over current in slot s and returns it as stored, with its
+     * new version. Caller holds the slot's stripe or the write lock.
+     */
+    private Item write(int s, Item current, Item next) {
+        next = ItemVersions.stamp(current, next);
+        ByteBuffer b = slotChunk(s);
+        int p = slotPos(s);
+        boolean textChanged = !next.getName().equals(current.getName())
+                || !next.getSupplier().equals(current.getSupplier());
+        long old = b.getLong(p + S_STRINGS);
+        long strings = textChanged ? appendStrings(next) : old;
+        try {
+            fire(current, next);
+        } catch (RuntimeException e) {
+            if (textChanged)
+                releaseStrings(strings);
+            throw e;
+        }
+        INT.setVolatile(b, p + S_QUANTITY, next.getQuantity());
+        b.putLong(p + S_PRICE, Double.doubleToRawLongBits(next.getPrice()));
+        LONG.setVolatile(b, p + S_STRINGS, strings);
+        LONG.setVolatile(b, p + S_VERSION, next.getVersion());
+        if (textChanged)
+            releaseStrings(old); // nobody reads it any more: readers of slot s hold its stripe
+        return next;
+    }
+
+    private Item itemAt(int s, String knownId) {
+        ByteBuffer b = slotChunk(s);
+        int p = slotPos(s);
+        int quantity = (int) INT.getVolatile(b, p + S_QUANTITY);
+        double price = Double.longBitsToDouble(b.getLong(p + S_PRICE));
+        long off = (long) LONG.getVolatile(b, p + S_STRINGS);
+
+        ByteBuffer sb = stringChunk(off >>> CHUNK_SHIFT);
+        int pos = (int) (off & CHUNK_MASK);
+        int idLen = sb.getInt(pos);
+        String id = knownId != null ? knownId : string(sb, pos + 4, idLen);
+        pos += 4 + idLen;
+        int nameLen = sb.getInt(pos);
+        String name = string(sb, pos + 4, nameLen);
+        pos += 4 + nameLen;
+        String supplier = string(sb, pos + 4, sb.getInt(pos));
+        return new Item(id, name, quantity, price, supplier, (long) LONG.getVolatile(b, p + S_VERSION));
+    }
+
+    private int state(int s) {
+        return (int) INT.getVolatile(slotChunk(s), slotPos(s) + S_STATE);
+    }
+
+    private int newSlot() {
+        if (slotCount == Integer.MAX_VALUE)
+            throw new IllegalStateException("inventory store is full");
+        int s = (int) slotCount;
+        long end = HEADER_BYTES + (slotCount + 1) * SLOT_BYTES;
+        mapSlotsThrough(end);
+        setSlotCount(slotCount + 1);
+        return s;
+    }
+
+    private void pushFree(int s) {
+        if (freeCount == freeSlots.length)
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        freeSlots[freeCount++] = s;
+    }
+
+    private void setSlotCount(long count) {
+        slotCount = count;
+        LONG.setVolatile(slotHeader(), H_SLOT_COUNT, count);
+    }
+
+    private ByteBuffer slotHeader() {
+        mapSlotsThrough(HEADER_BYTES);
+        return slotChunks[0];
+    }
+
+    private ByteBuffer slotChunk(int s) {
+        return slotChunks[(int) ((HEADER_BYTES + (long) s * SLOT_BYTES) >>> CHUNK_SHIFT)];
+    }
+
+    private static int slotPos(int s) {
+        return (int) ((HEADER_BYTES + (long) s * SLOT_BYTES) & CHUNK_MASK);
+    }
+
+    // ---------- Strings ----------
+
+    /**
+     * Writes the item's text into free space, or else at the end, and returns
+     * its offset; entries never straddle chunks.
+     */
+    private long appendStrings(Item item) {
+        byte[] id = item.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] name = item.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] supplier = item.getSupplier().getBytes(StandardCharsets.UTF_8);
+        int need = 12 + id.length + name.length + supplier.length;
+        if (need > CHUNK_SIZE)
+            throw new IllegalArgumentException("item text exceeds " + CHUNK_SIZE + " bytes");
+        synchronized (stringsLock) {
+            long off = takeFreeStrings(need);
+            if (off < 0) {
+                off = stringsEnd;
+                if ((off & CHUNK_MASK) + need > CHUNK_SIZE) {
+                    addFreeStrings(off, (off | CHUNK_MASK) + 1);
+                    off = (off | CHUNK_MASK) + 1; // skip to the next chunk
+                }
+                mapStringsThrough(off + need);
+                setStringsEnd(off + need);
+            }
+            ByteBuffer b = stringChunk(off >>> CHUNK_SHIFT);
+            int pos = (int) (off & CHUNK_MASK);
+            pos = putBytes(b, pos, id);
+            pos = putBytes(b, pos, name);
+            putBytes(b, pos, supplier);
+            return off;
+        }
+    }
+
+    /** Returns the entry at off to the free space once no slot refers to it. */
+    private void releaseStrings(long off) {
+        synchronized (stringsLock) {
+            int length = entryLength(off);
+            if (length < 0)
+                return; // not an entry we wrote; leave it rather than free a neighbour
+            long end = off + length;
+            if (end == stringsEnd)
+                setStringsEnd(off);
+            else
+                addFreeStrings(off, end);
+        }
+    }
+
+    /** Smallest free block that fits need, split if larger; -1 if none. Caller holds stringsLock. */
+    private long takeFreeStrings(int need) {
+        Map.Entry<Integer, ArrayDeque<Long>> block = freeStrings.ceilingEntry(need);
+        if (block == null)
+            return -1;
+        long off = block.getValue().pop();
+        if (block.getValue().isEmpty())
+            freeStrings.remove(block.getKey());
+        addFreeStrings(off + need, off + block.getKey());
+        return off;
+    }
+
+    /** Adds [from, to) to the free space, split at chunk boundaries; too small a rest is dropped. */
+    private void addFreeStrings(long from, long to) {
+        while (from < to) {
+            long chunkEnd = Math.min(to, (from | CHUNK_MASK) + 1);
+            int length = (int) (chunkEnd - from);
+            if (length >= MIN_ENTRY_BYTES)
+                freeStrings.computeIfAbsent(length, k -> new ArrayDeque<>()).push(from);
+            from = chunkEnd;
+        }
+    }
+
+    /** Bytes of the entry at off, or -1 if its lengths do not fit the strings written so far. */
+    private int entryLength(long off) {
+        ByteBuffer b = stringChunk(off >>> CHUNK_SHIFT);
+        int pos = (int) (off & CHUNK_MASK);
+        int limit = (int) Math.min(CHUNK_SIZE, stringsEnd - (off & ~CHUNK_MASK));
+        for (int field = 0; field < 3; field++) {
+            if (pos + 4 > limit)
+                return -1;
+            int len = b.getInt(pos);
+            if (len <= 0 || len > limit - pos - 4)
+                return -1;
+            pos += 4 + len;
+        }
+        return pos - (int) (off & CHUNK_MASK);
+    }
+
+    private void setStringsEnd(long end) {
+        stringsEnd = end;
+        LONG.setVolatile(slotHeader(), H_STRINGS_END, end);
+    }
+
+    private String readId(long off) {
+        ByteBuffer b = stringChunk(off >>> CHUNK_SHIFT);
+        int pos = (int) (off & CHUNK_MASK);
+        return string(b, pos + 4, b.getInt(pos));
+    }
+
+    private ByteBuffer stringChunk(long chunk) {
+        if (chunk == 0)
+            mapStringsThrough(STRINGS_HEADER_BYTES);
+        return stringChunks[(int) chunk];
+    }
+
+    private static int putBytes(ByteBuffer b, int pos, byte[] bytes) {
+        b.putInt(pos, bytes.length);
+        b.put(pos + 4, bytes);
+        return pos + 4 + bytes.length;
+    }
+
+    private static String string(ByteBuffer b, int pos, int len) {
+        byte[] bytes = new byte[len];
+        b.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---------- Mapping ----------
+
+    private void mapSlotsThrough(long end) {
+        MappedByteBuffer[] chunks = slotChunks;
+        int needed = (int) ((end + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        if (chunks.length >= needed)
+            return;
+        synchronized (slotsChannel) {
+            slotChunks = mapChunks(slotsChannel, slotChunks, needed);
+        }
+    }
+
+    private void mapStringsThrough(long end) {
+        MappedByteBuffer[] chunks = stringChunks;
+        int needed = (int) ((end + CHUNK_SIZE - 1) >>> CHUNK_SHIFT);
+        if (chunks.length >= needed)
+            return;
+        synchronized (stringsChannel) {
+            stringChunks = mapChunks(stringsChannel, stringChunks, needed);
+        }
+    }
+
+    /** Maps chunks up to needed, growing the file; existing mappings stay valid. */
+    private static MappedByteBuffer[] mapChunks(FileChannel channel, MappedByteBuffer[] chunks, int needed) {
+        if (chunks.length >= needed)
+            return chunks;
+        MappedByteBuffer[] grown = Arrays.copyOf(chunks, needed);
+        try {
+            for (int i = chunks.length; i < needed; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * CHUNK_SIZE, CHUNK_SIZE);
+                grown[i].order(ORDER);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("could not map inventory store", e);
+        }
+        return grown;
+    }
+}
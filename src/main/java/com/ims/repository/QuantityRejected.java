@@ -0,0 +1,16 @@
+package com.ims.repository;
+
+/**
+ * Thrown from inside a remapping to abandon a quantity adjustment without
+ * writing. Shared and stackless, so rejecting costs no allocation.
+ */
+final class QuantityRejected extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final QuantityRejected INSTANCE = new QuantityRejected();
+
+    private QuantityRejected() {
+        super("quantity out of range", null, false, false);
+    }
+}
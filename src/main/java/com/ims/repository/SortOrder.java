@@ -0,0 +1,27 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+
+import java.util.Comparator;
+
+/** Orders a repository can serve as a sorted view. Ties are broken by id. */
+public enum SortOrder {
+    ID(Comparator.comparing(Item::getId)),
+    NAME(Comparator.comparing(Item::getName, String::compareToIgnoreCase)),
+    QUANTITY_ASC(Comparator.comparingInt(Item::getQuantity)),
+    QUANTITY_DESC(Comparator.comparingInt(Item::getQuantity).reversed()),
+    PRICE_ASC(Comparator.comparingDouble(Item::getPrice)),
+    PRICE_DESC(Comparator.comparingDouble(Item::getPrice).reversed()),
+    SUPPLIER(Comparator.comparing(Item::getSupplier, String::compareToIgnoreCase));
+
+    private final Comparator<Item> comparator;
+
+    SortOrder(Comparator<Item> primary) {
+        this.comparator = primary.thenComparing(Item::getId);
+    }
+
+    /** Total order: every pair of distinct ids compares non-zero. */
+    public Comparator<Item> comparator() {
+        return comparator;
+    }
+}
@@ -0,0 +1,35 @@
+package com.ims.repository;
+
+/**
+ * Thrown by {@link InventoryRepository#compareAndSave} when the stored item
+ * has been written since the caller's copy was read. Nothing was written.
+ * Conflicts are expected under contention, so no stack trace is captured.
+ */
+public class VersionConflictException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final long expectedVersion;
+    private final long actualVersion;
+
+    public VersionConflictException(String id, long expectedVersion, long actualVersion) {
+        super("version conflict on " + id + ": expected " + expectedVersion + ", found " + actualVersion,
+                null, false, false);
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public long expectedVersion() {
+        return expectedVersion;
+    }
+
+    public long actualVersion() {
+        return actualVersion;
+    }
+}
@@ -1,31 +1,78 @@
 package com.ims.service;
 
 import com.ims.model.Item;
+import com.ims.model.LowStockEvent;
 import com.ims.model.StockMovement;
+import com.ims.model.Supplier;
+import com.ims.model.SupplierRollup;
+import com.ims.repository.InventoryRepository;
+import com.ims.service.report.QuantityHistogram;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
 
-public interface InventoryService {
+public interface InventoryService extends AutoCloseable {
     Result<Item> addItem(Item item);
 
+    /**
+     * Replaces every field of the stored item, quantity included. An item
+     * read from the service carries its version, and the update then only
+     * succeeds while the stored item is still at that version, so an edit of
+     * a stale copy fails instead of undoing concurrent writes. An item built
+     * by hand (version 0) overwrites unconditionally.
+     *
+     * @return the stored item, with its new version
+     */
     Result<Item> updateItem(Item item);
 
+    /**
+     * Field-level merge: sets the non-null fields on the item as currently
+     * stored, atomically, and never touches its quantity. Use this for
+     * detail edits, so they cannot clobber concurrent stock adjustments.
+     */
+    Result<Item> updateDetails(String id, String newName, Double newPrice, String newSupplier);
+
     Result<Void> deleteById(String id);
 
     Optional<Item> getById(String id);
 
+    /** Unmodifiable point-in-time view of all items; not a copy. */
     List<Item> listAll();
 
+    /**
+     * Streams one consistent snapshot of all items. The stream splits evenly,
+     * so {@code streamAll().parallel()} suits bulk reductions.
+     */
+    Stream<Item> streamAll();
+
+    /**
+     * Keyset pagination in id order: up to limit items with ids after
+     * afterId, or from the first id when afterId is null. Pass the id of the
+     * last item of a page to fetch the next one.
+     */
+    List<Item> listPage(String afterId, int limit);
+
     /**
      * Convenience helper for concurrency simulation and reports.
-     * Returns all known item ids.
+     * Returns all known item ids, as a view over the same snapshot as
+     * {@link #listAll()}.
      */
     List<String> getAllItemIds();
 
     List<Item> searchByName(String query);
 
+    /** Like {@link #searchByName(String)}, but returns only the first limit matches. */
+    List<Item> searchByName(String query, int limit);
+
+    /** Type-ahead: items whose name starts with prefix (ignoring case), at most limit. */
+    List<Item> searchByNamePrefix(String prefix, int limit);
+
     // Stock adjustments
 
     /**
@@ -33,25 +80,310 @@ public interface InventoryService {
      */
     Result<Item> adjustStock(String id, int delta);
 
+    /**
+     * Same adjustment as {@link #adjustStock} for high-volume callers: returns
+     * the new quantity, or {@link InventoryRepository#NOT_FOUND} /
+     * {@link InventoryRepository#REJECTED} (would go negative or past
+     * {@link Integer#MAX_VALUE}), with no
+     * result object or message built. Whether the write itself allocates is
+     * up to the repository and the registered indexes; see
+     * {@link InventoryRepository#adjustQuantity}.
+     */
+    int adjustQuantity(String id, int delta);
+
     /**
      * Apply a domain-level stock movement (inbound, outbound, adjustment).
-     * This is what your RealTimeStockUpdater will call.
+     * Once the stock has changed the result is ok, even if the movement could
+     * not be logged or recorded in history; {@link Result#message()} then
+     * says what was missed.
      */
     Result<Item> applyMovement(StockMovement movement);
 
+    /**
+     * Apply a burst of movements. Deltas are summed per item id and each item is
+     * validated and written once with its net change, so intermediate
+     * quantities inside the batch may dip below zero as long as the net result
+     * does not. Results are reported per item, in first-seen order. As with
+     * {@link #applyMovement}, a failure to log or record applied movements
+     * does not fail the batch; {@link BatchResult#warning()} reports it.
+     */
+    BatchResult applyMovements(List<StockMovement> movements);
+
+    // Movement history
+    // Needs a MovementHistoryStore passed to the service; otherwise these
+    // throw IllegalStateException. Windows are [from, to).
+
+    /** Recorded movements of one item in the window, oldest first. */
+    List<StockMovement> movementHistory(String itemId, Instant from, Instant to);
+
+    /** Net quantity change of one item over the window. */
+    long netChange(String itemId, Instant from, Instant to);
+
+    /** Net quantity change per item over the window, for items that moved in it, ordered by id. */
+    Map<String, Long> netChangeByItem(Instant from, Instant to);
+
+    /**
+     * The item as it stood at asOf, counting movements stamped at or before
+     * it: the checkpoint nearest in time, plus the movements recorded after
+     * it and stamped at or before asOf, minus those recorded before it and
+     * stamped after asOf. Movements are placed relative to a checkpoint by
+     * when they were recorded, so late or backdated ones count exactly once.
+     * Name, price, supplier and whether the item exists at all are as of
+     * that checkpoint; quantities are exact as long as stock only changes
+     * through movements. Empty when there is no checkpoint yet.
+     */
+    Optional<Item> getById(String id, Instant asOf);
+
+    /** Every item as of asOf, in id order; see {@link #getById(String, Instant)}. */
+    List<Item> listAll(Instant asOf);
+
+    /**
+     * Records the current inventory as a checkpoint for point-in-time
+     * queries, bounding how far they replay. One is also written on saveAll,
+     * after the first load, and in the background every so many recorded
+     * movements.
+     */
+    Result<Void> checkpoint();
+
     // Low stock report
     List<Item> lowStock();
 
+    /** Stream form of {@link #lowStock()}, in the same order. */
+    Stream<Item> streamLowStock();
+
+    /**
+     * Push alternative to polling {@link #lowStock()}: publishes an event
+     * whenever an existing item becomes low or recovers under the active
+     * policy, coalesced per SKU over a short window, with bounded buffering
+     * and backpressure per subscriber. Detection is O(1) per write. Inserts,
+     * deletes and policy changes emit nothing; use lowStock() to get the
+     * starting state.
+     */
+    Flow.Publisher<LowStockEvent> lowStockEvents();
+
+    /**
+     * Publishes pending low-stock events, completes their subscribers and
+     * stops the service's background threads. The repository, storage, log
+     * and history passed in stay open; closing them is the caller's job.
+     */
+    @Override
+    void close();
+
+    /** Swap the low-stock rule at runtime; the next lowStock() call uses it. */
+    void setLowStockPolicy(LowStockPolicy policy);
+
+    // Suppliers
+
+    /**
+     * Adds a supplier, or replaces the details of the one with the same id.
+     * Items are linked to a supplier when their supplier field equals its id.
+     */
+    Result<Supplier> registerSupplier(Supplier supplier);
+
+    Optional<Supplier> getSupplier(String id);
+
+    List<Supplier> listSuppliers();
+
+    /** Items whose supplier field is supplierId, registered or not. */
+    List<Item> listItemsBySupplier(String supplierId);
+
+    /**
+     * SKU count, units and stock value of supplierId's items. Maintained on
+     * every write, so this is O(1) regardless of catalog size; all zero for a
+     * supplier without items.
+     */
+    SupplierRollup supplierRollup(String supplierId);
+
+    /** {@link #supplierRollup} for every supplier that has items, by supplier id. */
+    List<SupplierRollup> supplierRollups();
+
+    // Reports
+    // Each is a parallel reduction over one snapshot of the catalog; money is
+    // exact (BigDecimal, four decimal places) and independent of thread count.
+
+    /** Sum of quantity x price over all items. */
+    BigDecimal totalStockValue();
+
+    /** Stock value per supplier, ordered by supplier. */
+    Map<String, BigDecimal> stockValueBySupplier();
+
+    /** The n items with the highest stock value, highest first; ties by id. */
+    List<Item> topItemsByStockValue(int n);
+
+    /**
+     * Item counts per quantity range of bucketWidth, with everything from
+     * {@code (bucketCount - 1) * bucketWidth} up in the last bucket.
+     */
+    QuantityHistogram quantityHistogram(int bucketWidth, int bucketCount);
+
     // Persistence
+
+    /**
+     * Writes the current inventory as the base snapshot fileName, replacing
+     * its deltas. The snapshot records how far into the movement log it
+     * reaches, so {@link #loadAll(String)} replays only newer movements.
+     */
+    Result<Void> saveAll(String fileName) throws IOException;
+
+    /**
+     * Writes exactly these items to fileName, as an export: the file is not
+     * tied to the movement log, so loading it replays no logged movements.
+     * Use {@link #saveAll(String)} to snapshot the service's own inventory.
+     */
     Result<Void> saveAll(List<Item> items, String fileName) throws IOException;
 
+    /**
+     * Writes only the items inserted, changed or deleted since the last save
+     * as a delta next to the base snapshot fileName, which must already exist.
+     * {@link #loadAll(String)} applies deltas on top of the base.
+     */
+    Result<Void> saveChanges(String fileName) throws IOException;
+
+    /** Folds the deltas of base snapshot fileName into a new base. */
+    Result<Void> compactSnapshots(String fileName) throws IOException;
+
+    /**
+     * Replaces the inventory with snapshot fileName plus its deltas and the
+     * logged movements it does not contain yet. The file is read in full
+     * before anything changes, so a file that fails to load leaves the
+     * inventory untouched, and the new contents go in with a single
+     * {@code replaceAll}.
+     */
     Result<Void> loadAll(String fileName) throws IOException;
 
+    /**
+     * Like {@link #loadAll(String)}, but parses file segments in parallel.
+     * Duplicate ids still resolve to the last occurrence in the file, and a
+     * file that fails to load still leaves the inventory untouched.
+     */
+    Result<Void> loadAllParallel(String fileName) throws IOException;
+
     /**
      * Encapsulates low-stock threshold logic so it can be swapped in tests.
      */
     interface LowStockPolicy {
         boolean isLow(Item item);
+
+        /**
+         * Largest quantity this policy can ever consider low. lowStock() only
+         * looks at items up to this quantity, so quantity-based policies should
+         * return their threshold; the default means "check every item".
+         */
+        default int maxLowQuantity() {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * A policy that is purely a quantity threshold per item: an item is low
+     * when its quantity is below {@link #thresholdFor}. lowStock() resolves
+     * the thresholds once into a column and evaluates the policy as one
+     * primitive loop over quantities and thresholds instead of calling
+     * {@link #isLow} per item.
+     */
+    interface ThresholdPolicy extends LowStockPolicy {
+        /** Quantity below which the item with this id and supplier is low; never negative. */
+        int thresholdFor(String id, String supplier);
+
+        /**
+         * Changes whenever any threshold changes, after the change is
+         * visible, so resolved thresholds can be refreshed.
+         */
+        long version();
+
+        @Override
+        default boolean isLow(Item item) {
+            return item != null && item.getQuantity() < thresholdFor(item.getId(), item.getSupplier());
+        }
+    }
+
+    /**
+     * Compact per-item outcome of {@link #applyMovements(List)}: parallel arrays
+     * indexed 0..size()-1 instead of one {@link Result} per movement.
+     */
+    final class BatchResult {
+        public enum Status {
+            APPLIED, NOT_FOUND, NEGATIVE_QUANTITY,
+            /** The result would exceed {@link Integer#MAX_VALUE}. */
+            QUANTITY_OVERFLOW
+        }
+
+        private final int movementCount;
+        private final String[] itemIds;
+        private final int[] quantities;
+        private final Status[] statuses;
+        private final int appliedCount;
+        private final String warning;
+
+        public BatchResult(int movementCount, String[] itemIds, int[] quantities, Status[] statuses) {
+            this(movementCount, itemIds, quantities, statuses, null);
+        }
+
+        /** @param warning what went wrong on the side of applying the batch, or null */
+        public BatchResult(int movementCount, String[] itemIds, int[] quantities, Status[] statuses,
+                String warning) {
+            if (itemIds.length != quantities.length || itemIds.length != statuses.length)
+                throw new IllegalArgumentException("result arrays must have equal length");
+            this.movementCount = movementCount;
+            this.itemIds = itemIds;
+            this.quantities = quantities;
+            this.statuses = statuses;
+            this.warning = warning;
+            int applied = 0;
+            for (Status st : statuses) {
+                if (st == Status.APPLIED)
+                    applied++;
+            }
+            this.appliedCount = applied;
+        }
+
+        /** The same outcomes with warning attached. */
+        public BatchResult withWarning(String warning) {
+            return new BatchResult(movementCount, itemIds, quantities, statuses, warning);
+        }
+
+        /**
+         * What the applied movements missed, e.g. the write-ahead log or
+         * history, or null. The movements are applied either way.
+         */
+        public String warning() {
+            return warning;
+        }
+
+        /** Number of movements submitted in the batch. */
+        public int movementCount() {
+            return movementCount;
+        }
+
+        /** Number of distinct items touched by the batch. */
+        public int size() {
+            return itemIds.length;
+        }
+
+        public int appliedCount() {
+            return appliedCount;
+        }
+
+        public int rejectedCount() {
+            return itemIds.length - appliedCount;
+        }
+
+        public String itemId(int i) {
+            return itemIds[i];
+        }
+
+        public Status status(int i) {
+            return statuses[i];
+        }
+
+        public boolean isApplied(int i) {
+            return statuses[i] == Status.APPLIED;
+        }
+
+        /** Quantity after the batch, or -1 when the item was not found. */
+        public int quantity(int i) {
+            return quantities[i];
+        }
     }
 
     /**
@@ -77,6 +409,11 @@ public interface InventoryService {
             return new Result<>(true, null, null);
         }
 
+        /** Succeeded, with message describing something that went wrong on the side. */
+        public static <T> Result<T> okWithWarning(T value, String message) {
+            return new Result<>(true, message, value);
+        }
+
         public static <T> Result<T> fail(String message) {
             return new Result<>(false, message, null);
         }
@@ -1,26 +1,132 @@
 package com.ims.service;
 
 import com.ims.model.Item;
+import com.ims.model.LowStockEvent;
 import com.ims.model.StockMovement;
+import com.ims.model.Supplier;
+import com.ims.model.SupplierRollup;
+import com.ims.repository.DirtyTracker;
 import com.ims.repository.InventoryRepository;
+import com.ims.repository.VersionConflictException;
+import com.ims.service.index.LowStockIndex;
+import com.ims.service.index.NameSearchIndex;
+import com.ims.service.index.SupplierIndex;
+import com.ims.service.report.InventoryReports;
+import com.ims.service.report.QuantityHistogram;
+import com.ims.io.BinaryInventoryStorage;
 import com.ims.io.CsvInventoryStorage;
+import com.ims.io.DeltaSnapshotStorage;
+import com.ims.io.InventoryCheckpoints;
+import com.ims.io.InventoryFileStorage;
+import com.ims.io.MovementHistoryStore;
+import com.ims.io.MovementWriteAheadLog;
+import com.ims.io.SnapshotInfo;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 public class InventoryServiceImpl implements InventoryService {
 
+    private static final int LOAD_CHUNK_SIZE = 64 * 1024;
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = 1 << 20; // recorded movements
+
     private final InventoryRepository repo;
     private final CsvInventoryStorage storage;
-    private final LowStockPolicy lowStockPolicy;
+    private final BinaryInventoryStorage binaryStorage = new BinaryInventoryStorage();
+    private final MovementWriteAheadLog movementLog; // null when movements are not logged
+    private final MovementHistoryStore history; // null when movements are not kept
+    private final DeltaSnapshotStorage deltaStorage;
+    private final DirtyTracker dirtyTracker = new DirtyTracker();
+    private final LowStockIndex lowStockIndex;
+    private final NameSearchIndex nameIndex;
+    private final LowStockEventPublisher lowStockEvents = new LowStockEventPublisher();
+    private final SupplierIndex supplierIndex = new SupplierIndex();
+    private final Map<String, Supplier> suppliers = new ConcurrentHashMap<>();
+    private final AtomicLong movementsSinceCheckpoint = new AtomicLong();
+    private final AtomicBoolean checkpointRunning = new AtomicBoolean();
+    private final ExecutorService checkpointExecutor; // null when movements are not kept
+    private volatile long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    // Movements hold the read lock from applying to logging; a snapshot takes
+    // the write lock to read the inventory and the log position together, so
+    // replay never applies a movement the snapshot already contains
+    private final ReentrantReadWriteLock movementLock = new ReentrantReadWriteLock();
+    // Serializes saves, loads and compaction
+    private final Object persistenceLock = new Object();
 
     public InventoryServiceImpl(InventoryRepository repo,
             CsvInventoryStorage storage,
             LowStockPolicy lowStockPolicy) {
+        this(repo, storage, lowStockPolicy, null);
+    }
+
+    /**
+     * @param movementLog if non-null, every accepted movement is made durable
+     *                    here before the call returns; {@link #loadAll(String)}
+     *                    replays what the snapshot does not contain yet, and
+     *                    {@link #saveAll(String)} and {@link #saveChanges}
+     *                    drop what they have captured. Only
+     *                    movements are logged, so items added since the last
+     *                    snapshot still need a saveAll to survive a restart.
+     */
+    public InventoryServiceImpl(InventoryRepository repo,
+            CsvInventoryStorage storage,
+            LowStockPolicy lowStockPolicy,
+            MovementWriteAheadLog movementLog) {
+        this(repo, storage, lowStockPolicy, movementLog, null);
+    }
+
+    /**
+     * @param history if non-null, every accepted movement is recorded here
+     *                for {@link #movementHistory} and {@link #netChange}
+     *                queries. Unlike the write-ahead log it is never
+     *                truncated by a snapshot.
+     */
+    public InventoryServiceImpl(InventoryRepository repo,
+            CsvInventoryStorage storage,
+            LowStockPolicy lowStockPolicy,
+            MovementWriteAheadLog movementLog,
+            MovementHistoryStore history) {
         this.repo = Objects.requireNonNull(repo, "repo");
         this.storage = Objects.requireNonNull(storage, "storage");
-        this.lowStockPolicy = Objects.requireNonNull(lowStockPolicy, "lowStockPolicy");
+        this.movementLog = movementLog;
+        this.history = history;
+        this.checkpointExecutor = history == null ? null : newCheckpointExecutor();
+        this.deltaStorage = new DeltaSnapshotStorage(storage, binaryStorage);
+        this.lowStockIndex = new LowStockIndex(repo::findById,
+                Objects.requireNonNull(lowStockPolicy, "lowStockPolicy"));
+        this.nameIndex = new NameSearchIndex(repo::findById);
+        lowStockIndex.setCrossingListener(lowStockEvents::crossed);
+        repo.addChangeListener(dirtyTracker);
+        // Register first, then seed, so no write can slip between the two
+        repo.addChangeListener(lowStockIndex);
+        repo.addChangeListener(nameIndex);
+        repo.addChangeListener(supplierIndex);
+        for (Item it : repo.findAll()) {
+            lowStockIndex.seed(it);
+            supplierIndex.seed(it);
+            nameIndex.seed(it);
+        }
+        supplierIndex.finishSeeding();
+        nameIndex.finishSeeding();
     }
 
     // ---------- Public API ----------
@@ -44,11 +150,38 @@ public class InventoryServiceImpl implements InventoryService {
         if (!vr.isOk())
             return Result.fail(vr.message());
 
-        if (!repo.existsById(item.getId())) {
-            return Result.fail("Item not found: " + item.getId());
+        // A version means the caller edited a copy it read; never overwrite newer writes with it
+        Optional<Item> updated;
+        try {
+            updated = item.getVersion() == 0
+                    ? repo.computeIfPresent(item.getId(), current -> item)
+                    : repo.compareAndSave(item);
+        } catch (VersionConflictException e) {
+            return Result.fail("Item was changed concurrently: " + item.getId()
+                    + " is at version " + e.actualVersion() + ", not " + e.expectedVersion());
         }
-        repo.save(item);
-        return Result.ok(item);
+        if (updated.isEmpty())
+            return Result.fail("Item not found: " + item.getId());
+        return Result.ok(updated.get());
+    }
+
+    @Override
+    public Result<Item> updateDetails(String id, String newName, Double newPrice, String newSupplier) {
+        if (isBlank(id))
+            return Result.fail("id is required");
+        if (newName != null && isBlank(newName))
+            return Result.fail("name cannot be blank");
+        if (newSupplier != null && isBlank(newSupplier))
+            return Result.fail("supplier cannot be blank");
+        if (newPrice != null && isNegative(newPrice))
+            return Result.fail("price must be >= 0");
+
+        // Merged onto whatever is stored at the time of the write, so quantity is never touched
+        Optional<Item> updated = repo.computeIfPresent(id,
+                current -> current.withUpdatedDetails(newName, newPrice, newSupplier));
+        if (updated.isEmpty())
+            return Result.fail("Item not found: " + id);
+        return Result.ok(updated.get());
     }
 
     @Override
@@ -70,48 +203,69 @@ public class InventoryServiceImpl implements InventoryService {
 
     @Override
     public List<Item> listAll() {
-        // Return an immutable snapshot to avoid accidental external mutation
-        return Collections.unmodifiableList(new ArrayList<>(repo.findAll()));
+        // The repository already hands out an immutable snapshot
+        return repo.findAll();
+    }
+
+    @Override
+    public Stream<Item> streamAll() {
+        return repo.stream();
+    }
+
+    @Override
+    public List<Item> listPage(String afterId, int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("limit must be >= 0");
+        return repo.findPage(isBlank(afterId) ? null : afterId, limit);
     }
 
     @Override
     public List<String> getAllItemIds() {
-        List<String> ids = repo.findAll().stream()
-                .map(Item::getId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-        return Collections.unmodifiableList(ids);
+        return new ItemIdView(repo.findAll());
     }
 
     @Override
     public List<Item> searchByName(String query) {
+        return searchByName(query, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Item> searchByName(String query, int limit) {
         if (isBlank(query))
             return List.of();
-        String q = query.toLowerCase(Locale.ROOT);
-        return repo.findAll().stream()
-                .filter(it -> safeString(it.getName()).toLowerCase(Locale.ROOT).contains(q))
-                .sorted(Comparator
-                        .comparing(Item::getName, Comparator.nullsLast(String::compareToIgnoreCase))
-                        .thenComparing(Item::getId))
-                .collect(Collectors.toList());
+        return nameIndex.search(query, limit);
+    }
+
+    @Override
+    public List<Item> searchByNamePrefix(String prefix, int limit) {
+        if (isBlank(prefix))
+            return List.of();
+        return nameIndex.prefix(prefix, limit);
     }
 
     @Override
     public Result<Item> adjustStock(String id, int delta) {
         if (isBlank(id))
             return Result.fail("id is required");
-        Optional<Item> opt = repo.findById(id);
-        if (opt.isEmpty())
-            return Result.fail("Item not found: " + id);
 
-        Item current = opt.get();
-        long newQty = (long) current.getQuantity() + delta;
-        if (newQty < 0)
-            return Result.fail("Adjustment would produce negative quantity");
+        // Read-modify-write happens atomically inside the repository so that
+        // concurrent adjustments to the same id are never lost.
+        Optional<Item> updated;
+        try {
+            updated = repo.computeIfPresent(id, current -> withDelta(current, delta));
+        } catch (QuantityOutOfRangeException e) {
+            return Result.fail(e.getMessage());
+        }
+        if (updated.isEmpty())
+            return Result.fail("Item not found: " + id);
+        return Result.ok(updated.get());
+    }
 
-        Item updated = cloneWithQuantity(current, (int) newQty);
-        repo.save(updated);
-        return Result.ok(updated);
+    @Override
+    public int adjustQuantity(String id, int delta) {
+        if (isBlank(id))
+            return InventoryRepository.NOT_FOUND;
+        return repo.adjustQuantity(id, delta);
     }
 
     @Override
@@ -119,19 +273,367 @@ public class InventoryServiceImpl implements InventoryService {
         if (movement == null) {
             return Result.fail("movement is required");
         }
-        // Reuse the same validation and logic as adjustStock
-        return adjustStock(movement.itemId(), movement.quantityChange());
+        movementLock.readLock().lock();
+        try {
+            // Reuse the same validation and logic as adjustStock
+            Result<Item> r = adjustStock(movement.itemId(), movement.quantityChange());
+            if (!r.isOk())
+                return r;
+            // The movement is applied either way; failing here would invite a retry that applies it twice
+            String warning = null;
+            if (movementLog != null) {
+                try {
+                    movementLog.append(movement);
+                } catch (IOException e) {
+                    warning = "Movement applied but not logged: " + e.getMessage();
+                }
+            }
+            if (history != null) {
+                try {
+                    history.append(movement);
+                    recorded(1);
+                } catch (IOException e) {
+                    warning = (warning == null ? "" : warning + "; ")
+                            + "Movement applied but not recorded in history: " + e.getMessage();
+                }
+            }
+            return warning == null ? r : Result.okWithWarning(r.value(), warning);
+        } finally {
+            movementLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public BatchResult applyMovements(List<StockMovement> movements) {
+        Objects.requireNonNull(movements, "movements");
+        movementLock.readLock().lock();
+        try {
+            return applyAndLog(movements);
+        } finally {
+            movementLock.readLock().unlock();
+        }
+    }
+
+    private BatchResult applyAndLog(List<StockMovement> movements) {
+
+        // Coalesce: one running net delta per item, in first-seen order
+        Map<String, long[]> net = new LinkedHashMap<>();
+        for (StockMovement m : movements) {
+            if (m != null)
+                addDelta(net, m);
+        }
+        BatchResult result = applyNetDeltas(net, movements.size());
+
+        if ((movementLog != null || history != null) && result.appliedCount() > 0) {
+            Set<String> applied = new HashSet<>();
+            for (int i = 0; i < result.size(); i++) {
+                if (result.isApplied(i))
+                    applied.add(result.itemId(i));
+            }
+            List<StockMovement> accepted = new ArrayList<>();
+            for (StockMovement m : movements) {
+                if (m != null && applied.contains(m.itemId()))
+                    accepted.add(m);
+            }
+            // Applied either way; throwing here would invite a retry that applies them twice
+            String warning = null;
+            if (movementLog != null) {
+                try {
+                    movementLog.appendAll(accepted);
+                } catch (IOException e) {
+                    warning = "Movements applied but not logged: " + e.getMessage();
+                }
+            }
+            if (history != null) {
+                try {
+                    history.appendAll(accepted);
+                    recorded(accepted.size());
+                } catch (IOException e) {
+                    warning = (warning == null ? "" : warning + "; ")
+                            + "Movements applied but not recorded in history: " + e.getMessage();
+                }
+            }
+            if (warning != null)
+                return result.withWarning(warning);
+        }
+        return result;
+    }
+
+    private static void addDelta(Map<String, long[]> net, StockMovement m) {
+        net.computeIfAbsent(m.itemId(), k -> new long[1])[0] += m.quantityChange();
+    }
+
+    /** Writes each item once with its net delta. Does not touch the movement log. */
+    private BatchResult applyNetDeltas(Map<String, long[]> net, int movementCount) {
+        int n = net.size();
+        String[] ids = new String[n];
+        int[] quantities = new int[n];
+        BatchResult.Status[] statuses = new BatchResult.Status[n];
+        int i = 0;
+        for (Map.Entry<String, long[]> e : net.entrySet()) {
+            String id = e.getKey();
+            long delta = e.getValue()[0];
+            ids[i] = id;
+            Optional<Item> after;
+            try {
+                after = delta == 0
+                        ? repo.findById(id)
+                        : repo.computeIfPresent(id, current -> withDelta(current, delta));
+            } catch (QuantityOutOfRangeException ex) {
+                statuses[i] = ex.status;
+                quantities[i] = repo.findById(id).map(Item::getQuantity).orElse(-1);
+                i++;
+                continue;
+            }
+            if (after.isPresent()) {
+                statuses[i] = BatchResult.Status.APPLIED;
+                quantities[i] = after.get().getQuantity();
+            } else {
+                statuses[i] = BatchResult.Status.NOT_FOUND;
+                quantities[i] = -1;
+            }
+            i++;
+        }
+        return new BatchResult(movementCount, ids, quantities, statuses);
+    }
+
+    @Override
+    public List<StockMovement> movementHistory(String itemId, Instant from, Instant to) {
+        return requireHistory().movements(itemId, from, to);
+    }
+
+    @Override
+    public long netChange(String itemId, Instant from, Instant to) {
+        return requireHistory().netChange(itemId, from, to);
+    }
+
+    @Override
+    public Map<String, Long> netChangeByItem(Instant from, Instant to) {
+        return requireHistory().netChangeByItem(from, to);
+    }
+
+    @Override
+    public Optional<Item> getById(String id, Instant asOf) {
+        Objects.requireNonNull(asOf, "asOf");
+        MovementHistoryStore h = requireHistory();
+        if (isBlank(id))
+            return Optional.empty();
+        Optional<InventoryCheckpoints.Checkpoint> checkpoint = h.checkpoints().nearest(asOf);
+        if (checkpoint.isEmpty())
+            return Optional.empty();
+        long mark = checkpoint.get().mark();
+        try {
+            return checkpoint.get().find(id)
+                    .map(item -> withReplayed(item, h.netChangeSinceMark(id, mark, justAfter(asOf))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read checkpoint " + checkpoint.get().time(), e);
+        }
+    }
+
+    @Override
+    public List<Item> listAll(Instant asOf) {
+        Objects.requireNonNull(asOf, "asOf");
+        MovementHistoryStore h = requireHistory();
+        Optional<InventoryCheckpoints.Checkpoint> checkpoint = h.checkpoints().nearest(asOf);
+        if (checkpoint.isEmpty())
+            return List.of();
+        ToLongFunction<String> net = h.netChangeSinceMarkLookup(checkpoint.get().mark(), justAfter(asOf));
+        List<Item> items;
+        try {
+            items = checkpoint.get().items();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read checkpoint " + checkpoint.get().time(), e);
+        }
+        List<Item> result = new ArrayList<>(items.size());
+        for (Item item : items)
+            result.add(withReplayed(item, net.applyAsLong(item.getId())));
+        return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public Result<Void> checkpoint() {
+        requireHistory();
+        try {
+            writeCheckpoint();
+        } catch (IOException e) {
+            return Result.fail("Checkpoint failed: " + e.getMessage());
+        }
+        return Result.ok();
+    }
+
+    /**
+     * Recorded movements between background checkpoints (default about a
+     * million); Long.MAX_VALUE leaves checkpoints to explicit calls and saves.
+     */
+    public void setCheckpointInterval(long movements) {
+        if (movements <= 0)
+            throw new IllegalArgumentException("movements must be > 0");
+        checkpointInterval = movements;
+    }
+
+    /** Counts recorded movements and starts a background checkpoint once the interval is reached. */
+    private void recorded(int count) {
+        if (movementsSinceCheckpoint.addAndGet(count) < checkpointInterval
+                || !checkpointRunning.compareAndSet(false, true))
+            return;
+        // Never run inline: the caller holds the movement read lock, which the checkpoint must wait out
+        try {
+            checkpointExecutor.execute(() -> {
+                try {
+                    checkpoint(); // a failure is retried at the next interval
+                } finally {
+                    checkpointRunning.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            checkpointRunning.set(false); // closed; checkpoints are left to explicit calls
+        }
+    }
+
+    /** One thread, started on demand and let go when idle; {@link #close()} shuts it down. */
+    private static ExecutorService newCheckpointExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "inventory-checkpoint");
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /** Checkpoints the inventory together with the history mark it corresponds to. */
+    private void writeCheckpoint() throws IOException {
+        history.flush(); // most buffered rows, without holding up movements
+        List<Item> items;
+        long mark;
+        Instant at;
+        movementLock.writeLock().lock();
+        try {
+            items = repo.findAll();
+            mark = history.mark();
+            at = Instant.now();
+        } finally {
+            movementLock.writeLock().unlock();
+        }
+        writeCheckpoint(items, at, mark);
+    }
+
+    /** items must have been captured together with mark, with no movement in between. */
+    private void writeCheckpoint(List<Item> items, Instant at, long mark) throws IOException {
+        long counted = movementsSinceCheckpoint.get();
+        history.checkpoints().write(items, at, mark);
+        movementsSinceCheckpoint.addAndGet(-counted);
+    }
+
+    /** Quantity after a replayed net change; history that disagrees with a checkpoint is clamped at zero. */
+    private static Item withReplayed(Item item, long net) {
+        if (net == 0)
+            return item;
+        long quantity = Math.max(0, Math.min(Integer.MAX_VALUE, item.getQuantity() + net));
+        return item.withQuantity((int) quantity);
+    }
+
+    /** End of an inclusive bound, as the exclusive bound the history takes. */
+    private static Instant justAfter(Instant t) {
+        return t.equals(Instant.MAX) ? t : t.plusNanos(1);
+    }
+
+    private MovementHistoryStore requireHistory() {
+        if (history == null)
+            throw new IllegalStateException("no movement history configured");
+        return history;
     }
 
     @Override
     public List<Item> lowStock() {
-        return repo.findAll().stream()
-                .filter(lowStockPolicy::isLow)
-                .sorted(Comparator
-                        .comparingInt(Item::getQuantity)
-                        .thenComparing(Item::getName, Comparator.nullsLast(String::compareToIgnoreCase))
-                        .thenComparing(Item::getId))
-                .collect(Collectors.toList());
+        // One pass over the index's quantity and threshold columns, then sorted
+        return lowStockIndex.lowStock();
+    }
+
+    @Override
+    public Stream<Item> streamLowStock() {
+        return lowStockIndex.lowStock().stream();
+    }
+
+    @Override
+    public Flow.Publisher<LowStockEvent> lowStockEvents() {
+        return lowStockEvents;
+    }
+
+    @Override
+    public void close() {
+        lowStockEvents.close();
+        if (checkpointExecutor != null)
+            checkpointExecutor.shutdown(); // a running checkpoint finishes on its own
+    }
+
+    @Override
+    public void setLowStockPolicy(LowStockPolicy policy) {
+        lowStockIndex.setPolicy(policy);
+    }
+
+    @Override
+    public Result<Supplier> registerSupplier(Supplier supplier) {
+        if (supplier == null)
+            return Result.fail("supplier is required");
+        suppliers.put(supplier.id(), supplier);
+        return Result.ok(supplier);
+    }
+
+    @Override
+    public Optional<Supplier> getSupplier(String id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(suppliers.get(id));
+    }
+
+    @Override
+    public List<Supplier> listSuppliers() {
+        List<Supplier> result = new ArrayList<>(suppliers.values());
+        result.sort(Comparator.comparing(Supplier::id));
+        return result;
+    }
+
+    @Override
+    public List<Item> listItemsBySupplier(String supplierId) {
+        List<Item> result = new ArrayList<>();
+        for (String id : supplierIndex.itemIds(supplierId))
+            repo.findById(id).ifPresent(result::add);
+        result.sort(Comparator.comparing(Item::getId));
+        return result;
+    }
+
+    @Override
+    public SupplierRollup supplierRollup(String supplierId) {
+        return supplierIndex.rollup(supplierId);
+    }
+
+    @Override
+    public List<SupplierRollup> supplierRollups() {
+        List<SupplierRollup> result = supplierIndex.rollups();
+        result.sort(Comparator.comparing(SupplierRollup::supplierId));
+        return result;
+    }
+
+    @Override
+    public BigDecimal totalStockValue() {
+        return InventoryReports.totalValue(repo.stream());
+    }
+
+    @Override
+    public Map<String, BigDecimal> stockValueBySupplier() {
+        return InventoryReports.valueBySupplier(repo.stream());
+    }
+
+    @Override
+    public List<Item> topItemsByStockValue(int n) {
+        if (n < 0)
+            throw new IllegalArgumentException("n must be >= 0");
+        return InventoryReports.topByValue(repo.stream(), n);
+    }
+
+    @Override
+    public QuantityHistogram quantityHistogram(int bucketWidth, int bucketCount) {
+        return InventoryReports.quantityHistogram(repo.stream(), bucketWidth, bucketCount);
     }
 
     // ---------- Validation ----------
@@ -172,36 +674,250 @@ public class InventoryServiceImpl implements InventoryService {
         return v < 0;
     }
 
-    private static String safeString(String s) {
-        return s == null ? "" : s;
-    }
-
     private static boolean isBlank(String s) {
         return s == null || s.trim().isEmpty();
     }
 
     private static Item cloneWithQuantity(Item src, int qty) {
-        // Adjust to your Item API. This assumes a withQuantity or builder is not
-        // available.
-        return new Item(
-                src.getId(),
-                src.getName(),
-                qty,
-                src.getPrice(),
-                src.getSupplier());
+        return src.withQuantity(qty);
+    }
+
+    /** Applies delta, throwing QuantityOutOfRangeException if the result is out of range. */
+    private static Item withDelta(Item current, long delta) {
+        long newQty = current.getQuantity() + delta;
+        if (newQty < 0)
+            throw QuantityOutOfRangeException.NEGATIVE;
+        if (newQty > Integer.MAX_VALUE)
+            throw QuantityOutOfRangeException.OVERFLOW;
+        return cloneWithQuantity(current, (int) newQty);
+    }
+
+    /**
+     * Signals a rejected adjustment out of the repository's remapping function.
+     * Shared and stackless, since rejections can be frequent on hot items.
+     */
+    private static final class QuantityOutOfRangeException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final QuantityOutOfRangeException NEGATIVE = new QuantityOutOfRangeException(
+                "Adjustment would produce negative quantity", BatchResult.Status.NEGATIVE_QUANTITY);
+        static final QuantityOutOfRangeException OVERFLOW = new QuantityOutOfRangeException(
+                "Adjustment would exceed the maximum quantity of " + Integer.MAX_VALUE,
+                BatchResult.Status.QUANTITY_OVERFLOW);
+
+        final BatchResult.Status status;
+
+        private QuantityOutOfRangeException(String message, BatchResult.Status status) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+
+    @Override
+    public Result<Void> saveAll(String fileName) throws IOException {
+        if (isBlank(fileName))
+            return Result.fail("fileName is required");
+        synchronized (persistenceLock) {
+            List<String> ids;
+            List<Item> items;
+            SnapshotInfo info;
+            long mark = 0;
+            Instant at = null;
+            if (history != null)
+                history.flush(); // so the mark below has little left to write
+            movementLock.writeLock().lock();
+            try {
+                // Drained first: a write racing with the copy below is then in it and dirty, never neither
+                ids = dirtyTracker.drain();
+                items = repo.findAll();
+                info = movementLog == null
+                        ? SnapshotInfo.detached()
+                        : SnapshotInfo.at(movementLog.id(), movementLog.lastSequence());
+                if (history != null) {
+                    mark = history.mark();
+                    at = Instant.now();
+                }
+            } finally {
+                movementLock.writeLock().unlock();
+            }
+            try {
+                storageFor(fileName).saveAll(items, fileName, info);
+            } catch (IOException e) {
+                dirtyTracker.markDirty(ids);
+                throw e;
+            }
+            // Already ignored, being of the replaced base's generation
+            deltaStorage.deleteDeltas(fileName);
+            // Only now is the snapshot on disk; until here, replay skips what it holds
+            if (movementLog != null)
+                movementLog.discardThrough(info.logSequence());
+            // Keep a dated copy for point-in-time queries; fileName itself is overwritten next time
+            if (history != null)
+                writeCheckpoint(items, at, mark);
+        }
+        return Result.ok();
     }
 
     @Override
     public Result<Void> saveAll(List<Item> items, String fileName) throws IOException {
-        storage.saveAll(items, fileName);
+        synchronized (persistenceLock) {
+            storageFor(fileName).saveAll(items, fileName, SnapshotInfo.detached());
+            // Already ignored, being of the replaced base's generation
+            deltaStorage.deleteDeltas(fileName);
+        }
+        return Result.ok();
+    }
+
+    @Override
+    public Result<Void> saveChanges(String fileName) throws IOException {
+        if (isBlank(fileName))
+            return Result.fail("fileName is required");
+        if (!Files.exists(Path.of(fileName)))
+            return Result.fail("No base snapshot to save changes against: " + fileName);
+
+        synchronized (persistenceLock) {
+            SnapshotInfo base = storageFor(fileName).readInfo(fileName);
+            List<String> ids;
+            List<Item> upserts = new ArrayList<>();
+            List<String> deletes = new ArrayList<>();
+            SnapshotInfo info;
+            movementLock.writeLock().lock();
+            try {
+                ids = dirtyTracker.drain();
+                if (ids.isEmpty())
+                    return Result.ok();
+                for (String id : ids) {
+                    Optional<Item> current = repo.findById(id);
+                    if (current.isPresent())
+                        upserts.add(current.get());
+                    else
+                        deletes.add(id);
+                }
+                info = movementLog == null
+                        ? new SnapshotInfo(base.generation(), 0, SnapshotInfo.NO_SEQUENCE)
+                        : new SnapshotInfo(base.generation(), movementLog.id(), movementLog.lastSequence());
+            } finally {
+                movementLock.writeLock().unlock();
+            }
+            try {
+                deltaStorage.writeDelta(fileName, info, upserts, deletes);
+            } catch (IOException e) {
+                dirtyTracker.markDirty(ids);
+                throw e;
+            }
+            if (movementLog != null)
+                movementLog.discardThrough(info.logSequence());
+        }
+        return Result.ok();
+    }
+
+    @Override
+    public Result<Void> compactSnapshots(String fileName) throws IOException {
+        if (isBlank(fileName))
+            return Result.fail("fileName is required");
+        if (!Files.exists(Path.of(fileName)))
+            return Result.fail("No base snapshot: " + fileName);
+        synchronized (persistenceLock) {
+            deltaStorage.compact(fileName);
+        }
         return Result.ok();
     }
 
 	@Override
 	public Result<Void> loadAll(String fileName) throws IOException {
-		List<Item> items = storage.loadAll(fileName);
-        // Replace current contents with loaded snapshot
-        repo.replaceAll(items);
+        synchronized (persistenceLock) {
+            // Staged first, so a file that fails to parse leaves the inventory as it was
+            InventoryFileStorage format = storageFor(fileName);
+            SnapshotInfo base = format.readInfo(fileName);
+            Map<String, Item> staged = new LinkedHashMap<>();
+            format.loadInChunks(fileName, LOAD_CHUNK_SIZE, chunk -> stage(staged, chunk));
+            install(fileName, base, staged);
+        }
         return Result.ok();
 	}
+
+    @Override
+    public Result<Void> loadAllParallel(String fileName) throws IOException {
+        if (BinaryInventoryStorage.handles(fileName))
+            return loadAll(fileName); // binary snapshots load sequentially at I/O speed
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        synchronized (persistenceLock) {
+            SnapshotInfo base = storage.readInfo(fileName);
+            Map<String, Item> staged = new LinkedHashMap<>();
+            // Segments arrive in file order, one at a time
+            storage.loadParallel(fileName, pool.getParallelism() * 4, pool, segment -> stage(staged, segment));
+            install(fileName, base, staged);
+        }
+        return Result.ok();
+    }
+
+    private static void stage(Map<String, Item> staged, List<Item> chunk) {
+        for (Item it : chunk)
+            staged.put(it.getId(), it); // a later duplicate wins, as with saveAll
+    }
+
+    /**
+     * Applies the deltas to a staged base, then swaps it in and replays the
+     * movement log with movements held off, so no movement lands between
+     * the swap and the replay and is then applied a second time.
+     */
+    private void install(String fileName, SnapshotInfo base, Map<String, Item> staged) throws IOException {
+        SnapshotInfo position = deltaStorage.applyDeltas(fileName, base,
+                it -> staged.put(it.getId(), it), staged::remove);
+        movementLock.writeLock().lock();
+        try {
+            repo.replaceAll(new ArrayList<>(staged.values()));
+            // Memory now matches base + deltas; only the log replay below is unsaved
+            dirtyTracker.clear();
+            if (movementLog != null)
+                replayMovementLog(position);
+        } finally {
+            movementLock.writeLock().unlock();
+        }
+        if (history != null && history.checkpoints().list().isEmpty())
+            writeCheckpoint();
+    }
+
+    /** Snapshot format is chosen by extension: {@code .ims} is binary, anything else CSV. */
+    private InventoryFileStorage storageFor(String fileName) {
+        return BinaryInventoryStorage.handles(fileName) ? binaryStorage : storage;
+    }
+
+    /**
+     * Re-applies the logged movements the snapshot does not contain. Log order
+     * per item can differ from apply order under concurrent writers, so
+     * movements are folded into one net delta per item first; the net of
+     * accepted movements can never be negative.
+     */
+    private void replayMovementLog(SnapshotInfo position) throws IOException {
+        long after;
+        if (position.logId() == movementLog.id())
+            after = position.logSequence();
+        else if (position.logId() == 0 && !position.equals(SnapshotInfo.NONE))
+            return; // saved without a log, so none of this log belongs to it
+        else
+            after = 0; // an older file, or another log: all of this log is newer
+        Map<String, long[]> net = new LinkedHashMap<>();
+        long count = movementLog.replayAfter(after, m -> addDelta(net, m));
+        applyNetDeltas(net, (int) Math.min(count, Integer.MAX_VALUE));
+    }
+
+    /** Read-only id column over an item snapshot, so listing ids copies nothing. */
+    private static final class ItemIdView extends AbstractList<String> implements RandomAccess {
+        private final List<Item> items;
+
+        ItemIdView(List<Item> items) {
+            this.items = items;
+        }
+
+        @Override
+        public String get(int index) {
+            return items.get(index).getId();
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+    }
 }
@@ -0,0 +1,172 @@
+package com.ims.service;
+
+import com.ims.model.LowStockEvent;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes low-stock crossings to {@link Flow.Subscriber}s.
+ *
+ * {@link #crossed} is called on the writer's thread and only records the
+ * latest state per SKU in a map, so it is O(1) and never waits for a
+ * subscriber. A background thread publishes the map once per window: a SKU
+ * that crossed several times inside one window yields one event with its
+ * final state, or none if it ended where it started.
+ *
+ * Each subscriber has its own buffer of bufferCapacity events and receives
+ * them as it requests them. When a buffer is full the event is dropped for
+ * that subscriber at once and counted in {@link #droppedEvents()}, so a
+ * stalled subscriber never delays the others, and writers never block. A
+ * subscriber that lost events can resynchronize from
+ * {@link InventoryService#lowStock()}.
+ */
+public class LowStockEventPublisher implements Flow.Publisher<LowStockEvent>, AutoCloseable {
+
+    public static final Duration DEFAULT_WINDOW = Duration.ofMillis(100);
+
+    private final SubmissionPublisher<LowStockEvent> publisher;
+    private final long windowMillis;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Object windowLock = new Object();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private Thread flusher; // started by the first subscribe, guarded by windowLock
+    private volatile boolean closed;
+
+    public LowStockEventPublisher() {
+        this(DEFAULT_WINDOW, Flow.defaultBufferSize());
+    }
+
+    /**
+     * @param window         how long changes for one SKU are coalesced
+     * @param bufferCapacity events buffered per subscriber before events are dropped for it
+     */
+    public LowStockEventPublisher(Duration window, int bufferCapacity) {
+        Objects.requireNonNull(window, "window");
+        if (window.isNegative() || window.isZero())
+            throw new IllegalArgumentException("window must be positive");
+        if (bufferCapacity <= 0)
+            throw new IllegalArgumentException("bufferCapacity must be > 0");
+        this.windowMillis = Math.max(1, window.toMillis());
+        this.publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), bufferCapacity);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super LowStockEvent> subscriber) {
+        synchronized (windowLock) {
+            if (flusher == null && !closed) {
+                flusher = new Thread(this::flushLoop, "low-stock-events");
+                flusher.setDaemon(true);
+                flusher.start();
+            }
+        }
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Records that an item became low or recovered. Ignored while nobody is
+     * subscribed.
+     */
+    public void crossed(String itemId, boolean low, int quantity) {
+        if (closed || !publisher.hasSubscribers())
+            return;
+        Instant now = Instant.now();
+        pending.compute(itemId, (id, p) -> {
+            if (p == null)
+                return new Pending(!low, low, quantity, now);
+            p.low = low;
+            p.quantity = quantity;
+            p.timestamp = now;
+            return p;
+        });
+    }
+
+    /** Publishes everything coalesced so far without waiting for the window to end. */
+    public void flush() {
+        synchronized (windowLock) {
+            for (String id : pending.keySet()) {
+                Pending p = pending.remove(id);
+                if (p == null || p.low == p.wasLow)
+                    continue; // crossed back inside the window
+                published.increment();
+                // Never waits: a full buffer drops the event for that subscriber only
+                publisher.offer(new LowStockEvent(id, p.low, p.quantity, p.timestamp), (subscriber, event) -> {
+                    dropped.increment();
+                    return false;
+                });
+            }
+        }
+    }
+
+    public int subscriberCount() {
+        return publisher.getNumberOfSubscribers();
+    }
+
+    /** Events offered to the subscribers so far. */
+    public long publishedEvents() {
+        return published.sum();
+    }
+
+    /** Event deliveries dropped because a subscriber's buffer stayed full. */
+    public long droppedEvents() {
+        return dropped.sum();
+    }
+
+    /** Publishes what is pending, then completes every subscriber. */
+    @Override
+    public void close() {
+        Thread t;
+        synchronized (windowLock) {
+            closed = true;
+            windowLock.notifyAll();
+            t = flusher;
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        publisher.close();
+    }
+
+    private void flushLoop() {
+        while (!closed) {
+            synchronized (windowLock) {
+                if (!closed) {
+                    try {
+                        windowLock.wait(windowMillis);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            flush();
+        }
+    }
+
+    /** Coalesced state of one SKU within the current window; mutated inside compute. */
+    private static final class Pending {
+        final boolean wasLow;
+        boolean low;
+        int quantity;
+        Instant timestamp;
+
+        Pending(boolean wasLow, boolean low, int quantity, Instant timestamp) {
+            this.wasLow = wasLow;
+            this.low = low;
+            this.quantity = quantity;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.ims.service.index;
+
+import com.ims.model.Item;
+import com.ims.repository.InventoryChangeListener;
+import com.ims.service.InventoryService.LowStockPolicy;
+import com.ims.service.InventoryService.ThresholdPolicy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Quantities and low-stock thresholds in primitive columns, one slot per
+ * item, maintained from repository change events.
+ *
+ * For a {@link ThresholdPolicy} the threshold column holds each item's
+ * resolved threshold (per SKU, per supplier or global), refreshed in one pass
+ * when the policy's version changes. The slots below their threshold are
+ * also kept in a skip list in {@link #ORDER}, updated by the same per-slot
+ * comparison that detects crossings, so a low-stock query walks only the
+ * low items, already in report order, and its cost does not grow with the
+ * catalog. Any other policy is evaluated as a quantity bound
+ * ({@link LowStockPolicy#maxLowQuantity()}) over the quantity column, then
+ * per item with {@link LowStockPolicy#isLow} for the candidates, which are
+ * sorted.
+ *
+ * Quantity-only changes update one column entry, so adjustments need no
+ * items ({@link #handlesQuantityChanges()}). They allocate nothing while the
+ * item stays at or above its threshold; a low item's key moves in the skip
+ * list, which costs a new key and node per adjustment.
+ *
+ * With a {@link CrossingListener} set, every update of an existing item is
+ * also checked for a transition into or out of low stock: two comparisons
+ * against the slot's threshold, or two {@link LowStockPolicy#isLow} calls
+ * for other policies. Inserts and deletes are not crossings, and a policy or
+ * threshold change re-baselines silently; {@link #lowStock()} gives the
+ * full picture.
+ */
+public class LowStockIndex implements InventoryChangeListener {
+
+    /** Low-stock report order. */
+    public static final Comparator<Item> ORDER = Comparator
+            .comparingInt(Item::getQuantity)
+            .thenComparing(Item::getName, String::compareToIgnoreCase)
+            .thenComparing(Item::getId);
+
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    /** A slot below its threshold, keyed as {@link #ORDER} sorts its item. */
+    private record Low(int quantity, String name, String id) {
+        static final Comparator<Low> ORDER = Comparator
+                .comparingInt(Low::quantity)
+                .thenComparing(Low::name, String::compareToIgnoreCase)
+                .thenComparing(Low::id);
+    }
+
+    /** Told about transitions into or out of low stock, under the repository's lock for the id. */
+    @FunctionalInterface
+    public interface CrossingListener {
+        void onCrossing(String id, boolean low, int quantity);
+    }
+
+    private final Function<String, Optional<Item>> lookup;
+    // Write lock for inserts, deletes and threshold refreshes; read lock for
+    // scans and per-slot updates, which events for one id never race on
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+
+    // Guarded by structure
+    private final Map<String, Integer> slots = new HashMap<>();
+    // Free slots have id null, quantity MAX_VALUE and threshold 0, so they never match
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private String[] suppliers = new String[INITIAL_CAPACITY];
+    private int[] quantity = new int[INITIAL_CAPACITY];
+    private int[] threshold = new int[INITIAL_CAPACITY];
+    // Each listed slot's key in the low set, so taking it out needs no new key
+    private Low[] lowKeys = new Low[INITIAL_CAPACITY];
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    // Exactly the slots with quantity < threshold. Changed with the slot, so
+    // under the write lock or the read lock plus the id's event order
+    private final NavigableSet<Low> low = new ConcurrentSkipListSet<>(Low.ORDER);
+    private final AtomicInteger lowCount = new AtomicInteger();
+
+    private volatile LowStockPolicy policy;
+    private volatile CrossingListener crossings;
+    // Policy and version the threshold column holds; written under the write lock
+    private volatile ThresholdPolicy resolvedPolicy;
+    private volatile long resolvedVersion;
+
+    /** @param lookup resolves an id to its current item, e.g. the repository's findById */
+    public LowStockIndex(Function<String, Optional<Item>> lookup, LowStockPolicy policy) {
+        this.lookup = Objects.requireNonNull(lookup, "lookup");
+        this.policy = Objects.requireNonNull(policy, "policy");
+    }
+
+    /** Swaps the rule; thresholds are resolved on the next query. */
+    public void setPolicy(LowStockPolicy policy) {
+        this.policy = Objects.requireNonNull(policy, "policy");
+    }
+
+    /** Starts (or with null, stops) reporting low-stock crossings. */
+    public void setCrossingListener(CrossingListener listener) {
+        this.crossings = listener;
+    }
+
+    @Override
+    public void onChange(Item before, Item after) {
+        if (after == null) {
+            if (before != null)
+                remove(before.getId());
+            return;
+        }
+        CrossingListener cl = crossings;
+        LowStockPolicy p = policy;
+        if (cl != null && before != null)
+            refreshIfStale(p);
+        structure.readLock().lock();
+        try {
+            Integer s = slots.get(after.getId());
+            if (s != null) {
+                boolean wasLow = cl != null && before != null && lowAt(p, s, before);
+                update(s, after);
+                if (cl != null && before != null && wasLow != lowAt(p, s, after))
+                    cl.onCrossing(after.getId(), !wasLow, after.getQuantity());
+                return;
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+        insert(after, true);
+    }
+
+    @Override
+    public void onQuantityChange(String id, int before, int after) {
+        CrossingListener cl = crossings;
+        LowStockPolicy p = policy;
+        Item current = null;
+        if (cl != null) {
+            refreshIfStale(p);
+            // Other policies need the item; only the quantity changes, so the
+            // stored one fills in the rest. Looked up before locking, since
+            // the repository may take its own locks
+            if (!(p instanceof ThresholdPolicy))
+                current = lookup.apply(id).orElse(null);
+        }
+        structure.readLock().lock();
+        try {
+            Integer s = slots.get(id);
+            if (s == null)
+                return;
+            unlist(s);
+            quantity[s] = after;
+            list(s);
+            if (cl == null)
+                return;
+            boolean wasLow;
+            boolean nowLow;
+            if (p == resolvedPolicy) {
+                wasLow = before < threshold[s];
+                nowLow = after < threshold[s];
+            } else if (current != null) {
+                wasLow = p.isLow(current.withQuantity(before));
+                nowLow = p.isLow(current.withQuantity(after));
+            } else {
+                return; // item gone, or the policy was swapped mid-call
+            }
+            if (wasLow != nowLow)
+                cl.onCrossing(id, nowLow, after);
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean handlesQuantityChanges() {
+        return true;
+    }
+
+    /**
+     * Adds an item read outside the event stream (initial seeding) unless the
+     * id is already indexed, in which case the indexed state is newer.
+     */
+    public void seed(Item item) {
+        insert(item, false);
+    }
+
+    /** Low-stock items under the current policy, in {@link #ORDER}. */
+    public List<Item> lowStock() {
+        LowStockPolicy p = policy;
+        List<String> hits;
+        if (p instanceof ThresholdPolicy) {
+            resolve((ThresholdPolicy) p);
+            // A slot that moves while we walk may be met at both its old and its new key
+            Set<String> seen = new HashSet<>();
+            hits = new ArrayList<>(lowCount.get());
+            for (Low e : low) {
+                if (seen.add(e.id()))
+                    hits.add(e.id());
+            }
+        } else {
+            hits = scan(p);
+        }
+        List<Item> result = new ArrayList<>(hits.size());
+        for (String id : hits) {
+            // Re-check the current item: the columns may have moved since the walk
+            Optional<Item> item = lookup.apply(id);
+            if (item.isPresent() && p.isLow(item.get()))
+                result.add(item.get());
+        }
+        // Already in order unless an item moved meanwhile; then the sort fixes the few that did
+        result.sort(ORDER);
+        return result;
+    }
+
+    /** Number of low items under the current policy, from the index alone. */
+    public int countLow() {
+        LowStockPolicy p = policy;
+        if (!(p instanceof ThresholdPolicy))
+            return scan(p).size();
+        resolve((ThresholdPolicy) p);
+        return lowCount.get();
+    }
+
+    public int size() {
+        structure.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    // ---------- Scan ----------
+
+    /** Ids of the slots with quantity at or below the bound of a policy that is not a threshold. */
+    private List<String> scan(LowStockPolicy p) {
+        int bound = p.maxLowQuantity();
+        structure.readLock().lock();
+        try {
+            List<String> hits = new ArrayList<>();
+            int[] q = quantity;
+            for (int s = 0, n = slotCount; s < n; s++) {
+                if (q[s] <= bound && ids[s] != null)
+                    hits.add(ids[s]);
+            }
+            return hits;
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /** Whether item, stored in slot s, is low; the read lock is held. */
+    private boolean lowAt(LowStockPolicy p, int s, Item item) {
+        return p == resolvedPolicy ? item.getQuantity() < threshold[s] : p.isLow(item);
+    }
+
+    private void refreshIfStale(LowStockPolicy p) {
+        if (p instanceof ThresholdPolicy)
+            resolve((ThresholdPolicy) p);
+    }
+
+    /** Brings the threshold column up to date with the policy's current version. */
+    private void resolve(ThresholdPolicy p) {
+        long version = p.version();
+        if (resolvedPolicy == p && resolvedVersion == version)
+            return;
+        structure.writeLock().lock();
+        try {
+            if (resolvedPolicy == p && resolvedVersion == version)
+                return;
+            low.clear();
+            lowCount.set(0);
+            Arrays.fill(lowKeys, 0, slotCount, null);
+            for (int s = 0; s < slotCount; s++) {
+                if (ids[s] != null) {
+                    threshold[s] = Math.max(0, p.thresholdFor(ids[s], suppliers[s]));
+                    list(s);
+                }
+            }
+            resolvedVersion = version; // read before the pass, so a change during it is seen next time
+            resolvedPolicy = p;
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    // ---------- Slots ----------
+
+    /** Caller holds the read lock; events for one id are never concurrent. */
+    private void update(int s, Item item) {
+        unlist(s);
+        quantity[s] = item.getQuantity();
+        names[s] = item.getName();
+        if (!item.getSupplier().equals(suppliers[s])) {
+            suppliers[s] = item.getSupplier();
+            threshold[s] = thresholdOf(item);
+        }
+        list(s);
+    }
+
+    /**
+     * Adds slot s to the low set if it is low; call after changing the slot.
+     * A low slot needs a new key, since its quantity is part of the order.
+     */
+    private void list(int s) {
+        if (quantity[s] < threshold[s]) {
+            Low key = new Low(quantity[s], names[s], ids[s]);
+            lowKeys[s] = key;
+            if (low.add(key))
+                lowCount.incrementAndGet();
+        }
+    }
+
+    /** Takes slot s out of the low set; call before changing the slot. */
+    private void unlist(int s) {
+        Low key = lowKeys[s];
+        if (key != null) {
+            lowKeys[s] = null;
+            if (low.remove(key))
+                lowCount.decrementAndGet();
+        }
+    }
+
+    private void insert(Item item, boolean overwrite) {
+        structure.writeLock().lock();
+        try {
+            Integer existing = slots.get(item.getId());
+            if (existing != null) {
+                if (overwrite)
+                    update(existing, item);
+                return;
+            }
+            if (freeCount == 0 && slotCount == ids.length)
+                grow();
+            int s = freeCount > 0 ? freeSlots[--freeCount] : slotCount++;
+            ids[s] = item.getId();
+            names[s] = item.getName();
+            suppliers[s] = item.getSupplier();
+            quantity[s] = item.getQuantity();
+            threshold[s] = thresholdOf(item);
+            list(s);
+            slots.put(item.getId(), s);
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    private void remove(String id) {
+        structure.writeLock().lock();
+        try {
+            Integer s = slots.remove(id);
+            if (s == null)
+                return;
+            unlist(s);
+            ids[s] = null;
+            names[s] = null;
+            suppliers[s] = null;
+            quantity[s] = Integer.MAX_VALUE;
+            threshold[s] = 0;
+            if (freeCount == freeSlots.length)
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            freeSlots[freeCount++] = s;
+        } finally {
+            structure.writeLock().unlock();
+        }
+    }
+
+    /** Threshold for a new or re-supplied item, if the column is resolved; else fixed by the next refresh. */
+    private int thresholdOf(Item item) {
+        return resolvedPolicy != null
+                ? Math.max(0, resolvedPolicy.thresholdFor(item.getId(), item.getSupplier()))
+                : 0;
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        suppliers = Arrays.copyOf(suppliers, capacity);
+        quantity = Arrays.copyOf(quantity, capacity);
+        threshold = Arrays.copyOf(threshold, capacity);
+        lowKeys = Arrays.copyOf(lowKeys, capacity);
+    }
+}
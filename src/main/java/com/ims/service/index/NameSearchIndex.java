@@ -0,0 +1,267 @@
+package com.ims.service.index;
+
+import com.ims.model.Item;
+import com.ims.repository.InventoryChangeListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Case-insensitive name search, maintained from repository change events.
+ *
+ * Substring queries of three or more characters intersect the trigram
+ * posting lists of the query, starting from the shortest, and only verify
+ * and sort the surviving candidates. Shorter queries fall back to a scan.
+ * Prefix queries (type-ahead) walk a sorted map of lower-cased names.
+ * Both stop at {@code limit} results using a bounded heap, so no full
+ * result list is built and sorted.
+ *
+ * Only ids and names are indexed; the matching items are looked up when a
+ * query returns. Updates that keep the name, including every quantity
+ * change, leave the index untouched.
+ *
+ * Until {@link #finishSeeding()}, deletes of ids not indexed yet are
+ * remembered, so {@link #seed} does not bring back an item deleted after the
+ * seeding snapshot was read.
+ */
+public class NameSearchIndex implements InventoryChangeListener {
+
+    /** Result order, same as the historical searchByName order. */
+    public static final Comparator<Item> ORDER = Comparator
+            .comparing(Item::getName, String::compareToIgnoreCase)
+            .thenComparing(Item::getId);
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    private static final Comparator<Entry> ENTRY_ORDER = Comparator
+            .comparing((Entry e) -> e.name, String::compareToIgnoreCase)
+            .thenComparing(e -> e.id);
+
+    private final Function<String, Optional<Item>> lookup;
+    // Changed with compute, so a seed and an event for the same id are atomic
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> deletedWhileSeeding = ConcurrentHashMap.newKeySet();
+    private volatile boolean seeding = true;
+    private final Map<Long, Set<String>> postings = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Entry> byName = new ConcurrentSkipListMap<>();
+
+    /** @param lookup resolves an indexed id to its current item, e.g. the repository's findById */
+    public NameSearchIndex(Function<String, Optional<Item>> lookup) {
+        this.lookup = Objects.requireNonNull(lookup, "lookup");
+    }
+
+    @Override
+    public void onChange(Item before, Item after) {
+        if (before != null && after != null && before.getName().equals(after.getName()))
+            return; // only non-name fields changed
+        if (after != null)
+            put(after, true);
+        else if (before != null)
+            delete(before.getId());
+    }
+
+    /**
+     * Adds an item read outside the event stream (initial seeding) unless the
+     * id is already indexed, in which case the indexed name is newer, or was
+     * deleted since seeding began.
+     */
+    public void seed(Item item) {
+        put(item, false);
+    }
+
+    /** Ends seeding; later deletes of unknown ids are no longer remembered. */
+    public void finishSeeding() {
+        seeding = false;
+        deletedWhileSeeding.clear();
+    }
+
+    @Override
+    public boolean handlesQuantityChanges() {
+        return true;
+    }
+
+    /** Items whose name contains query (ignoring case), in {@link #ORDER}, at most limit. */
+    public List<Item> search(String query, int limit) {
+        if (limit <= 0)
+            return List.of();
+        String q = lower(query);
+        TopK top = new TopK(limit);
+        if (q.length() < 3) {
+            for (Entry e : entries.values()) {
+                if (e.lowerName.contains(q))
+                    top.offer(e);
+            }
+            return resolve(top.sorted());
+        }
+
+        List<Set<String>> lists = new ArrayList<>();
+        for (long gram : grams(q)) {
+            Set<String> ids = postings.get(gram);
+            if (ids == null || ids.isEmpty())
+                return List.of();
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<String> smallest = lists.get(0);
+        candidates:
+        for (String id : smallest) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(id))
+                    continue candidates;
+            }
+            Entry e = entries.get(id);
+            // Trigrams can all match without the query being contiguous
+            if (e != null && e.lowerName.contains(q))
+                top.offer(e);
+        }
+        return resolve(top.sorted());
+    }
+
+    /** Items whose name starts with prefix (ignoring case), by name then id, at most limit. */
+    public List<Item> prefix(String prefix, int limit) {
+        if (limit <= 0)
+            return List.of();
+        String p = lower(prefix);
+        List<Entry> matches = new ArrayList<>(Math.min(limit, 64));
+        for (Map.Entry<String, Entry> e : byName.tailMap(p, true).entrySet()) {
+            if (!e.getKey().startsWith(p) || matches.size() == limit)
+                break;
+            matches.add(e.getValue());
+        }
+        return resolve(matches);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /** Current items for the matches; skips ids deleted or renamed since they matched. */
+    private List<Item> resolve(List<Entry> matches) {
+        List<Item> result = new ArrayList<>(matches.size());
+        for (Entry e : matches) {
+            Optional<Item> item = lookup.apply(e.id);
+            if (item.isPresent() && item.get().getName().equals(e.name))
+                result.add(item.get());
+        }
+        return result;
+    }
+
+    /** Indexes item under its name; a seed leaves indexed ids and ids deleted meanwhile alone. */
+    private void put(Item item, boolean event) {
+        entries.compute(item.getId(), (id, e) -> {
+            if (event)
+                deletedWhileSeeding.remove(id);
+            else if (e != null || deletedWhileSeeding.contains(id))
+                return e;
+            if (e != null) {
+                if (e.name.equals(item.getName()))
+                    return e;
+                unindex(e);
+            }
+            Entry entry = new Entry(id, item.getName(), lower(item.getName()));
+            index(entry);
+            return entry;
+        });
+    }
+
+    private void delete(String id) {
+        entries.compute(id, (k, e) -> {
+            if (e != null)
+                unindex(e);
+            else if (seeding)
+                deletedWhileSeeding.add(k); // not seeded yet
+            return null;
+        });
+    }
+
+    private void index(Entry entry) {
+        byName.put(nameKey(entry.lowerName, entry.id), entry);
+        for (long gram : grams(entry.lowerName)) {
+            // Add inside compute so a concurrent remove cannot drop the set under us
+            postings.compute(gram, (k, ids) -> {
+                if (ids == null)
+                    ids = ConcurrentHashMap.newKeySet();
+                ids.add(entry.id);
+                return ids;
+            });
+        }
+    }
+
+    private void unindex(Entry entry) {
+        byName.remove(nameKey(entry.lowerName, entry.id));
+        for (long gram : grams(entry.lowerName)) {
+            postings.computeIfPresent(gram, (k, ids) -> {
+                ids.remove(entry.id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private static Set<Long> grams(String lower) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            grams.add(((long) lower.charAt(i) << 32)
+                    | ((long) lower.charAt(i + 1) << 16)
+                    | lower.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    private static String lower(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    private static String nameKey(String lowerName, String id) {
+        return lowerName + KEY_SEPARATOR + id;
+    }
+
+    private static final class Entry {
+        final String id;
+        final String name;
+        final String lowerName;
+
+        Entry(String id, String name, String lowerName) {
+            this.id = id;
+            this.name = name;
+            this.lowerName = lowerName;
+        }
+    }
+
+    /** Keeps the first k entries in ORDER using a max-heap of size k. */
+    private static final class TopK {
+        private final int k;
+        private final PriorityQueue<Entry> heap;
+
+        TopK(int k) {
+            this.k = k;
+            this.heap = new PriorityQueue<>(Math.min(k, 1024), ENTRY_ORDER.reversed());
+        }
+
+        void offer(Entry e) {
+            if (heap.size() < k) {
+                heap.add(e);
+            } else if (ENTRY_ORDER.compare(e, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(e);
+            }
+        }
+
+        List<Entry> sorted() {
+            List<Entry> result = new ArrayList<>(heap);
+            Collections.sort(result, ENTRY_ORDER);
+            return result;
+        }
+    }
+}
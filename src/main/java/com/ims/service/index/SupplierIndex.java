@@ -0,0 +1,230 @@
+package com.ims.service.index;
+
+import com.ims.model.Item;
+import com.ims.model.Money;
+import com.ims.model.SupplierRollup;
+import com.ims.repository.InventoryChangeListener;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-supplier rollups (SKU count, units, stock value) and the ids of each
+ * supplier's items, maintained from repository change events.
+ *
+ * Every write adjusts the running totals of the supplier it touches by the
+ * item's change, so a rollup is read in O(1) whatever the catalog size. Each
+ * indexed item keeps a small entry with its supplier, quantity and price;
+ * quantity-only changes use it instead of the items
+ * ({@link #handlesQuantityChanges()}).
+ *
+ * Values are kept exactly with {@link Money}: each rollup sums them in a few
+ * striped {@link Money.Sum}s, so writers to different items rarely contend
+ * and a total never wraps.
+ *
+ * Until {@link #finishSeeding()}, deletes of ids not indexed yet are
+ * remembered, so {@link #seed} does not bring back an item deleted after the
+ * seeding snapshot was read.
+ */
+public class SupplierIndex implements InventoryChangeListener {
+
+    private static final int VALUE_STRIPES = 8;
+
+    private final Map<String, Rollup> rollups = new ConcurrentHashMap<>();
+    // Changed with compute, so a seed and an event for the same id are atomic
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> deletedWhileSeeding = ConcurrentHashMap.newKeySet();
+    private volatile boolean seeding = true;
+
+    @Override
+    public void onChange(Item before, Item after) {
+        if (after == null) {
+            if (before != null)
+                delete(before.getId());
+            return;
+        }
+        Entry e = entries.get(after.getId());
+        if (e == null) {
+            insert(after, true);
+            return;
+        }
+        long price = Money.scaled(after.getPrice());
+        if (e.rollup.supplierId.equals(after.getSupplier()) && e.price == price) {
+            setQuantity(e, after.getQuantity());
+            return;
+        }
+        // Supplier or price changed: move the whole contribution to a new entry
+        e.rollup.remove(after.getId(), e.quantity, e.price);
+        Rollup r = rollupOf(after.getSupplier());
+        entries.put(after.getId(), new Entry(r, after.getId(), after.getQuantity(), price));
+        r.add(after.getId(), after.getQuantity(), price);
+    }
+
+    @Override
+    public void onQuantityChange(String id, int before, int after) {
+        Entry e = entries.get(id);
+        if (e != null)
+            setQuantity(e, after);
+    }
+
+    @Override
+    public boolean handlesQuantityChanges() {
+        return true;
+    }
+
+    /**
+     * Adds an item read outside the event stream (initial seeding) unless the
+     * id is already indexed, in which case the indexed state is newer, or was
+     * deleted since seeding began.
+     */
+    public void seed(Item item) {
+        insert(item, false);
+    }
+
+    /** Ends seeding; later deletes of unknown ids are no longer remembered. */
+    public void finishSeeding() {
+        seeding = false;
+        deletedWhileSeeding.clear();
+    }
+
+    /** Totals for supplierId; all zero if it has no items. */
+    public SupplierRollup rollup(String supplierId) {
+        Rollup r = supplierId == null ? null : rollups.get(supplierId);
+        return r == null ? new SupplierRollup(supplierId, 0, 0, BigDecimal.ZERO.setScale(Money.SCALE)) : r.snapshot();
+    }
+
+    /** Totals for every supplier that has at least one item, in no particular order. */
+    public List<SupplierRollup> rollups() {
+        List<SupplierRollup> result = new ArrayList<>(rollups.size());
+        for (Rollup r : rollups.values()) {
+            SupplierRollup s = r.snapshot();
+            if (s.skuCount() > 0)
+                result.add(s);
+        }
+        return result;
+    }
+
+    /** Live, read-only view of the ids of supplierId's items. */
+    public Set<String> itemIds(String supplierId) {
+        Rollup r = supplierId == null ? null : rollups.get(supplierId);
+        return r == null ? Set.of() : Collections.unmodifiableSet(r.itemIds);
+    }
+
+    /** Indexes item unless its id is already indexed; a seed also skips ids deleted meanwhile. */
+    private void insert(Item item, boolean event) {
+        Rollup r = rollupOf(item.getSupplier());
+        long price = Money.scaled(item.getPrice());
+        entries.compute(item.getId(), (id, e) -> {
+            if (e != null)
+                return e;
+            if (event)
+                deletedWhileSeeding.remove(id);
+            else if (deletedWhileSeeding.contains(id))
+                return null;
+            r.add(id, item.getQuantity(), price);
+            return new Entry(r, id, item.getQuantity(), price);
+        });
+    }
+
+    private void delete(String id) {
+        entries.compute(id, (k, e) -> {
+            if (e != null)
+                e.rollup.remove(k, e.quantity, e.price);
+            else if (seeding)
+                deletedWhileSeeding.add(k); // not seeded yet
+            return null;
+        });
+    }
+
+    /** Events for one id never overlap, so the entry's quantity needs no lock. */
+    private static void setQuantity(Entry e, int quantity) {
+        long delta = (long) quantity - e.quantity;
+        if (delta == 0)
+            return;
+        e.quantity = quantity;
+        e.rollup.units.add(delta);
+        e.rollup.addValue(e, delta);
+    }
+
+    private Rollup rollupOf(String supplierId) {
+        return rollups.computeIfAbsent(supplierId, Rollup::new);
+    }
+
+    private static final class Entry {
+        final Rollup rollup;
+        final long price; // scaled
+        final int stripe;
+        int quantity;
+
+        Entry(Rollup rollup, String id, int quantity, long price) {
+            this.rollup = rollup;
+            this.stripe = stripeOf(id);
+            this.quantity = quantity;
+            this.price = price;
+        }
+    }
+
+    private static final class Rollup {
+        final String supplierId;
+        final LongAdder skus = new LongAdder();
+        final LongAdder units = new LongAdder();
+        final Money.Sum[] value = new Money.Sum[VALUE_STRIPES]; // each guarded by itself
+        final Set<String> itemIds = ConcurrentHashMap.newKeySet();
+
+        Rollup(String supplierId) {
+            this.supplierId = supplierId;
+            for (int i = 0; i < VALUE_STRIPES; i++)
+                value[i] = new Money.Sum();
+        }
+
+        void add(String id, int quantity, long price) {
+            itemIds.add(id);
+            skus.increment();
+            units.add(quantity);
+            addValue(id, quantity, price);
+        }
+
+        void remove(String id, int quantity, long price) {
+            itemIds.remove(id);
+            skus.decrement();
+            units.add(-quantity);
+            addValue(id, -(long) quantity, price);
+        }
+
+        void addValue(Entry e, long quantity) {
+            addValue(e.stripe, quantity, e.price);
+        }
+
+        private void addValue(String id, long quantity, long price) {
+            addValue(stripeOf(id), quantity, price);
+        }
+
+        private void addValue(int stripe, long quantity, long price) {
+            Money.Sum sum = value[stripe];
+            synchronized (sum) {
+                sum.add(quantity, price);
+            }
+        }
+
+        SupplierRollup snapshot() {
+            Money.Sum total = new Money.Sum();
+            for (Money.Sum sum : value) {
+                synchronized (sum) {
+                    total.merge(sum);
+                }
+            }
+            return new SupplierRollup(supplierId, (int) skus.sum(), units.sum(), total.toBigDecimal());
+        }
+    }
+
+    private static int stripeOf(String id) {
+        int h = id.hashCode();
+        return (h ^ (h >>> 16)) & (VALUE_STRIPES - 1);
+    }
+}
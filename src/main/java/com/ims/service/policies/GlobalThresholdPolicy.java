@@ -3,15 +3,13 @@ package com.ims.service.policies;
 import com.ims.model.Item;
 import com.ims.service.InventoryService;
 
-public final class GlobalThresholdPolicy implements InventoryService.LowStockPolicy {
+public final class GlobalThresholdPolicy implements InventoryService.ThresholdPolicy {
 
-    private final int threshold;
+    private volatile int threshold;
+    private volatile long version;
 
     public GlobalThresholdPolicy(int threshold) {
-        if (threshold < 0) {
-            throw new IllegalArgumentException("threshold must be >= 0");
-        }
-        this.threshold = threshold;
+        setThreshold(threshold);
     }
 
     @Override
@@ -22,8 +20,32 @@ public final class GlobalThresholdPolicy implements InventoryService.LowStockPol
         return item.getQuantity() < threshold;
     }
 
+    @Override
+    public int maxLowQuantity() {
+        return threshold - 1;
+    }
+
+    @Override
+    public int thresholdFor(String id, String supplier) {
+        return threshold;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
     public int threshold() {
         return threshold;
     }
 
+    /** Takes effect for the next low-stock query. */
+    public synchronized void setThreshold(int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("threshold must be >= 0");
+        }
+        this.threshold = threshold;
+        version++;
+    }
+
 }
@@ -0,0 +1,98 @@
+package com.ims.service.policies;
+
+import com.ims.service.InventoryService;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Low-stock thresholds at three levels: a per-SKU threshold wins over a
+ * per-supplier one, which wins over the global default. Every level can be
+ * changed at runtime; the next low-stock query picks the change up.
+ */
+public final class TieredThresholdPolicy implements InventoryService.ThresholdPolicy {
+
+    private final Map<String, Integer> bySku = new ConcurrentHashMap<>();
+    private final Map<String, Integer> bySupplier = new ConcurrentHashMap<>();
+    private volatile int globalThreshold;
+    private volatile int maxThreshold;
+    private volatile long version;
+
+    public TieredThresholdPolicy(int globalThreshold) {
+        setGlobalThreshold(globalThreshold);
+    }
+
+    @Override
+    public int thresholdFor(String id, String supplier) {
+        Integer t;
+        if (id != null && !bySku.isEmpty() && (t = bySku.get(id)) != null)
+            return t;
+        if (supplier != null && !bySupplier.isEmpty() && (t = bySupplier.get(supplier)) != null)
+            return t;
+        return globalThreshold;
+    }
+
+    @Override
+    public int maxLowQuantity() {
+        return maxThreshold - 1;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    public int globalThreshold() {
+        return globalThreshold;
+    }
+
+    public synchronized void setGlobalThreshold(int threshold) {
+        checkThreshold(threshold);
+        globalThreshold = threshold;
+        changed();
+    }
+
+    public synchronized void setSupplierThreshold(String supplier, int threshold) {
+        checkThreshold(threshold);
+        bySupplier.put(requireKey(supplier, "supplier"), threshold);
+        changed();
+    }
+
+    public synchronized void clearSupplierThreshold(String supplier) {
+        if (supplier != null && bySupplier.remove(supplier) != null)
+            changed();
+    }
+
+    public synchronized void setSkuThreshold(String id, int threshold) {
+        checkThreshold(threshold);
+        bySku.put(requireKey(id, "id"), threshold);
+        changed();
+    }
+
+    public synchronized void clearSkuThreshold(String id) {
+        if (id != null && bySku.remove(id) != null)
+            changed();
+    }
+
+    /** Recomputes the largest threshold and publishes a new version. Caller holds this. */
+    private void changed() {
+        int max = globalThreshold;
+        for (int t : bySupplier.values())
+            max = Math.max(max, t);
+        for (int t : bySku.values())
+            max = Math.max(max, t);
+        maxThreshold = max;
+        version++;
+    }
+
+    private static void checkThreshold(int threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("threshold must be >= 0");
+    }
+
+    private static String requireKey(String key, String what) {
+        if (key == null || key.isBlank())
+            throw new IllegalArgumentException(what + " is required");
+        return key;
+    }
+}
@@ -0,0 +1,161 @@
+package com.ims.service.report;
+
+import com.ims.model.Item;
+import com.ims.model.Money;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+/**
+ * Valuation and distribution reports, each one parallel reduction over a
+ * stream of items: the stream's spliterator partitions the items across the
+ * common fork-join pool, every partition folds into its own accumulator and
+ * the accumulators are merged pairwise.
+ *
+ * Money is summed exactly with {@link Money.Sum}, so the result is the same
+ * however the work was split. Top-N keeps a bounded heap per partition
+ * instead of sorting everything.
+ */
+public final class InventoryReports {
+
+    /** Highest stock value first, then by id. */
+    private static final Comparator<Ranked> BY_VALUE = (a, b) -> compare(a.item, a.value, b.item, b.value);
+
+    private InventoryReports() {
+    }
+
+    /** Sum of quantity x price over all items. */
+    public static BigDecimal totalValue(Stream<Item> items) {
+        return items.parallel()
+                .collect(Collector.of(Money.Sum::new, InventoryReports::add, Money.Sum::merge, Money.Sum::toBigDecimal));
+    }
+
+    /** Stock value per supplier, ordered by supplier. */
+    public static Map<String, BigDecimal> valueBySupplier(Stream<Item> items) {
+        Map<String, Money.Sum> sums = items.parallel().collect(Collector.of(
+                HashMap::new,
+                (Map<String, Money.Sum> m, Item it) -> add(m.computeIfAbsent(it.getSupplier(), k -> new Money.Sum()), it),
+                (a, b) -> {
+                    b.forEach((supplier, sum) -> a.merge(supplier, sum, Money.Sum::merge));
+                    return a;
+                }));
+        Map<String, BigDecimal> result = new TreeMap<>();
+        sums.forEach((supplier, sum) -> result.put(supplier, sum.toBigDecimal()));
+        return result;
+    }
+
+    /** The n items with the highest stock value, highest first; ties by id. */
+    public static List<Item> topByValue(Stream<Item> items, int n) {
+        if (n <= 0)
+            return List.of();
+        return items.parallel().collect(Collector.of(
+                () -> new TopN(n), TopN::add, TopN::merge, TopN::sorted));
+    }
+
+    /**
+     * Item counts per quantity range of bucketWidth; quantities from
+     * {@code (bucketCount - 1) * bucketWidth} up share the last bucket.
+     */
+    public static QuantityHistogram quantityHistogram(Stream<Item> items, int bucketWidth, int bucketCount) {
+        if (bucketWidth <= 0)
+            throw new IllegalArgumentException("bucketWidth must be > 0");
+        if (bucketCount <= 0)
+            throw new IllegalArgumentException("bucketCount must be > 0");
+        long[] counts = items.parallel().collect(Collector.of(
+                () -> new long[bucketCount],
+                (long[] c, Item it) -> c[Math.min(bucketCount - 1, it.getQuantity() / bucketWidth)]++,
+                (a, b) -> {
+                    for (int i = 0; i < a.length; i++)
+                        a[i] += b[i];
+                    return a;
+                }));
+        return new QuantityHistogram(bucketWidth, counts);
+    }
+
+    /** Exact stock value of one item, to {@link Money#SCALE} decimal places. */
+    public static BigDecimal valueOf(Item item) {
+        return Money.valueOf(item.getQuantity(), item.getPrice());
+    }
+
+    private static void add(Money.Sum sum, Item item) {
+        sum.add(item.getQuantity(), Money.scaled(item.getPrice()));
+    }
+
+    /** Scaled value, or Long.MAX_VALUE if it does not fit. */
+    private static long scaledValue(Item item) {
+        try {
+            return Math.multiplyExact((long) item.getQuantity(), Money.scaled(item.getPrice()));
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /** {@link #BY_VALUE} on unboxed pairs; values saturated at Long.MAX_VALUE are compared exactly. */
+    private static int compare(Item a, long aValue, Item b, long bValue) {
+        int c = aValue == Long.MAX_VALUE && bValue == Long.MAX_VALUE
+                ? valueOf(b).compareTo(valueOf(a))
+                : Long.compare(bValue, aValue);
+        return c != 0 ? c : a.getId().compareTo(b.getId());
+    }
+
+    private static final class Ranked {
+        final Item item;
+        final long value;
+
+        Ranked(Item item, long value) {
+            this.item = item;
+            this.value = value;
+        }
+    }
+
+    /** The best n items seen, in a heap whose head is the worst of them. */
+    private static final class TopN {
+        private final int n;
+        private final PriorityQueue<Ranked> heap;
+
+        TopN(int n) {
+            this.n = n;
+            this.heap = new PriorityQueue<>(Math.min(n, 1024), BY_VALUE.reversed());
+        }
+
+        void add(Item item) {
+            long value = scaledValue(item);
+            // Most items lose to the current worst; reject them before allocating
+            if (heap.size() == n && compare(item, value, heap.peek().item, heap.peek().value) >= 0)
+                return;
+            offer(new Ranked(item, value));
+        }
+
+        void offer(Ranked r) {
+            if (heap.size() < n) {
+                heap.add(r);
+            } else if (BY_VALUE.compare(r, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(r);
+            }
+        }
+
+        TopN merge(TopN other) {
+            for (Ranked r : other.heap)
+                offer(r);
+            return this;
+        }
+
+        List<Item> sorted() {
+            List<Ranked> ranked = new ArrayList<>(heap);
+            ranked.sort(BY_VALUE);
+            List<Item> result = new ArrayList<>(ranked.size());
+            for (Ranked r : ranked)
+                result.add(r.item);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.ims.service.report;
+
+import java.util.Arrays;
+
+/**
+ * Item counts per quantity range. Bucket i covers quantities
+ * {@code [i * bucketWidth, (i + 1) * bucketWidth)}; the last bucket is open
+ * ended and also holds everything above.
+ */
+public final class QuantityHistogram {
+
+    private final int bucketWidth;
+    private final long[] counts;
+
+    QuantityHistogram(int bucketWidth, long[] counts) {
+        this.bucketWidth = bucketWidth;
+        this.counts = counts;
+    }
+
+    public int bucketWidth() {
+        return bucketWidth;
+    }
+
+    public int bucketCount() {
+        return counts.length;
+    }
+
+    public long count(int bucket) {
+        return counts[bucket];
+    }
+
+    /** Smallest quantity in bucket. */
+    public int lowerBound(int bucket) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) bucket * bucketWidth);
+    }
+
+    /** First quantity after bucket, or Integer.MAX_VALUE for the open-ended last bucket. */
+    public int upperBound(int bucket) {
+        return bucket == counts.length - 1
+                ? Integer.MAX_VALUE
+                : (int) Math.min(Integer.MAX_VALUE, (long) (bucket + 1) * bucketWidth);
+    }
+
+    /** Number of items counted. */
+    public long total() {
+        long total = 0;
+        for (long c : counts)
+            total += c;
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantityHistogram{bucketWidth=" + bucketWidth + ", counts=" + Arrays.toString(counts) + "}";
+    }
+}
@@ -0,0 +1,107 @@
+package com.ims.concurrency;
+
+import com.ims.io.CsvInventoryStorage;
+import com.ims.model.Item;
+import com.ims.repository.InMemoryInventoryRepository;
+import com.ims.service.InventoryService;
+import com.ims.service.InventoryServiceImpl;
+import com.ims.service.policies.GlobalThresholdPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress test for concurrent adjustStock calls. Every thread tracks the
+ * deltas the service accepted; at the end each item's quantity must equal its
+ * starting quantity plus the sum of accepted deltas, otherwise an update was
+ * lost. Most traffic goes to a single hot SKU that starts at zero, so the
+ * "no negative quantity" rule is exercised under contention as well.
+ */
+class AdjustStockStressTest {
+
+    private static final int THREADS = 16;
+    private static final int OPS_PER_THREAD = 20_000;
+    private static final int COLD_ITEMS = 256;
+    private static final int HOT_PERCENT = 80;
+    private static final String HOT_ID = "HOT";
+
+    @Test
+    void concurrentAdjustmentsAreNeverLost() throws InterruptedException {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        InventoryService service = new InventoryServiceImpl(repo, new CsvInventoryStorage(),
+                new GlobalThresholdPolicy(10));
+
+        List<String> ids = new ArrayList<>();
+        ids.add(HOT_ID);
+        service.addItem(new Item(HOT_ID, "Hot item", 0, 1.0, "Stress"));
+        for (int i = 0; i < COLD_ITEMS; i++) {
+            String id = "COLD-" + i;
+            ids.add(id);
+            service.addItem(new Item(id, "Cold item " + i, 1_000, 1.0, "Stress"));
+        }
+
+        // accepted[i] = sum of deltas the service reported as applied to ids.get(i)
+        AtomicLong[] accepted = new AtomicLong[ids.size()];
+        for (int i = 0; i < accepted.length; i++)
+            accepted[i] = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long[] local = new long[ids.size()];
+                long localRejected = 0;
+                try {
+                    start.await();
+                    for (int op = 0; op < OPS_PER_THREAD; op++) {
+                        int idx = rnd.nextInt(100) < HOT_PERCENT ? 0 : 1 + rnd.nextInt(COLD_ITEMS);
+                        int delta = rnd.nextBoolean() ? rnd.nextInt(1, 6) : -rnd.nextInt(1, 6);
+                        InventoryService.Result<Item> r = service.adjustStock(ids.get(idx), delta);
+                        if (r.isOk()) {
+                            local[idx] += delta;
+                            if (r.value().getQuantity() < 0)
+                                throw new IllegalStateException("negative quantity observed");
+                        } else {
+                            localRejected++;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    for (int i = 0; i < local.length; i++)
+                        accepted[i].addAndGet(local[i]);
+                    rejected.addAndGet(localRejected);
+                    done.countDown();
+                }
+            }, "stress-" + t);
+            worker.start();
+        }
+
+        start.countDown();
+        assertTrue(done.await(2, TimeUnit.MINUTES), "workers did not finish");
+        assertNull(failure.get());
+
+        for (int i = 0; i < ids.size(); i++) {
+            long initial = i == 0 ? 0 : 1_000;
+            assertEquals(initial + accepted[i].get(), repo.findById(ids.get(i)).orElseThrow().getQuantity(),
+                    "lost update on " + ids.get(i));
+        }
+        // The hot item starts empty, so some withdrawals must have been refused
+        assertTrue(rejected.get() > 0);
+    }
+}
@@ -0,0 +1,192 @@
+package com.ims.concurrency;
+
+import com.ims.io.CsvInventoryStorage;
+import com.ims.model.Item;
+import com.ims.model.MovementType;
+import com.ims.model.StockMovement;
+import com.ims.repository.InMemoryInventoryRepository;
+import com.ims.service.InventoryService;
+import com.ims.service.InventoryServiceImpl;
+import com.ims.service.policies.GlobalThresholdPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RealTimeStockUpdaterTest {
+
+    private static final ThreadFactory DAEMONS = r -> {
+        Thread t = new Thread(r, "updater-test");
+        t.setDaemon(true);
+        return t;
+    };
+
+    @Test
+    void keepsSubmissionOrderPerItem() throws InterruptedException {
+        InventoryService service = newService(8, 1_000);
+        List<StockMovement> seen = Collections.synchronizedList(new ArrayList<>());
+        InventoryService recording = recording(service, seen);
+
+        Map<String, List<StockMovement>> submitted = new HashMap<>();
+        try (RealTimeStockUpdater updater = new RealTimeStockUpdater(recording, 3, 64,
+                RealTimeStockUpdater.Backpressure.BLOCK, DAEMONS)) {
+            updater.start();
+            for (int i = 0; i < 2_000; i++) {
+                StockMovement m = movement("I" + (i % 8), (i % 5) + 1);
+                submitted.computeIfAbsent(m.itemId(), k -> new ArrayList<>()).add(m);
+                updater.submit(m);
+            }
+        }
+
+        Map<String, List<StockMovement>> applied = new HashMap<>();
+        for (StockMovement m : seen)
+            applied.computeIfAbsent(m.itemId(), k -> new ArrayList<>()).add(m);
+        for (Map.Entry<String, List<StockMovement>> e : submitted.entrySet()) {
+            // Compared by identity: records with equal fields could hide a reordering
+            List<StockMovement> order = applied.get(e.getKey());
+            assertEquals(e.getValue().size(), order.size());
+            for (int i = 0; i < order.size(); i++)
+                assertTrue(e.getValue().get(i) == order.get(i), e.getKey() + " out of order at " + i);
+        }
+    }
+
+    @Test
+    void appliesQueuedMovementsAsOneBatch() throws InterruptedException {
+        InventoryService service = newService(1, 0);
+        RealTimeStockUpdater updater = new RealTimeStockUpdater(service, 1, 16,
+                RealTimeStockUpdater.Backpressure.BLOCK, DAEMONS);
+        // Queued before the worker starts, so it drains both at once: the
+        // dip below zero is netted out instead of failing the first movement
+        updater.submit(movement("I0", -5));
+        updater.submit(movement("I0", 10));
+        updater.start();
+        updater.close();
+
+        assertEquals(5, service.getById("I0").orElseThrow().getQuantity());
+        assertEquals(2, updater.appliedCount());
+        assertEquals(0, updater.failedCount());
+    }
+
+    @Test
+    void countsEveryMovementOfARefusedItemAsFailed() throws InterruptedException {
+        InventoryService service = newService(1, 3);
+        RealTimeStockUpdater updater = new RealTimeStockUpdater(service, 1, 16,
+                RealTimeStockUpdater.Backpressure.BLOCK, DAEMONS);
+        updater.submit(movement("I0", -2));
+        updater.submit(movement("I0", -2));
+        updater.submit(movement("MISSING", 1));
+        updater.start();
+        updater.close();
+
+        assertEquals(3, service.getById("I0").orElseThrow().getQuantity());
+        assertEquals(0, updater.appliedCount());
+        assertEquals(3, updater.failedCount());
+    }
+
+    @Test
+    void dropDiscardsWhenThePartitionIsFull() throws InterruptedException {
+        RealTimeStockUpdater updater = new RealTimeStockUpdater(newService(1, 0), 1, 1,
+                RealTimeStockUpdater.Backpressure.DROP, DAEMONS);
+        assertTrue(updater.submit(movement("I0", 1)));
+        assertFalse(updater.submit(movement("I0", 1)));
+        assertEquals(1, updater.droppedCount());
+        assertEquals(1, updater.queueDepth());
+    }
+
+    @Test
+    void rejectThrowsWhenThePartitionIsFull() throws InterruptedException {
+        RealTimeStockUpdater updater = new RealTimeStockUpdater(newService(1, 0), 1, 1,
+                RealTimeStockUpdater.Backpressure.REJECT, DAEMONS);
+        updater.submit(movement("I0", 1));
+        assertThrows(RejectedExecutionException.class, () -> updater.submit(movement("I0", 1)));
+        assertEquals(1, updater.rejectedCount());
+        assertEquals(1, updater.queueDepth());
+    }
+
+    @Test
+    void blockWaitsForSpace() throws InterruptedException {
+        InventoryService service = newService(1, 0);
+        RealTimeStockUpdater updater = new RealTimeStockUpdater(service, 1, 1,
+                RealTimeStockUpdater.Backpressure.BLOCK, DAEMONS);
+        updater.submit(movement("I0", 1));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                updater.submit(movement("I0", 2));
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive(), "submit returned while the partition was full");
+
+        updater.start();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        assertNull(failure.get());
+        updater.close();
+        assertEquals(3, service.getById("I0").orElseThrow().getQuantity());
+    }
+
+    @Test
+    void closeDrainsWhatIsQueuedAndStopsIntake() throws InterruptedException {
+        InventoryService service = newService(4, 0);
+        RealTimeStockUpdater updater = new RealTimeStockUpdater(service, 2, 10_000,
+                RealTimeStockUpdater.Backpressure.BLOCK, DAEMONS);
+        updater.start();
+        for (int i = 0; i < 4_000; i++)
+            updater.submit(movement("I" + (i % 4), 1));
+        updater.close();
+
+        assertTrue(updater.isTerminated());
+        assertEquals(0, updater.queueDepth());
+        assertEquals(4_000, updater.appliedCount());
+        for (int i = 0; i < 4; i++)
+            assertEquals(1_000, service.getById("I" + i).orElseThrow().getQuantity());
+        assertThrows(RejectedExecutionException.class, () -> updater.submit(movement("I0", 1)));
+    }
+
+    private static InventoryService newService(int items, int quantity) {
+        InventoryService service = new InventoryServiceImpl(new InMemoryInventoryRepository(),
+                new CsvInventoryStorage(), new GlobalThresholdPolicy(10));
+        for (int i = 0; i < items; i++)
+            service.addItem(new Item("I" + i, "Item " + i, quantity, 1.0, "Acme"));
+        return service;
+    }
+
+    /** The service, with every movement handed to applyMovements appended to seen. */
+    @SuppressWarnings("unchecked")
+    private static InventoryService recording(InventoryService service, List<StockMovement> seen) {
+        return (InventoryService) Proxy.newProxyInstance(InventoryService.class.getClassLoader(),
+                new Class<?>[] { InventoryService.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("applyMovements"))
+                        seen.addAll((List<StockMovement>) args[0]);
+                    try {
+                        return method.invoke(service, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static StockMovement movement(String id, int change) {
+        return new StockMovement(id, change, change > 0 ? MovementType.INBOUND : MovementType.OUTBOUND,
+                "TEST", null);
+    }
+}
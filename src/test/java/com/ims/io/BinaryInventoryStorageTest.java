@@ -0,0 +1,67 @@
+package com.ims.io;
+
+import com.ims.model.Item;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryInventoryStorageTest {
+
+    @TempDir
+    Path dir;
+
+    private final BinaryInventoryStorage storage = new BinaryInventoryStorage();
+
+    @Test
+    void roundTripsItemsAndInfo() throws IOException {
+        String file = dir.resolve("inventory.ims").toString();
+        List<Item> items = List.of(
+                new Item("A-1", "Widget", 12, 0.1 + 0.2, "Acme"),
+                new Item("B-2", "Grüner Bolzen", 0, 3.5, "Bolt Co"),
+                new Item("C-3", "Gadget", Integer.MAX_VALUE, 0.0, "Acme"));
+        SnapshotInfo info = SnapshotInfo.at(42, 7);
+        storage.saveAll(items, file, info);
+
+        List<Item> loaded = storage.loadAll(file);
+        assertEquals(items.size(), loaded.size());
+        for (int i = 0; i < items.size(); i++)
+            assertSameFields(items.get(i), loaded.get(i));
+        assertEquals(info, storage.readInfo(file));
+    }
+
+    @Test
+    void loadsInChunksInFileOrder() throws IOException {
+        String file = dir.resolve("inventory.ims").toString();
+        List<Item> items = List.of(new Item("A", "a", 1, 1, "S"), new Item("B", "b", 2, 2, "S"),
+                new Item("C", "c", 3, 3, "S"));
+        storage.saveAll(items, file);
+        StringBuilder ids = new StringBuilder();
+        assertEquals(3, storage.loadInChunks(file, 2, chunk -> chunk.forEach(it -> ids.append(it.getId()))));
+        assertEquals("ABC", ids.toString());
+    }
+
+    @Test
+    void detectsCorruptedHeader() throws IOException {
+        Path file = dir.resolve("inventory.ims");
+        storage.saveAll(List.of(new Item("A", "a", 1, 1, "S")), file.toString(), SnapshotInfo.at(1, 1));
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[20] ^= 1; // inside the log id
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> storage.loadAll(file.toString()));
+    }
+
+    static void assertSameFields(Item expected, Item actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getQuantity(), actual.getQuantity());
+        assertEquals(Double.doubleToRawLongBits(expected.getPrice()), Double.doubleToRawLongBits(actual.getPrice()));
+        assertEquals(expected.getSupplier(), actual.getSupplier());
+    }
+}
@@ -0,0 +1,76 @@
+package com.ims.io;
+
+import com.ims.model.Item;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvInventoryStorageTest {
+
+    @TempDir
+    Path dir;
+
+    private final CsvInventoryStorage storage = new CsvInventoryStorage();
+
+    @Test
+    void parallelLoadMatchesSequentialLoadWithQuotedFields() throws IOException {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            // Every record spans several lines, so most raw line breaks are inside quotes
+            String name = i % 3 == 0 ? "Widget " + i : "Widget, \"size " + i + "\"\nline two\nline three";
+            String supplier = i % 2 == 0 ? "Acme" : "Acme,\n\"East\"";
+            items.add(new Item("ID-" + i, name, i, i / 4.0, supplier));
+        }
+        String file = dir.resolve("inventory.csv").toString();
+        storage.saveAll(items, file, SnapshotInfo.detached());
+
+        List<Item> sequential = new ArrayList<>();
+        storage.loadInChunks(file, 100, sequential::addAll);
+        assertEquals(fields(items), fields(sequential));
+        for (int segments : new int[] { 1, 7, 64, 997 }) {
+            List<Item> parallel = new ArrayList<>();
+            long count = storage.loadParallel(file, segments, ForkJoinPool.commonPool(), parallel::addAll);
+            assertEquals(items.size(), count);
+            assertEquals(fields(sequential), fields(parallel), segments + " segments");
+        }
+    }
+
+    @Test
+    void parallelLoadKeepsFileOrderForDuplicateIds() throws IOException {
+        Path file = dir.resolve("dups.csv");
+        StringBuilder csv = new StringBuilder("ID, Name, Quantity, Price, Supplier\n");
+        for (int i = 0; i < 500; i++)
+            csv.append("A,\"Widget\n").append(i).append("\",").append(i).append(",1.0,Acme\n");
+        Files.writeString(file, csv);
+
+        List<Item> parallel = new ArrayList<>();
+        storage.loadParallel(file.toString(), 16, ForkJoinPool.commonPool(), parallel::addAll);
+        assertEquals(500, parallel.size());
+        for (int i = 0; i < 500; i++)
+            assertEquals(i, parallel.get(i).getQuantity());
+    }
+
+    @Test
+    void parallelLoadReportsMalformedRecords() throws IOException {
+        Path file = dir.resolve("broken.csv");
+        Files.writeString(file, "ID, Name, Quantity, Price, Supplier\nA,Widget,1,1.0,Acme\nB,\"Bolt,2,1.0,Acme\n");
+        assertThrows(IOException.class,
+                () -> storage.loadParallel(file.toString(), 4, ForkJoinPool.commonPool(), items -> { }));
+    }
+
+    private static List<String> fields(List<Item> items) {
+        List<String> result = new ArrayList<>(items.size());
+        for (Item it : items)
+            result.add(it.getId() + "|" + it.getName() + "|" + it.getQuantity() + "|" + it.getPrice() + "|" + it.getSupplier());
+        return result;
+    }
+}
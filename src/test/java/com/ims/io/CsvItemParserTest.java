@@ -0,0 +1,100 @@
+package com.ims.io;
+
+import com.ims.model.Item;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvItemParserTest {
+
+    @Test
+    void quotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        List<Item> items = parseItems("A,\"Widget, large\",1,2.5,\"Acme \"\"East\"\"\"\n"
+                + "\"B\",\"Bolt\nM8\",3,0.5,Acme\n"
+                + "C,\"Cog\",4,1,\"\"\"\"\n");
+
+        assertEquals(3, items.size());
+        assertEquals("Widget, large", items.get(0).getName());
+        assertEquals("Acme \"East\"", items.get(0).getSupplier());
+        assertEquals("B", items.get(1).getId());
+        assertEquals("Bolt\nM8", items.get(1).getName());
+        assertEquals(3, items.get(1).getQuantity());
+        assertEquals("Cog", items.get(2).getName());
+        assertEquals("\"", items.get(2).getSupplier());
+    }
+
+    @Test
+    void quotedFieldSplitAcrossChunksIsParsedOnceComplete() throws IOException {
+        byte[] csv = "A,\"Widget, \"\"large\"\"\",1,2.5,Acme\n".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.wrap(csv);
+        List<Item> items = new ArrayList<>();
+        for (int cut = 1; cut < csv.length; cut++) {
+            items.clear();
+            CsvItemParser parser = new CsvItemParser(1);
+            int next = parser.parse(buf, 0, cut, false, items::add);
+            parser.parse(buf, next, csv.length, true, items::add);
+            assertEquals(1, items.size(), "cut at " + cut);
+            assertEquals("Widget, \"large\"", items.get(0).getName());
+        }
+    }
+
+    @Test
+    void rejectsTextAfterAClosingQuote() {
+        IOException e = assertThrows(IOException.class, () -> parseItems("A,\"Widget\"x,1,2.5,Acme\n"));
+        assertTrue(e.getMessage().contains("line 1"), e.getMessage());
+    }
+
+    @Test
+    void carriageReturnAtEndOfInputEndsTheLine() throws IOException {
+        assertEquals(List.of("A", "B"), parse("A,Widget,1,2.5,Acme\r\nB,Bolt,3,0.5,Acme\r"));
+        assertEquals(List.of("A", "B"), parse("A,Widget,1,2.5,Acme\r\nB,Bolt,3,0.5,\"Acme\"\r"));
+        assertEquals(List.of("A"), parse("A,Widget,1,2.5,Acme\r\n\r"));
+    }
+
+    @Test
+    void carriageReturnAtChunkEndWaitsForMoreInput() throws IOException {
+        byte[] csv = "A,Widget,1,2.5,\"Acme\"\r\nB,Bolt,3,0.5,Acme\r\n".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.wrap(csv);
+        CsvItemParser parser = new CsvItemParser(1);
+        List<String> ids = new ArrayList<>();
+        int cr = indexOf(csv, (byte) '\r') + 1;
+        int next = parser.parse(buf, 0, cr, false, it -> ids.add(it.getId()));
+        assertEquals(0, next);
+        next = parser.parse(buf, next, csv.length, true, it -> ids.add(it.getId()));
+        assertEquals(csv.length, next);
+        assertEquals(List.of("A", "B"), ids);
+    }
+
+    private static List<Item> parseItems(String csv) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8));
+        List<Item> items = new ArrayList<>();
+        new CsvItemParser(1).parse(buf, 0, buf.limit(), true, items::add);
+        return items;
+    }
+
+    private static List<String> parse(String csv) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8));
+        List<String> ids = new ArrayList<>();
+        new CsvItemParser(1).parse(buf, 0, buf.limit(), true, (Item it) -> {
+            ids.add(it.getId());
+            assertEquals("Acme", it.getSupplier());
+        });
+        return ids;
+    }
+
+    private static int indexOf(byte[] bytes, byte b) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == b)
+                return i;
+        }
+        return -1;
+    }
+}
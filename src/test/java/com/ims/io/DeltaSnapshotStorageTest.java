@@ -0,0 +1,82 @@
+package com.ims.io;
+
+import com.ims.model.Item;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeltaSnapshotStorageTest {
+
+    @TempDir
+    Path dir;
+
+    private final BinaryInventoryStorage binary = new BinaryInventoryStorage();
+    private final DeltaSnapshotStorage deltas = new DeltaSnapshotStorage(new CsvInventoryStorage(), binary);
+
+    @Test
+    void appliesDeltasOfTheBaseGenerationInOrder() throws IOException {
+        String base = dir.resolve("inventory.ims").toString();
+        SnapshotInfo info = SnapshotInfo.at(9, 10);
+        binary.saveAll(List.of(new Item("A", "a", 1, 1, "S"), new Item("B", "b", 2, 2, "S")), base, info);
+        deltas.writeDelta(base, withSequence(info, 12), List.of(new Item("A", "a", 5, 1, "S")), List.of("B"));
+        deltas.writeDelta(base, withSequence(info, 15), List.of(new Item("C", "c", 3, 3, "S")), List.of());
+
+        Map<String, Item> state = load(base);
+        SnapshotInfo position = deltas.applyDeltas(base, info, it -> state.put(it.getId(), it), state::remove);
+
+        assertEquals(List.of("A", "C"), List.copyOf(state.keySet()));
+        assertEquals(5, state.get("A").getQuantity());
+        assertEquals(15, position.logSequence());
+    }
+
+    @Test
+    void ignoresDeltasOfAnotherGeneration() throws IOException {
+        String base = dir.resolve("inventory.ims").toString();
+        SnapshotInfo old = SnapshotInfo.at(9, 10);
+        deltas.writeDelta(base, withSequence(old, 12), List.of(new Item("X", "x", 1, 1, "S")), List.of("A"));
+        SnapshotInfo current = SnapshotInfo.at(9, 12);
+        binary.saveAll(List.of(new Item("A", "a", 1, 1, "S")), base, current);
+
+        Map<String, Item> state = load(base);
+        SnapshotInfo position = deltas.applyDeltas(base, current, it -> state.put(it.getId(), it), state::remove);
+
+        assertEquals(List.of("A"), List.copyOf(state.keySet()));
+        assertEquals(current, position);
+    }
+
+    @Test
+    void compactFoldsDeltasIntoANewGeneration() throws IOException {
+        String base = dir.resolve("inventory.ims").toString();
+        SnapshotInfo info = SnapshotInfo.at(9, 10);
+        binary.saveAll(List.of(new Item("A", "a", 1, 1, "S")), base, info);
+        deltas.writeDelta(base, withSequence(info, 11), List.of(new Item("B", "b", 2, 2, "S")), List.of("A"));
+
+        assertEquals(1, deltas.compact(base));
+
+        assertTrue(deltas.deltasFor(base).isEmpty());
+        SnapshotInfo compacted = binary.readInfo(base);
+        assertNotEquals(info.generation(), compacted.generation());
+        assertEquals(11, compacted.logSequence());
+        assertEquals(List.of("B"), List.copyOf(load(base).keySet()));
+    }
+
+    private Map<String, Item> load(String base) throws IOException {
+        Map<String, Item> state = new LinkedHashMap<>();
+        for (Item it : binary.loadAll(base))
+            state.put(it.getId(), it);
+        return state;
+    }
+
+    private static SnapshotInfo withSequence(SnapshotInfo info, long sequence) {
+        return new SnapshotInfo(info.generation(), info.logId(), sequence);
+    }
+}
@@ -0,0 +1,68 @@
+package com.ims.io;
+
+import com.ims.model.MovementType;
+import com.ims.model.StockMovement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovementHistoryStoreTest {
+
+    private static final Instant T0 = Instant.parse("2026-01-01T00:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void answersWindowQueriesAcrossSegmentsAndTheBuffer() throws IOException {
+        try (MovementHistoryStore store = new MovementHistoryStore(dir, Duration.ofHours(1), 2)) {
+            store.append(at("A", 10, 0));
+            store.append(at("B", 4, 1));
+            store.append(at("A", -3, 90)); // next partition
+            store.append(at("A", 2, 200));  // still buffered
+
+            assertEquals(9, store.netChange("A", T0, T0.plusSeconds(3600 * 5)));
+            assertEquals(-1, store.netChange("A", T0.plusSeconds(60), T0.plusSeconds(3600 * 5)));
+            assertEquals(0, store.netChange("missing", T0, T0.plusSeconds(60)));
+            assertEquals(List.of(10, -3), store.movements("A", T0, T0.plusSeconds(100 * 60)).stream()
+                    .map(StockMovement::quantityChange).toList());
+            assertEquals(4L, store.netChangeByItem(T0, T0.plusSeconds(3600)).get("B"));
+        }
+    }
+
+    @Test
+    void keepsRowsAcrossReopen() throws IOException {
+        try (MovementHistoryStore store = new MovementHistoryStore(dir)) {
+            store.appendAll(List.of(at("A", 1, 0), at("A", 2, 1)));
+        }
+        try (MovementHistoryStore store = new MovementHistoryStore(dir)) {
+            assertEquals(3, store.netChange("A", T0, T0.plusSeconds(3600)));
+        }
+    }
+
+    @Test
+    void netChangeSinceMarkCountsLateAndBackdatedRows() throws IOException {
+        try (MovementHistoryStore store = new MovementHistoryStore(dir)) {
+            store.append(at("A", 5, 0));
+            store.append(at("A", 7, 30)); // recorded before the mark, stamped after "to"
+            long mark = store.mark();
+            store.append(at("A", 2, 10)); // recorded after the mark, stamped before "to"
+            store.append(at("A", 100, 40));
+
+            // Quantity at mark held 5 + 7; as of minute 20 it was 5 + 2
+            assertEquals(-5, store.netChangeSinceMark("A", mark, T0.plusSeconds(20 * 60)));
+            assertEquals(-5, store.netChangeSinceMarkLookup(mark, T0.plusSeconds(20 * 60)).applyAsLong("A"));
+        }
+    }
+
+    private static StockMovement at(String itemId, int change, int minutes) {
+        return new StockMovement(itemId, change, MovementType.ADJUSTMENT, T0.plusSeconds(minutes * 60L), "REF", null);
+    }
+}
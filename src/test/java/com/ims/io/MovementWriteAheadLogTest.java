@@ -0,0 +1,123 @@
+package com.ims.io;
+
+import com.ims.model.MovementType;
+import com.ims.model.StockMovement;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovementWriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysAppendedMovementsInOrderAfterReopen() throws IOException {
+        Path file = dir.resolve("movements.wal");
+        long id;
+        try (MovementWriteAheadLog log = new MovementWriteAheadLog(file)) {
+            log.append(movement("A", 5));
+            log.appendAll(List.of(movement("B", -2), movement("A", 3)));
+            id = log.id();
+            assertEquals(3, log.lastSequence());
+        }
+        try (MovementWriteAheadLog log = new MovementWriteAheadLog(file)) {
+            assertEquals(id, log.id());
+            assertEquals(3, log.lastSequence());
+            List<StockMovement> replayed = new ArrayList<>();
+            assertEquals(3, log.replay(replayed::add));
+            assertEquals(List.of("A", "B", "A"), replayed.stream().map(StockMovement::itemId).toList());
+            assertEquals(List.of(5, -2, 3), replayed.stream().map(StockMovement::quantityChange).toList());
+        }
+    }
+
+    @Test
+    void replayAfterSkipsRecordsUpToTheSequence() throws IOException {
+        try (MovementWriteAheadLog log = new MovementWriteAheadLog(dir.resolve("movements.wal"))) {
+            for (int i = 1; i <= 5; i++)
+                log.append(movement("A", i));
+            List<Integer> replayed = new ArrayList<>();
+            assertEquals(2, log.replayAfter(3, m -> replayed.add(m.quantityChange())));
+            assertEquals(List.of(4, 5), replayed);
+        }
+    }
+
+    @Test
+    void discardThroughKeepsLaterRecordsAndNumbering() throws IOException {
+        Path file = dir.resolve("movements.wal");
+        try (MovementWriteAheadLog log = new MovementWriteAheadLog(file)) {
+            for (int i = 1; i <= 4; i++)
+                log.append(movement("A", i));
+            log.discardThrough(2);
+            log.append(movement("A", 5));
+            assertEquals(5, log.lastSequence());
+        }
+        try (MovementWriteAheadLog log = new MovementWriteAheadLog(file)) {
+            List<Integer> replayed = new ArrayList<>();
+            log.replay(m -> replayed.add(m.quantityChange()));
+            assertEquals(List.of(3, 4, 5), replayed);
+            replayed.clear();
+            log.replayAfter(4, m -> replayed.add(m.quantityChange()));
+            assertEquals(List.of(5), replayed);
+        }
+    }
+
+    @Test
+    void separateLogsHaveDifferentIds() throws IOException {
+        try (MovementWriteAheadLog a = new MovementWriteAheadLog(dir.resolve("a.wal"));
+                MovementWriteAheadLog b = new MovementWriteAheadLog(dir.resolve("b.wal"))) {
+            assertNotEquals(a.id(), b.id());
+        }
+    }
+
+    @Test
+    void loneAppenderDoesNotWaitOutTheWindow() throws IOException {
+        try (MovementWriteAheadLog log = new MovementWriteAheadLog(dir.resolve("movements.wal"),
+                Duration.ofSeconds(5))) {
+            long start = System.nanoTime();
+            for (int i = 0; i < 3; i++)
+                log.append(movement("A", i + 1));
+            assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos(),
+                    "appends waited for the group-commit window");
+            assertEquals(3, log.syncCount());
+        }
+    }
+
+    @Test
+    void concurrentAppendersShareSyncs() throws Exception {
+        try (MovementWriteAheadLog log = new MovementWriteAheadLog(dir.resolve("movements.wal"),
+                Duration.ofMillis(20))) {
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 5; i++)
+                            log.append(movement("A", i + 1));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads)
+                thread.join();
+            assertEquals(40, log.recordCount());
+            assertTrue(log.syncCount() < 40, "syncs: " + log.syncCount());
+        }
+    }
+
+    private static StockMovement movement(String itemId, int change) {
+        return new StockMovement(itemId, change, MovementType.ADJUSTMENT, "REF", null);
+    }
+}
@@ -0,0 +1,95 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CachingInventoryRepositoryTest {
+
+    @Test
+    void writeThroughReachesTheBackendAndCachesReads() {
+        InMemoryInventoryRepository backend = new InMemoryInventoryRepository();
+        try (CachingInventoryRepository cache = new CachingInventoryRepository(backend, 10)) {
+            cache.save(new Item("A", "Widget", 5, 1.0, "Acme"));
+            assertEquals(5, backend.findById("A").orElseThrow().getQuantity());
+
+            cache.findById("A");
+            long hits = cache.hitCount();
+            assertEquals(5, cache.findById("A").orElseThrow().getQuantity());
+            assertEquals(hits + 1, cache.hitCount());
+
+            cache.deleteById("A");
+            assertFalse(backend.existsById("A"));
+            assertFalse(cache.findById("A").isPresent());
+        }
+    }
+
+    @Test
+    void writeBehindDefersWritesUntilFlushed() {
+        InMemoryInventoryRepository backend = new InMemoryInventoryRepository();
+        backend.save(new Item("OLD", "Old", 1, 1.0, "Acme"));
+        try (CachingInventoryRepository cache = new CachingInventoryRepository(backend,
+                CachingInventoryRepository.Sizing.ENTRIES, 10, CachingInventoryRepository.Eviction.TINY_LFU,
+                CachingInventoryRepository.WriteMode.WRITE_BEHIND, java.time.Duration.ofHours(1))) {
+            cache.save(new Item("A", "Widget", 5, 1.0, "Acme"));
+            cache.adjustQuantity("A", 2);
+            cache.deleteById("OLD");
+
+            // Reads see the pending writes before the backend does
+            assertEquals(7, cache.findById("A").orElseThrow().getQuantity());
+            assertFalse(cache.existsById("OLD"));
+            assertTrue(cache.pendingWrites() > 0);
+            assertFalse(backend.existsById("A"));
+
+            cache.flush();
+            assertEquals(0, cache.pendingWrites());
+            Item stored = backend.findById("A").orElseThrow();
+            assertEquals(7, stored.getQuantity());
+            assertEquals(cache.findById("A").orElseThrow().getVersion(), stored.getVersion());
+            assertFalse(backend.existsById("OLD"));
+        }
+    }
+
+    @Test
+    void writeBehindReplaceAllRemovesPendingWritesFromListeners() {
+        InMemoryInventoryRepository backend = new InMemoryInventoryRepository();
+        backend.save(new Item("OLD", "Old", 1, 1.0, "Acme"));
+        backend.save(new Item("GONE", "Gone", 1, 1.0, "Acme"));
+        try (CachingInventoryRepository cache = new CachingInventoryRepository(backend,
+                CachingInventoryRepository.Sizing.ENTRIES, 10, CachingInventoryRepository.Eviction.LRU,
+                CachingInventoryRepository.WriteMode.WRITE_BEHIND, java.time.Duration.ofHours(1))) {
+            java.util.Map<String, Item> mirror = new java.util.HashMap<>();
+            for (Item item : cache.findAll())
+                mirror.put(item.getId(), item);
+            cache.addChangeListener((before, after) -> {
+                if (before != null)
+                    assertTrue(mirror.remove(before.getId()) != null, "removed unseen " + before.getId());
+                if (after != null)
+                    mirror.put(after.getId(), after);
+            });
+
+            cache.save(new Item("A", "Widget", 5, 1.0, "Acme"));
+            cache.deleteById("GONE");
+            cache.replaceAll(java.util.List.of(new Item("B", "Bolt", 3, 1.0, "Acme")));
+
+            assertEquals(java.util.Set.of("B"), mirror.keySet());
+            assertEquals(0, cache.pendingWrites());
+            assertFalse(backend.existsById("A"));
+        }
+    }
+
+    @Test
+    void evictsBeyondTheEntryLimit() {
+        InMemoryInventoryRepository backend = new InMemoryInventoryRepository();
+        for (int i = 0; i < 1_000; i++)
+            backend.save(new Item("I" + i, "Item", i, 1.0, "Acme"));
+        try (CachingInventoryRepository cache = new CachingInventoryRepository(backend, 32)) {
+            for (int i = 0; i < 1_000; i++)
+                assertEquals(i, cache.findById("I" + i).orElseThrow().getQuantity());
+            assertTrue(cache.evictionCount() > 0);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnarInventoryRepositoryTest {
+
+    @Test
+    void storesAndUpdatesItems() {
+        ColumnarInventoryRepository repo = new ColumnarInventoryRepository();
+        repo.save(new Item("A", "Widget", 5, 2.5, "Acme"));
+        repo.save(new Item("B", "Bügeleisen", 1, 19.99, "Globex"));
+
+        Item a = repo.findById("A").orElseThrow();
+        assertEquals("Widget", a.getName());
+        assertEquals(5, a.getQuantity());
+        assertEquals(2.5, a.getPrice());
+        assertEquals("Acme", a.getSupplier());
+        assertEquals("Bügeleisen", repo.findById("B").orElseThrow().getName());
+        assertTrue(repo.existsById("B"));
+        assertFalse(repo.existsById("C"));
+        assertEquals(2, repo.size());
+
+        // Saving an existing id rewrites its slot and moves its version
+        repo.save(new Item("A", "Widget Pro", 7, 3.0, "Globex"));
+        Item updated = repo.findById("A").orElseThrow();
+        assertEquals("Widget Pro", updated.getName());
+        assertEquals(7, updated.getQuantity());
+        assertEquals("Globex", updated.getSupplier());
+        assertTrue(updated.getVersion() > a.getVersion());
+        assertEquals(2, repo.size());
+    }
+
+    @Test
+    void computeIfPresentUpdatesInPlace() {
+        ColumnarInventoryRepository repo = new ColumnarInventoryRepository();
+        repo.save(new Item("A", "Widget", 5, 1.0, "Acme"));
+
+        Item next = repo.computeIfPresent("A", it -> it.withQuantity(it.getQuantity() + 3)).orElseThrow();
+        assertEquals(8, next.getQuantity());
+        assertEquals(next.getVersion(), repo.findById("A").orElseThrow().getVersion());
+        assertFalse(repo.computeIfPresent("MISSING", it -> it).isPresent());
+        assertThrows(IllegalArgumentException.class,
+                () -> repo.computeIfPresent("A", it -> new Item("B", "Other", 1, 1.0, "Acme")));
+        assertEquals(8, repo.findById("A").orElseThrow().getQuantity());
+    }
+
+    @Test
+    void reusesTheSlotsOfDeletedItems() {
+        ColumnarInventoryRepository repo = new ColumnarInventoryRepository(16);
+        for (int i = 0; i < 16; i++)
+            repo.save(new Item("I" + i, "Item " + i, i, 1.0, "Acme"));
+        for (int i = 0; i < 16; i += 2)
+            repo.deleteById("I" + i);
+        assertEquals(8, repo.size());
+        for (int i = 0; i < 16; i += 2)
+            assertFalse(repo.findById("I" + i).isPresent());
+
+        for (int i = 0; i < 8; i++)
+            repo.save(new Item("N" + i, "New " + i, 100 + i, 1.0, "Globex"));
+        assertEquals(16, repo.size());
+        for (int i = 1; i < 16; i += 2)
+            assertEquals(i, repo.findById("I" + i).orElseThrow().getQuantity());
+        for (int i = 0; i < 8; i++)
+            assertEquals("New " + i, repo.findById("N" + i).orElseThrow().getName());
+        assertEquals(16, repo.findAll().size());
+    }
+
+    @Test
+    void findAllIsSharedUntilTheNextWrite() {
+        ColumnarInventoryRepository repo = new ColumnarInventoryRepository();
+        repo.save(new Item("A", "Widget", 5, 1.0, "Acme"));
+        List<Item> first = repo.findAll();
+        assertSame(first, repo.findAll());
+
+        repo.adjustQuantity("A", 2);
+        List<Item> second = repo.findAll();
+        assertNotSame(first, second);
+        assertEquals(7, second.get(0).getQuantity());
+
+        repo.save(new Item("A", "Widget", 1, 1.0, "Acme"));
+        assertEquals(1, repo.findAll().get(0).getQuantity());
+        repo.deleteById("A");
+        assertTrue(repo.findAll().isEmpty());
+    }
+
+    @Test
+    void listenersSeeEveryWrite() {
+        ColumnarInventoryRepository repo = new ColumnarInventoryRepository();
+        repo.save(new Item("OLD", "Old", 1, 1.0, "Acme"));
+        Map<String, Integer> mirror = new HashMap<>();
+        mirror.put("OLD", 1);
+        AtomicInteger quantityEvents = new AtomicInteger();
+        repo.addChangeListener(new InventoryChangeListener() {
+            @Override
+            public void onChange(Item before, Item after) {
+                if (before != null)
+                    assertEquals(before.getQuantity(), mirror.remove(before.getId()));
+                if (after != null)
+                    mirror.put(after.getId(), after.getQuantity());
+            }
+
+            @Override
+            public void onQuantityChange(String id, int before, int after) {
+                quantityEvents.incrementAndGet();
+                assertEquals(before, mirror.put(id, after));
+            }
+
+            @Override
+            public boolean handlesQuantityChanges() {
+                return true;
+            }
+        });
+
+        SplittableRandom random = new SplittableRandom(5);
+        for (int i = 0; i < 5_000; i++) {
+            String id = "I" + random.nextInt(50);
+            switch (random.nextInt(4)) {
+                case 0 -> repo.save(new Item(id, "Name " + random.nextInt(10), random.nextInt(100), 1.0, "Acme"));
+                case 1 -> repo.computeIfPresent(id, it -> it.withQuantity(random.nextInt(100)));
+                case 2 -> repo.adjustQuantity(id, 1);
+                default -> repo.deleteById(id);
+            }
+        }
+        assertTrue(quantityEvents.get() > 0);
+        assertMirrors(mirror, repo);
+
+        repo.replaceAll(List.of(new Item("R", "Replaced", 3, 1.0, "Acme")));
+        assertEquals(Map.of("R", 3), mirror);
+        assertMirrors(mirror, repo);
+    }
+
+    @Test
+    void findsItemsAtOrBelowAQuantity() {
+        ColumnarInventoryRepository repo = new ColumnarInventoryRepository();
+        for (int i = 0; i < 20; i++)
+            repo.save(new Item("I" + i, "Item", i, 1.0, "Acme"));
+        repo.deleteById("I2");
+        List<Item> low = repo.findByQuantityAtOrBelow(4);
+        assertEquals(4, low.size());
+        assertTrue(low.stream().allMatch(it -> it.getQuantity() <= 4 && !it.getId().equals("I2")));
+    }
+
+    private static void assertMirrors(Map<String, Integer> mirror, ColumnarInventoryRepository repo) {
+        assertEquals(mirror.size(), repo.size());
+        for (Map.Entry<String, Integer> e : mirror.entrySet())
+            assertEquals(e.getValue(), repo.findById(e.getKey()).orElseThrow().getQuantity());
+    }
+}
@@ -0,0 +1,184 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryInventoryRepositoryTest {
+
+    @Test
+    void readersNeverSeeAHalfReplacedStore() throws InterruptedException {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        List<Item> a = items("A", 2_000);
+        List<Item> b = items("B", 2_000);
+        repo.replaceAll(a);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (!done.get() && failure.get() == null) {
+                // Uncached reads copy the map, so a replace in progress would show
+                repo.save(new Item("X", "X", 1, 1.0, "Acme"));
+                String prefix = null;
+                for (Item it : repo.findAll()) {
+                    String p = it.getId().substring(0, 1);
+                    if (p.equals("X"))
+                        continue;
+                    if (prefix == null)
+                        prefix = p;
+                    else if (!p.equals(prefix))
+                        failure.set("mixed contents: " + prefix + " and " + it.getId());
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 200; i++)
+            repo.replaceAll(i % 2 == 0 ? b : a);
+        done.set(true);
+        reader.join();
+        assertNull(failure.get());
+    }
+
+    @Test
+    void replaceAllTellsListenersOfEveryRemovalAndAddition() {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        repo.save(new Item("A", "Widget", 1, 1.0, "Acme"));
+        List<String> events = new ArrayList<>();
+        repo.addChangeListener((before, after) ->
+                events.add((before == null ? "-" : before.getId()) + ">" + (after == null ? "-" : after.getId())));
+
+        repo.replaceAll(List.of(new Item("A", "Widget", 2, 1.0, "Acme"), new Item("B", "Bolt", 3, 1.0, "Acme")));
+
+        assertEquals(List.of("A>-", "->A", "->B"), events);
+        assertEquals(1, repo.findById("A").orElseThrow().version());
+    }
+
+    @Test
+    void listenersStayInStepWithWritesRacingReplaceAll() throws InterruptedException {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        Map<String, Item> mirror = new ConcurrentHashMap<>();
+        repo.addChangeListener((before, after) -> {
+            if (after == null)
+                mirror.remove(before.getId());
+            else
+                mirror.put(after.getId(), after);
+        });
+        List<Item> base = items("A", 200);
+        repo.replaceAll(base);
+
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            Thread w = new Thread(() -> {
+                int i = seed;
+                while (!done.get()) {
+                    String id = "A" + (i % 200);
+                    if (i % 3 == 0)
+                        repo.save(new Item("W" + seed + "-" + (i % 50), "New", 1, 1.0, "Acme"));
+                    else if (i % 3 == 1)
+                        repo.adjustQuantity(id, 1);
+                    else
+                        repo.deleteById(id);
+                    i += 4;
+                }
+            });
+            writers.add(w);
+            w.start();
+        }
+        for (int i = 0; i < 200; i++)
+            repo.replaceAll(base);
+        done.set(true);
+        for (Thread w : writers)
+            w.join();
+
+        assertEquals(repo.size(), mirror.size());
+        for (Item it : repo.findAll())
+            assertEquals(it.getQuantity(), mirror.get(it.getId()).getQuantity());
+    }
+
+    @Test
+    void sortedViewsFollowUpdatesAndDeletes() {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        SplittableRandom random = new SplittableRandom(12);
+        for (int i = 0; i < 300; i++)
+            repo.save(randomItem("I" + i, random));
+        // Build every view first, so the writes below must maintain them
+        for (SortOrder order : SortOrder.values())
+            repo.sorted(order);
+
+        for (int i = 0; i < 2_000; i++) {
+            String id = "I" + random.nextInt(400);
+            switch (random.nextInt(3)) {
+                case 0 -> repo.save(randomItem(id, random));
+                case 1 -> repo.adjustQuantity(id, random.nextInt(-5, 6));
+                default -> repo.deleteById(id);
+            }
+        }
+
+        for (SortOrder order : SortOrder.values()) {
+            List<Item> expected = new ArrayList<>(repo.findAll());
+            expected.sort(order.comparator());
+            List<Item> actual = repo.sorted(order).next(Integer.MAX_VALUE);
+            assertEquals(ids(expected), ids(actual), order.name());
+            for (int i = 0; i < actual.size(); i++)
+                assertEquals(expected.get(i).getQuantity(), actual.get(i).getQuantity(), order.name());
+        }
+    }
+
+    @Test
+    void cursorPagesResumeAfterTheLastItemSeen() {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        for (int i = 0; i < 10; i++)
+            repo.save(new Item("I" + i, "Item " + i, 100 - i, 1.0, "Acme"));
+
+        ItemCursor cursor = repo.sortByQuantityAscending();
+        List<Item> first = cursor.next(4);
+        assertEquals(List.of("I9", "I8", "I7", "I6"), ids(first));
+
+        // An item written behind the cursor is not revisited; one ahead of it shows up
+        repo.adjustQuantity("I9", 1_000);
+        repo.adjustQuantity("I0", -99);
+        assertEquals(List.of("I5", "I4", "I3", "I2"), ids(cursor.next(4)));
+        assertEquals(List.of("I1", "I9"), ids(cursor.next(4)));
+        assertFalse(cursor.hasNext());
+        assertTrue(cursor.next(4).isEmpty());
+
+        // A new cursor resumes from a page a client kept
+        ItemCursor resumed = repo.sortByQuantityAscending().seekAfter(first.get(3));
+        assertEquals(List.of("I5", "I4"), ids(resumed.next(2)));
+        // I0 now sorts first
+        assertEquals(List.of("I4", "I3"), ids(repo.sortByQuantityAscending().page(5, 2)));
+    }
+
+    private static Item randomItem(String id, SplittableRandom random) {
+        return new Item(id, "Name " + random.nextInt(40), random.nextInt(50),
+                random.nextInt(1, 1_000) / 10.0, "S" + random.nextInt(5));
+    }
+
+    private static List<String> ids(List<Item> items) {
+        List<String> ids = new ArrayList<>(items.size());
+        for (Item it : items)
+            ids.add(it.getId());
+        return ids;
+    }
+
+    private static List<Item> items(String prefix, int n) {
+        List<Item> items = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            items.add(new Item(prefix + i, prefix + i, 1, 1.0, "Acme"));
+        return items;
+    }
+}
@@ -0,0 +1,71 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/** The version contract, checked against every repository. */
+class ItemVersionTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void inMemory() {
+        checkVersions(new InMemoryInventoryRepository());
+    }
+
+    @Test
+    void columnar() {
+        checkVersions(new ColumnarInventoryRepository());
+    }
+
+    @Test
+    void mapped() throws IOException {
+        try (MappedInventoryRepository repo = new MappedInventoryRepository(dir)) {
+            checkVersions(repo);
+        }
+    }
+
+    @Test
+    void cachedWriteBehind() {
+        try (CachingInventoryRepository repo = new CachingInventoryRepository(new InMemoryInventoryRepository(),
+                CachingInventoryRepository.Sizing.ENTRIES, 100, CachingInventoryRepository.Eviction.LRU,
+                CachingInventoryRepository.WriteMode.WRITE_BEHIND)) {
+            checkVersions(repo);
+        }
+    }
+
+    private static void checkVersions(InventoryRepository repo) {
+        repo.save(new Item("A", "Widget", 5, 1.0, "Acme"));
+        Item first = repo.findById("A").orElseThrow();
+        assertEquals(1, first.getVersion());
+
+        assertEquals(8, repo.adjustQuantity("A", 3));
+        assertEquals(2, repo.findById("A").orElseThrow().getVersion());
+
+        // A copy read before the adjustment is refused and nothing is written
+        VersionConflictException e = assertThrows(VersionConflictException.class,
+                () -> repo.compareAndSave(first.withQuantity(0)));
+        assertEquals(1, e.expectedVersion());
+        assertEquals(2, e.actualVersion());
+        assertEquals(8, repo.findById("A").orElseThrow().getQuantity());
+
+        Item current = repo.findById("A").orElseThrow();
+        Item stored = repo.compareAndSave(current.withQuantity(0)).orElseThrow();
+        assertEquals(3, stored.getVersion());
+        assertEquals(0, repo.findById("A").orElseThrow().getQuantity());
+
+        // A plain save never moves the version backwards
+        repo.saveAll(List.of(new Item("A", "Widget", 1, 1.0, "Acme")));
+        assertEquals(4, repo.findById("A").orElseThrow().getVersion());
+        assertEquals(InventoryRepository.REJECTED, repo.adjustQuantity("A", -2));
+    }
+}
@@ -0,0 +1,77 @@
+package com.ims.repository;
+
+import com.ims.model.Item;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedInventoryRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reusesStringSpaceOfRenamedAndDeletedItems() throws IOException {
+        Map<String, Item> expected = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(3);
+        try (MappedInventoryRepository repo = new MappedInventoryRepository(dir)) {
+            // About 20 MB of names in total, but never more than ~100 KB live
+            for (int i = 0; i < 100_000; i++) {
+                String id = "I" + random.nextInt(500);
+                if (random.nextInt(10) == 0) {
+                    repo.deleteById(id);
+                    expected.remove(id);
+                } else {
+                    Item it = new Item(id, "n".repeat(1 + random.nextInt(400)) + i, 1, 1.0, "S" + random.nextInt(5));
+                    repo.save(it);
+                    expected.put(id, it);
+                }
+            }
+            assertMatches(expected, repo);
+        }
+        assertEquals(1L << 24, Files.size(dir.resolve(MappedInventoryRepository.STRINGS_FILE)));
+        try (MappedInventoryRepository repo = new MappedInventoryRepository(dir)) {
+            assertMatches(expected, repo);
+            repo.computeIfPresent(expected.keySet().iterator().next(), it -> it.withUpdatedDetails("Renamed", null, null));
+        }
+        try (MappedInventoryRepository repo = new MappedInventoryRepository(dir)) {
+            assertTrue(repo.findAll().stream().anyMatch(it -> it.getName().equals("Renamed")));
+        }
+    }
+
+    @Test
+    void refusesASlotPointingPastTheStrings() throws IOException {
+        try (MappedInventoryRepository repo = new MappedInventoryRepository(dir)) {
+            repo.save(new Item("A", "Widget", 1, 1.0, "Acme"));
+        }
+        try (FileChannel ch = FileChannel.open(dir.resolve(MappedInventoryRepository.SLOTS_FILE),
+                StandardOpenOption.WRITE)) {
+            ByteBuffer offset = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, 1L << 20);
+            ch.write(offset, 64 + 16); // first slot's string offset
+        }
+        assertThrows(IOException.class, () -> new MappedInventoryRepository(dir));
+    }
+
+    private static void assertMatches(Map<String, Item> expected, MappedInventoryRepository repo) {
+        assertEquals(expected.size(), repo.size());
+        for (Item e : expected.values()) {
+            Item actual = repo.findById(e.getId()).orElseThrow();
+            assertEquals(e.getName(), actual.getName());
+            assertEquals(e.getSupplier(), actual.getSupplier());
+        }
+    }
+}
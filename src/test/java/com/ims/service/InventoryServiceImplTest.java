@@ -0,0 +1,281 @@
+package com.ims.service;
+
+import com.ims.io.CsvInventoryStorage;
+import com.ims.io.MovementHistoryStore;
+import com.ims.io.MovementWriteAheadLog;
+import com.ims.model.Item;
+import com.ims.model.MovementType;
+import com.ims.model.StockMovement;
+import com.ims.repository.ColumnarInventoryRepository;
+import com.ims.repository.InMemoryInventoryRepository;
+import com.ims.repository.InventoryRepository;
+import com.ims.service.InventoryService.BatchResult;
+import com.ims.service.InventoryService.Result;
+import com.ims.service.policies.GlobalThresholdPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InventoryServiceImplTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void adjustStockRejectsNegativeAndOverflowingResultsWithTheirOwnMessages() {
+        InventoryService service = newService(new InMemoryInventoryRepository());
+        service.addItem(new Item("A", "Widget", 5, 1.0, "Acme"));
+
+        Result<Item> negative = service.adjustStock("A", -6);
+        assertFalse(negative.isOk());
+        assertEquals("Adjustment would produce negative quantity", negative.message());
+
+        Result<Item> overflow = service.adjustStock("A", Integer.MAX_VALUE);
+        assertFalse(overflow.isOk());
+        assertTrue(overflow.message().contains("maximum quantity"), overflow.message());
+
+        assertEquals(5, service.getById("A").orElseThrow().getQuantity());
+    }
+
+    @Test
+    void applyMovementsReportsEachItemsOutcome() {
+        InventoryService service = newService(new InMemoryInventoryRepository());
+        service.addItem(new Item("A", "Widget", 5, 1.0, "Acme"));
+        service.addItem(new Item("B", "Bolt", 1, 1.0, "Acme"));
+        service.addItem(new Item("C", "Cog", Integer.MAX_VALUE - 1, 1.0, "Acme"));
+
+        BatchResult result = service.applyMovements(List.of(movement("A", 3), movement("B", -2),
+                movement("C", 2), movement("missing", 1), movement("A", -1)));
+
+        assertEquals(BatchResult.Status.APPLIED, statusOf(result, "A"));
+        assertEquals(BatchResult.Status.NEGATIVE_QUANTITY, statusOf(result, "B"));
+        assertEquals(BatchResult.Status.QUANTITY_OVERFLOW, statusOf(result, "C"));
+        assertEquals(BatchResult.Status.NOT_FOUND, statusOf(result, "missing"));
+        assertEquals(7, service.getById("A").orElseThrow().getQuantity());
+    }
+
+    @Test
+    void loadAllReplaysMovementsLoggedAfterTheSnapshot() throws IOException {
+        String file = dir.resolve("inventory.ims").toString();
+        Path wal = dir.resolve("movements.wal");
+        try (MovementWriteAheadLog log = new MovementWriteAheadLog(wal)) {
+            InventoryService service = newService(new InMemoryInventoryRepository(), log);
+            service.addItem(new Item("A", "Widget", 5, 1.0, "Acme"));
+            assertTrue(service.applyMovement(movement("A", 2)).isOk());
+            assertTrue(service.saveAll(file).isOk());
+            assertTrue(service.applyMovement(movement("A", -4)).isOk());
+        }
+        try (MovementWriteAheadLog log = new MovementWriteAheadLog(wal)) {
+            InventoryService service = newService(new InMemoryInventoryRepository(), log);
+            assertTrue(service.loadAll(file).isOk());
+            assertEquals(3, service.getById("A").orElseThrow().getQuantity());
+        }
+    }
+
+    @Test
+    void loadAllOfABrokenFileLeavesTheInventoryAsItWas() throws IOException {
+        Path file = dir.resolve("broken.csv");
+        Files.writeString(file, "id,name,quantity,price,supplier\nB,Bolt,3,0.5,Acme\nC,Cog,not-a-number,1.0,Acme\n");
+        InventoryService service = newService(new InMemoryInventoryRepository());
+        service.addItem(new Item("A", "Widget", 5, 1.0, "Acme"));
+
+        assertThrows(IOException.class, () -> service.loadAll(file.toString()));
+
+        assertEquals(List.of("A"), service.listAll().stream().map(Item::getId).toList());
+    }
+
+    @Test
+    void loadAllParallelMatchesLoadAll() throws IOException {
+        String file = dir.resolve("inventory.csv").toString();
+        InventoryService source = newService(new InMemoryInventoryRepository());
+        for (int i = 0; i < 1_000; i++)
+            source.addItem(new Item("ID-" + i, "Widget, \"" + i + "\"\nsecond line", i, 1.5, "Acme"));
+        assertTrue(source.saveAll(file).isOk());
+
+        InventoryService sequential = newService(new InMemoryInventoryRepository());
+        InventoryService parallel = newService(new InMemoryInventoryRepository());
+        parallel.addItem(new Item("OLD", "Replaced", 1, 1.0, "Acme"));
+        assertTrue(sequential.loadAll(file).isOk());
+        assertTrue(parallel.loadAllParallel(file).isOk());
+
+        assertEquals(fields(sequential.listAll()), fields(parallel.listAll()));
+        assertEquals(1_000, parallel.listAll().size());
+        assertFalse(parallel.getById("OLD").isPresent());
+    }
+
+    @Test
+    void loadAllParallelOfABrokenFileLeavesTheInventoryAsItWas() throws IOException {
+        Path file = dir.resolve("broken.csv");
+        Files.writeString(file, "id,name,quantity,price,supplier\nB,Bolt,3,0.5,Acme\nC,Cog,not-a-number,1.0,Acme\n");
+        InventoryService service = newService(new InMemoryInventoryRepository());
+        service.addItem(new Item("A", "Widget", 5, 1.0, "Acme"));
+
+        assertThrows(IOException.class, () -> service.loadAllParallel(file.toString()));
+
+        assertEquals(List.of("A"), service.listAll().stream().map(Item::getId).toList());
+    }
+
+    @Test
+    void movementsThatCannotBeLoggedAreAppliedWithAWarning() throws IOException {
+        MovementWriteAheadLog log = new MovementWriteAheadLog(dir.resolve("movements.wal"));
+        InventoryService service = newService(new InMemoryInventoryRepository(), log);
+        service.addItem(new Item("A", "Widget", 5, 1.0, "Acme"));
+        log.close();
+
+        Result<Item> single = service.applyMovement(movement("A", 1));
+        assertTrue(single.isOk());
+        assertTrue(single.message().contains("not logged"), single.message());
+
+        BatchResult batch = service.applyMovements(List.of(movement("A", 2), movement("A", 3)));
+        assertEquals(BatchResult.Status.APPLIED, statusOf(batch, "A"));
+        assertTrue(batch.warning().contains("not logged"), batch.warning());
+        assertEquals(11, service.getById("A").orElseThrow().getQuantity());
+    }
+
+    @Test
+    void listPageWalksEveryItemOnceWhileItemsAreDeleted() {
+        for (InventoryRepository repo : List.of(new InMemoryInventoryRepository(), new ColumnarInventoryRepository())) {
+            InventoryService service = new InventoryServiceImpl(repo, new CsvInventoryStorage(),
+                    new GlobalThresholdPolicy(5));
+            for (int i = 0; i < 30; i++)
+                service.addItem(new Item(String.format("I%02d", i), "Item", i, 1.0, "Acme"));
+
+            List<String> seen = new ArrayList<>();
+            String after = null;
+            for (int round = 0; ; round++) {
+                List<Item> page = service.listPage(after, 7);
+                if (page.isEmpty())
+                    break;
+                for (Item it : page)
+                    seen.add(it.getId());
+                after = page.get(page.size() - 1).getId();
+                // The id a client resumes from is gone, and so is one further on
+                service.deleteById(after);
+                if (round < 2)
+                    service.deleteById(round == 0 ? "I12" : "I22");
+            }
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                String id = String.format("I%02d", i);
+                if (!List.of("I12", "I22").contains(id))
+                    expected.add(id);
+            }
+            assertEquals(expected, seen, repo.getClass().getSimpleName());
+            assertTrue(service.listPage("I29", 7).isEmpty());
+        }
+    }
+
+    @Test
+    void streamAllAndListAllAreSnapshots() {
+        InventoryService service = newService(new InMemoryInventoryRepository());
+        service.addItem(new Item("A", "Widget", 1, 1.0, "Acme"));
+        service.addItem(new Item("B", "Bolt", 2, 1.0, "Acme"));
+
+        List<Item> listed = service.listAll();
+        assertSame(listed, service.listAll());
+        java.util.stream.Stream<Item> stream = service.streamAll();
+        service.deleteById("A");
+        service.addItem(new Item("C", "Cog", 3, 1.0, "Acme"));
+
+        assertEquals(List.of("A", "B"), stream.map(Item::getId).sorted().toList());
+        assertEquals(2, listed.size());
+        assertEquals(List.of("B", "C"), service.listAll().stream().map(Item::getId).sorted().toList());
+    }
+
+    @Test
+    void asOfReadsAgreeAcrossCheckpoints() throws IOException {
+        Instant now = Instant.now();
+        Instant t1 = now.minusSeconds(3 * 3600);
+        Instant t2 = now.minusSeconds(2 * 3600);
+        Instant t3 = now.minusSeconds(3600);
+        try (MovementHistoryStore history = new MovementHistoryStore(dir.resolve("history"));
+                InventoryService service = new InventoryServiceImpl(new InMemoryInventoryRepository(),
+                        new CsvInventoryStorage(), new GlobalThresholdPolicy(5), null, history)) {
+            service.addItem(new Item("A", "Widget", 10, 1.0, "Acme"));
+            service.addItem(new Item("B", "Bolt", 5, 1.0, "Acme"));
+            assertTrue(service.getById("A", now).isEmpty()); // no checkpoint yet
+            assertTrue(service.checkpoint().isOk());
+
+            service.applyMovement(movementAt("A", 5, t1));
+            service.applyMovement(movementAt("A", -3, t2));
+            service.applyMovement(movementAt("B", 4, t3));
+            Map<Instant, String> expected = new LinkedHashMap<>();
+            expected.put(t1.minusSeconds(60), "A=10 B=5");
+            expected.put(t1.plusSeconds(60), "A=15 B=5");
+            expected.put(t2.plusSeconds(60), "A=12 B=5");
+            expected.put(t3.plusSeconds(60), "A=12 B=9");
+            assertAsOf(service, expected);
+
+            // Both sides of the next checkpoint give the same answers
+            assertTrue(service.checkpoint().isOk());
+            assertAsOf(service, expected);
+
+            // Backdated after the checkpoint: counts by its stamp, once
+            service.applyMovement(movementAt("A", 100, t3.plusSeconds(1800)));
+            expected.put(t3.plusSeconds(2700), "A=112 B=9");
+            expected.put(now.plusSeconds(3600), "A=112 B=9");
+            assertAsOf(service, expected);
+            assertTrue(service.checkpoint().isOk());
+            assertAsOf(service, expected);
+        }
+    }
+
+    private static void assertAsOf(InventoryService service, Map<Instant, String> expected) {
+        for (Map.Entry<Instant, String> e : expected.entrySet()) {
+            Instant asOf = e.getKey();
+            String listed = service.listAll(asOf).stream()
+                    .map(it -> it.getId() + "=" + it.getQuantity())
+                    .collect(java.util.stream.Collectors.joining(" "));
+            assertEquals(e.getValue(), listed, "listAll as of " + asOf);
+            String byId = "A=" + service.getById("A", asOf).orElseThrow().getQuantity()
+                    + " B=" + service.getById("B", asOf).orElseThrow().getQuantity();
+            assertEquals(e.getValue(), byId, "getById as of " + asOf);
+        }
+    }
+
+    private static StockMovement movementAt(String itemId, int change, Instant at) {
+        return new StockMovement(itemId, change, MovementType.ADJUSTMENT, at, "REF", null);
+    }
+
+    private static InventoryService newService(InMemoryInventoryRepository repo) {
+        return newService(repo, null);
+    }
+
+    private static InventoryService newService(InMemoryInventoryRepository repo, MovementWriteAheadLog log) {
+        return new InventoryServiceImpl(repo, new CsvInventoryStorage(), new GlobalThresholdPolicy(5), log);
+    }
+
+    private static BatchResult.Status statusOf(BatchResult result, String itemId) {
+        for (int i = 0; i < result.size(); i++) {
+            if (result.itemId(i).equals(itemId))
+                return result.status(i);
+        }
+        throw new AssertionError("no result for " + itemId);
+    }
+
+    private static StockMovement movement(String itemId, int change) {
+        return new StockMovement(itemId, change, MovementType.ADJUSTMENT, "REF", null);
+    }
+
+    private static List<String> fields(List<Item> items) {
+        return items.stream()
+                .map(it -> it.getId() + "|" + it.getName() + "|" + it.getQuantity() + "|" + it.getPrice())
+                .sorted()
+                .toList();
+    }
+}
@@ -0,0 +1,158 @@
+package com.ims.service;
+
+import com.ims.io.CsvInventoryStorage;
+import com.ims.model.Item;
+import com.ims.model.LowStockEvent;
+import com.ims.repository.InMemoryInventoryRepository;
+import com.ims.service.policies.GlobalThresholdPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LowStockEventPublisherTest {
+
+    @Test
+    void deliversCrossingsToEverySubscriber() throws InterruptedException {
+        try (LowStockEventPublisher publisher = new LowStockEventPublisher(Duration.ofHours(1), 16)) {
+            Collector first = new Collector();
+            Collector second = new Collector();
+            publisher.subscribe(first);
+            publisher.subscribe(second);
+            first.awaitSubscribed();
+            second.awaitSubscribed();
+
+            publisher.crossed("A", true, 3);
+            publisher.flush();
+
+            for (Collector c : List.of(first, second)) {
+                LowStockEvent event = c.next();
+                assertEquals("A", event.itemId());
+                assertTrue(event.low());
+                assertEquals(3, event.quantity());
+            }
+            assertEquals(1, publisher.publishedEvents());
+        }
+    }
+
+    @Test
+    void coalescesCrossingsWithinOneWindow() throws InterruptedException {
+        try (LowStockEventPublisher publisher = new LowStockEventPublisher(Duration.ofHours(1), 16)) {
+            Collector c = new Collector();
+            publisher.subscribe(c);
+            c.awaitSubscribed();
+
+            // A went low and recovered: nothing to say. B went low twice over: one event, last state
+            publisher.crossed("A", true, 2);
+            publisher.crossed("A", false, 12);
+            publisher.crossed("B", true, 5);
+            publisher.crossed("B", false, 11);
+            publisher.crossed("B", true, 4);
+            publisher.flush();
+
+            LowStockEvent event = c.next();
+            assertEquals("B", event.itemId());
+            assertTrue(event.low());
+            assertEquals(4, event.quantity());
+            assertNull(c.events.poll(100, TimeUnit.MILLISECONDS));
+            assertEquals(1, publisher.publishedEvents());
+        }
+    }
+
+    @Test
+    void publishesOnceTheWindowEnds() throws InterruptedException {
+        try (LowStockEventPublisher publisher = new LowStockEventPublisher(Duration.ofMillis(20), 16)) {
+            Collector c = new Collector();
+            publisher.subscribe(c);
+            c.awaitSubscribed();
+
+            publisher.crossed("A", true, 1);
+            assertEquals("A", c.next().itemId()); // no flush: the window's flusher sends it
+        }
+    }
+
+    @Test
+    void closeSendsWhatIsPendingThenCompletes() throws InterruptedException {
+        LowStockEventPublisher publisher = new LowStockEventPublisher(Duration.ofHours(1), 16);
+        Collector c = new Collector();
+        publisher.subscribe(c);
+        c.awaitSubscribed();
+
+        publisher.crossed("A", true, 1);
+        publisher.close();
+
+        assertEquals("A", c.next().itemId());
+        assertTrue(c.completed.await(5, TimeUnit.SECONDS));
+        publisher.crossed("B", true, 1);
+        publisher.flush();
+        assertEquals(1, publisher.publishedEvents());
+    }
+
+    @Test
+    void serviceCloseCompletesLowStockSubscribers() throws InterruptedException {
+        InventoryService service = new InventoryServiceImpl(new InMemoryInventoryRepository(),
+                new CsvInventoryStorage(), new GlobalThresholdPolicy(10));
+        service.addItem(new Item("A", "Widget", 20, 1.0, "Acme"));
+        service.lowStock(); // resolve thresholds
+        Collector c = new Collector();
+        service.lowStockEvents().subscribe(c);
+        c.awaitSubscribed();
+
+        assertTrue(service.adjustStock("A", -15).isOk());
+        service.close();
+
+        LowStockEvent event = c.next();
+        assertEquals("A", event.itemId());
+        assertTrue(event.low());
+        assertEquals(5, event.quantity());
+        assertTrue(c.completed.await(5, TimeUnit.SECONDS));
+        assertNull(c.events.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    /** Requests everything and queues what arrives. */
+    private static final class Collector implements Flow.Subscriber<LowStockEvent> {
+        final BlockingQueue<LowStockEvent> events = new LinkedBlockingQueue<>();
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+            subscribed.countDown();
+        }
+
+        @Override
+        public void onNext(LowStockEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+
+        void awaitSubscribed() throws InterruptedException {
+            assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+        }
+
+        LowStockEvent next() throws InterruptedException {
+            LowStockEvent event = events.poll(5, TimeUnit.SECONDS);
+            assertTrue(event != null, "no event delivered");
+            return event;
+        }
+    }
+}
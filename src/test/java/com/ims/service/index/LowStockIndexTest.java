@@ -0,0 +1,61 @@
+package com.ims.service.index;
+
+import com.ims.model.Item;
+import com.ims.repository.InMemoryInventoryRepository;
+import com.ims.service.policies.TieredThresholdPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LowStockIndexTest {
+
+    @Test
+    void matchesAFullScanThroughWritesAndPolicyChanges() {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        TieredThresholdPolicy policy = new TieredThresholdPolicy(10);
+        policy.setSupplierThreshold("S1", 20);
+        LowStockIndex index = new LowStockIndex(repo::findById, policy);
+        repo.addChangeListener(index);
+
+        SplittableRandom random = new SplittableRandom(7);
+        for (int step = 0; step < 5_000; step++) {
+            String id = "I" + random.nextInt(200);
+            switch (random.nextInt(6)) {
+                case 0 -> repo.deleteById(id);
+                case 1 -> repo.save(new Item(id, "Name" + random.nextInt(50), random.nextInt(30), 1.0,
+                        "S" + random.nextInt(3)));
+                case 2 -> policy.setSkuThreshold(id, random.nextInt(25));
+                default -> repo.adjustQuantity(id, random.nextInt(-5, 6));
+            }
+            if (step % 250 == 0) {
+                assertEquals(expected(repo, policy), index.lowStock());
+                assertEquals(expected(repo, policy).size(), index.countLow());
+            }
+        }
+        assertEquals(expected(repo, policy), index.lowStock());
+    }
+
+    @Test
+    void seedKeepsNewerIndexedState() {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        LowStockIndex index = new LowStockIndex(repo::findById, new TieredThresholdPolicy(5));
+        repo.addChangeListener(index);
+        repo.save(new Item("A", "Widget", 1, 1.0, "S"));
+        index.seed(new Item("A", "Widget", 50, 1.0, "S"));
+        assertEquals(1, index.countLow());
+    }
+
+    private static List<Item> expected(InMemoryInventoryRepository repo, TieredThresholdPolicy policy) {
+        List<Item> low = new ArrayList<>();
+        for (Item it : repo.findAll()) {
+            if (policy.isLow(it))
+                low.add(it);
+        }
+        low.sort(LowStockIndex.ORDER);
+        return low;
+    }
+}
@@ -0,0 +1,52 @@
+package com.ims.service.index;
+
+import com.ims.model.Item;
+import com.ims.repository.InMemoryInventoryRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NameSearchIndexTest {
+
+    @Test
+    void followsRenamesAndDeletes() {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        NameSearchIndex index = new NameSearchIndex(repo::findById);
+        repo.addChangeListener(index);
+        index.finishSeeding();
+
+        repo.save(new Item("A", "Red Widget", 1, 1.0, "Acme"));
+        repo.save(new Item("B", "Blue Widget", 1, 1.0, "Acme"));
+        repo.save(new Item("A", "Red Bolt", 1, 1.0, "Acme"));
+        repo.deleteById("B");
+
+        assertEquals(List.of(), index.search("widget", 10));
+        assertEquals(List.of("A"), ids(index.search("bolt", 10)));
+        assertEquals(List.of("A"), ids(index.prefix("red", 10)));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void seedKeepsNewerNamesAndDoesNotResurrectDeletes() {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        NameSearchIndex index = new NameSearchIndex(repo::findById);
+        Item stale = new Item("A", "Old Name", 1, 1.0, "Acme");
+        index.onChange(stale, null); // deleted after the seeding snapshot was read
+        index.seed(stale);
+
+        repo.save(new Item("B", "New Name", 1, 1.0, "Acme"));
+        index.onChange(null, repo.findById("B").orElseThrow());
+        index.seed(new Item("B", "Old Name", 1, 1.0, "Acme")); // older than the indexed state
+        index.finishSeeding();
+
+        assertEquals(List.of(), index.search("old", 10));
+        assertEquals(List.of("B"), ids(index.search("new", 10)));
+        assertEquals(1, index.size());
+    }
+
+    private static List<String> ids(List<Item> items) {
+        return items.stream().map(Item::getId).toList();
+    }
+}
@@ -0,0 +1,63 @@
+package com.ims.service.index;
+
+import com.ims.model.Item;
+import com.ims.model.SupplierRollup;
+import com.ims.repository.InMemoryInventoryRepository;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SupplierIndexTest {
+
+    @Test
+    void keepsRollupsThroughWritesAndMoves() {
+        InMemoryInventoryRepository repo = new InMemoryInventoryRepository();
+        SupplierIndex index = new SupplierIndex();
+        repo.addChangeListener(index);
+        index.finishSeeding();
+
+        repo.save(new Item("A", "Widget", 10, 1.25, "Acme"));
+        repo.save(new Item("B", "Bolt", 4, 0.1, "Acme"));
+        repo.adjustQuantity("A", -3);
+        repo.save(new Item("B", "Bolt", 4, 0.1, "Bolt Co"));
+
+        SupplierRollup acme = index.rollup("Acme");
+        assertEquals(1, acme.skuCount());
+        assertEquals(7, acme.totalUnits());
+        assertEquals(new BigDecimal("8.7500"), acme.totalValue());
+        assertEquals(new BigDecimal("0.4000"), index.rollup("Bolt Co").totalValue());
+
+        repo.deleteById("A");
+        assertEquals(BigDecimal.ZERO.setScale(4), index.rollup("Acme").totalValue());
+        assertTrue(index.itemIds("Acme").isEmpty());
+    }
+
+    @Test
+    void valueDoesNotWrapPastLongRange() {
+        SupplierIndex index = new SupplierIndex();
+        double price = 1e12; // 10^16 scaled, times 2^31 - 1 units is far beyond a long
+        for (int i = 0; i < 3; i++)
+            index.onChange(null, new Item("I" + i, "Item", Integer.MAX_VALUE, price, "Acme"));
+        BigInteger expected = BigInteger.valueOf(Integer.MAX_VALUE).multiply(BigInteger.valueOf(3))
+                .multiply(BigInteger.TEN.pow(12));
+        assertEquals(new BigDecimal(expected).setScale(4), index.rollup("Acme").totalValue());
+    }
+
+    @Test
+    void seedDoesNotResurrectAnItemDeletedMeanwhile() {
+        SupplierIndex index = new SupplierIndex();
+        Item stale = new Item("A", "Widget", 5, 1.0, "Acme");
+        index.onChange(stale, null); // deleted after the seeding snapshot was read
+        index.seed(stale);
+        index.finishSeeding();
+        assertEquals(0, index.rollup("Acme").skuCount());
+
+        index.onChange(null, stale);
+        index.seed(new Item("A", "Widget", 99, 1.0, "Acme")); // older than the indexed state
+        assertEquals(5, index.rollup("Acme").totalUnits());
+    }
+}
@@ -0,0 +1,124 @@
+package com.ims.service.report;
+
+import com.ims.model.Item;
+import com.ims.model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InventoryReportsTest {
+
+    @Test
+    void totalsAreExactHoweverTheItemsAreSplit() {
+        List<Item> items = catalog(200_000, 22);
+        BigDecimal expected = BigDecimal.ZERO.setScale(Money.SCALE);
+        for (Item it : items)
+            expected = expected.add(exact(it));
+
+        assertEquals(expected, InventoryReports.totalValue(items.stream()));
+        List<Item> shuffled = new ArrayList<>(items);
+        Collections.shuffle(shuffled, new Random(1));
+        assertEquals(expected, InventoryReports.totalValue(shuffled.stream()));
+        assertEquals(expected, InventoryReports.totalValue(shuffled.subList(0, 1).stream())
+                .add(InventoryReports.totalValue(shuffled.subList(1, shuffled.size()).stream())));
+    }
+
+    @Test
+    void tenthsAddUpWithoutDrift() {
+        // 0.1 has no exact double; a double sum of a million of them is off
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++)
+            items.add(new Item("I" + i, "Item", 1, 0.1, "Acme"));
+        assertEquals(new BigDecimal("100000.0000"), InventoryReports.totalValue(items.stream()));
+    }
+
+    @Test
+    void totalsBeyondALongStayExact() {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++)
+            items.add(new Item("I" + i, "Item", Integer.MAX_VALUE, 99_999_999.9999, "S" + (i % 3)));
+        BigDecimal each = new BigDecimal(Integer.MAX_VALUE).multiply(new BigDecimal("99999999.9999"));
+
+        assertEquals(each.multiply(BigDecimal.valueOf(1_000)), InventoryReports.totalValue(items.stream()));
+        Map<String, BigDecimal> bySupplier = InventoryReports.valueBySupplier(items.stream());
+        assertEquals(each.multiply(BigDecimal.valueOf(334)), bySupplier.get("S0"));
+        assertEquals(each.multiply(BigDecimal.valueOf(333)), bySupplier.get("S2"));
+
+        // Each value fits a long, but their running sum does not
+        List<Item> large = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++)
+            large.add(new Item("L" + i, "Item", 1_000_000, 99_999_999.9999, "Acme"));
+        BigDecimal one = new BigDecimal("99999999.9999").multiply(BigDecimal.valueOf(1_000_000));
+        assertEquals(one.multiply(BigDecimal.valueOf(1_000)), InventoryReports.totalValue(large.stream()));
+    }
+
+    @Test
+    void supplierTotalsMatchAnExactGroupBy() {
+        List<Item> items = catalog(50_000, 7);
+        Map<String, BigDecimal> expected = new TreeMap<>();
+        for (Item it : items)
+            expected.merge(it.getSupplier(), exact(it), BigDecimal::add);
+
+        Map<String, BigDecimal> actual = InventoryReports.valueBySupplier(items.stream());
+        assertEquals(expected, actual);
+        assertEquals(List.copyOf(expected.keySet()), List.copyOf(actual.keySet()));
+    }
+
+    @Test
+    void topByValueMatchesAFullSort() {
+        List<Item> items = catalog(50_000, 9);
+        // Equal values, so ties must fall back to id order
+        items.add(new Item("TIE-B", "Tie", 1_000_000, 1_000.0, "Acme"));
+        items.add(new Item("TIE-A", "Tie", 1_000, 1_000_000.0, "Acme"));
+        List<Item> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparing(InventoryReportsTest::exact).reversed().thenComparing(Item::getId));
+
+        List<Item> top = InventoryReports.topByValue(items.stream(), 25);
+        assertEquals(ids(sorted.subList(0, 25)), ids(top));
+        assertEquals(List.of("TIE-A", "TIE-B"), ids(top.subList(0, 2)));
+    }
+
+    @Test
+    void histogramCountsEveryItemOnce() {
+        List<Item> items = catalog(10_000, 3);
+        QuantityHistogram histogram = InventoryReports.quantityHistogram(items.stream(), 100, 4);
+        long[] expected = new long[4];
+        for (Item it : items)
+            expected[Math.min(3, it.getQuantity() / 100)]++;
+        for (int b = 0; b < 4; b++)
+            assertEquals(expected[b], histogram.count(b));
+        assertEquals(items.size(), histogram.total());
+        assertEquals(Integer.MAX_VALUE, histogram.upperBound(3));
+    }
+
+    /** quantity x price with the price taken to four places, in BigDecimal from the start. */
+    private static BigDecimal exact(Item it) {
+        BigDecimal price = new BigDecimal(it.getPrice()).setScale(Money.SCALE, java.math.RoundingMode.HALF_UP);
+        return price.multiply(BigDecimal.valueOf(it.getQuantity()));
+    }
+
+    private static List<Item> catalog(int n, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Item> items = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            // Cents and tenths of cents, the prices doubles round worst
+            double price = random.nextInt(1, 10_000_000) / 1_000.0;
+            items.add(new Item("I" + i, "Item", random.nextInt(500), price, "S" + random.nextInt(7)));
+        }
+        return items;
+    }
+
+    private static List<String> ids(List<Item> items) {
+        return items.stream().map(Item::getId).toList();
+    }
+}